@@ -5,6 +5,7 @@ import hudson.ExtensionList;
 import hudson.init.InitMilestone;
 import hudson.init.Initializer;
 import jenkins.model.GlobalConfiguration;
+import jenkinsci.plugins.influxdb.models.InfluxDBClientRegistry;
 import jenkinsci.plugins.influxdb.models.Target;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.StaplerRequest2;
@@ -36,6 +37,7 @@ public class InfluxDbGlobalConfig extends GlobalConfiguration {
     public void setTargets(List<Target> targets) {
         this.targets = targets;
         save();
+        InfluxDBClientRegistry.getInstance().invalidateAll();
     }
 
     @SuppressWarnings("deprecation")
@@ -62,6 +64,7 @@ public class InfluxDbGlobalConfig extends GlobalConfiguration {
         targets = new CopyOnWriteArrayList<>();
         targets.addAll(req.bindJSONToList(Target.class, formData.get("targets")));
         save();
+        InfluxDBClientRegistry.getInstance().invalidateAll();
         return true;
     }
 
@@ -81,5 +84,6 @@ public class InfluxDbGlobalConfig extends GlobalConfiguration {
      */
     public void removeTarget(String targetDescription) {
         targets.removeIf(target -> target.getDescription().equals(targetDescription));
+        InfluxDBClientRegistry.getInstance().invalidateAll();
     }
 }
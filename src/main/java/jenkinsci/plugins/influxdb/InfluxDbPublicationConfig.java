@@ -0,0 +1,293 @@
+package jenkinsci.plugins.influxdb;
+
+import hudson.Extension;
+import hudson.util.FormValidation;
+import jenkins.model.GlobalConfiguration;
+import jenkinsci.plugins.influxdb.publication.LivePointStreamer;
+import jenkinsci.plugins.influxdb.publication.OverflowPolicy;
+import jenkinsci.plugins.influxdb.publication.PublicationQueue;
+import jenkinsci.plugins.influxdb.publication.WriteBatcher;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller-wide settings for how points are published to the configured targets.
+ */
+@Extension
+public class InfluxDbPublicationConfig extends GlobalConfiguration {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_QUEUE_WORKERS = 2;
+    public static final int DEFAULT_SPOOL_MAX_SIZE_MB = 100;
+    public static final int DEFAULT_SPOOL_MAX_AGE_HOURS = 24;
+    public static final int DEFAULT_COALESCE_MAX_POINTS = 5000;
+    public static final int DEFAULT_COALESCE_MAX_KB = 1024;
+    public static final int DEFAULT_COALESCE_LINGER_MILLIS = 200;
+    public static final int DEFAULT_COALESCE_MAX_BUFFERED_POINTS = 100_000;
+    public static final int DEFAULT_GENERATOR_THREADS = 4;
+    public static final int DEFAULT_GENERATOR_TIMEOUT_SECONDS = 300;
+    public static final int DEFAULT_LIVE_HEARTBEAT_SECONDS = 60;
+    public static final int DEFAULT_LIVE_MAX_POINTS_PER_SECOND = 100;
+
+    private boolean asyncPublication = false;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int queueWorkers = DEFAULT_QUEUE_WORKERS;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private boolean spoolEnabled = false;
+    private int spoolMaxSizeMb = DEFAULT_SPOOL_MAX_SIZE_MB;
+    private int spoolMaxAgeHours = DEFAULT_SPOOL_MAX_AGE_HOURS;
+    private boolean coalesceWrites = false;
+    private int coalesceMaxPoints = DEFAULT_COALESCE_MAX_POINTS;
+    private int coalesceMaxKb = DEFAULT_COALESCE_MAX_KB;
+    private int coalesceLingerMillis = DEFAULT_COALESCE_LINGER_MILLIS;
+    private int coalesceMaxBufferedPoints = DEFAULT_COALESCE_MAX_BUFFERED_POINTS;
+    private int generatorThreads = DEFAULT_GENERATOR_THREADS;
+    private int generatorTimeoutSeconds = DEFAULT_GENERATOR_TIMEOUT_SECONDS;
+    private boolean liveStreaming = false;
+    private int liveHeartbeatSeconds = DEFAULT_LIVE_HEARTBEAT_SECONDS;
+    private int liveMaxPointsPerSecond = DEFAULT_LIVE_MAX_POINTS_PER_SECOND;
+
+    public InfluxDbPublicationConfig() {
+        load();
+    }
+
+    public static InfluxDbPublicationConfig getInstance() {
+        return GlobalConfiguration.all().get(InfluxDbPublicationConfig.class);
+    }
+
+    public boolean isAsyncPublication() {
+        return asyncPublication;
+    }
+
+    @DataBoundSetter
+    public void setAsyncPublication(boolean asyncPublication) {
+        this.asyncPublication = asyncPublication;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity > 0 ? queueCapacity : DEFAULT_QUEUE_CAPACITY;
+    }
+
+    @DataBoundSetter
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getQueueWorkers() {
+        return queueWorkers > 0 ? queueWorkers : DEFAULT_QUEUE_WORKERS;
+    }
+
+    @DataBoundSetter
+    public void setQueueWorkers(int queueWorkers) {
+        this.queueWorkers = queueWorkers;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy != null ? overflowPolicy : OverflowPolicy.BLOCK;
+    }
+
+    @DataBoundSetter
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public boolean isSpoolEnabled() {
+        return spoolEnabled;
+    }
+
+    @DataBoundSetter
+    public void setSpoolEnabled(boolean spoolEnabled) {
+        this.spoolEnabled = spoolEnabled;
+    }
+
+    public int getSpoolMaxSizeMb() {
+        return spoolMaxSizeMb > 0 ? spoolMaxSizeMb : DEFAULT_SPOOL_MAX_SIZE_MB;
+    }
+
+    @DataBoundSetter
+    public void setSpoolMaxSizeMb(int spoolMaxSizeMb) {
+        this.spoolMaxSizeMb = spoolMaxSizeMb;
+    }
+
+    public long getSpoolMaxSizeBytes() {
+        return getSpoolMaxSizeMb() * 1024L * 1024L;
+    }
+
+    public int getSpoolMaxAgeHours() {
+        return spoolMaxAgeHours > 0 ? spoolMaxAgeHours : DEFAULT_SPOOL_MAX_AGE_HOURS;
+    }
+
+    @DataBoundSetter
+    public void setSpoolMaxAgeHours(int spoolMaxAgeHours) {
+        this.spoolMaxAgeHours = spoolMaxAgeHours;
+    }
+
+    public long getSpoolMaxAgeMillis() {
+        return TimeUnit.HOURS.toMillis(getSpoolMaxAgeHours());
+    }
+
+    public boolean isCoalesceWrites() {
+        return coalesceWrites;
+    }
+
+    @DataBoundSetter
+    public void setCoalesceWrites(boolean coalesceWrites) {
+        this.coalesceWrites = coalesceWrites;
+    }
+
+    public int getCoalesceMaxPoints() {
+        return coalesceMaxPoints > 0 ? coalesceMaxPoints : DEFAULT_COALESCE_MAX_POINTS;
+    }
+
+    @DataBoundSetter
+    public void setCoalesceMaxPoints(int coalesceMaxPoints) {
+        this.coalesceMaxPoints = coalesceMaxPoints;
+    }
+
+    public int getCoalesceMaxKb() {
+        return coalesceMaxKb > 0 ? coalesceMaxKb : DEFAULT_COALESCE_MAX_KB;
+    }
+
+    @DataBoundSetter
+    public void setCoalesceMaxKb(int coalesceMaxKb) {
+        this.coalesceMaxKb = coalesceMaxKb;
+    }
+
+    public long getCoalesceMaxBytes() {
+        return getCoalesceMaxKb() * 1024L;
+    }
+
+    public int getCoalesceLingerMillis() {
+        return coalesceLingerMillis > 0 ? coalesceLingerMillis : DEFAULT_COALESCE_LINGER_MILLIS;
+    }
+
+    @DataBoundSetter
+    public void setCoalesceLingerMillis(int coalesceLingerMillis) {
+        this.coalesceLingerMillis = coalesceLingerMillis;
+    }
+
+    public int getCoalesceMaxBufferedPoints() {
+        return coalesceMaxBufferedPoints > 0 ? coalesceMaxBufferedPoints : DEFAULT_COALESCE_MAX_BUFFERED_POINTS;
+    }
+
+    @DataBoundSetter
+    public void setCoalesceMaxBufferedPoints(int coalesceMaxBufferedPoints) {
+        this.coalesceMaxBufferedPoints = coalesceMaxBufferedPoints;
+    }
+
+    public int getGeneratorThreads() {
+        return generatorThreads > 0 ? generatorThreads : DEFAULT_GENERATOR_THREADS;
+    }
+
+    @DataBoundSetter
+    public void setGeneratorThreads(int generatorThreads) {
+        this.generatorThreads = generatorThreads;
+    }
+
+    public int getGeneratorTimeoutSeconds() {
+        return generatorTimeoutSeconds > 0 ? generatorTimeoutSeconds : DEFAULT_GENERATOR_TIMEOUT_SECONDS;
+    }
+
+    @DataBoundSetter
+    public void setGeneratorTimeoutSeconds(int generatorTimeoutSeconds) {
+        this.generatorTimeoutSeconds = generatorTimeoutSeconds;
+    }
+
+    public boolean isLiveStreaming() {
+        return liveStreaming;
+    }
+
+    @DataBoundSetter
+    public void setLiveStreaming(boolean liveStreaming) {
+        this.liveStreaming = liveStreaming;
+    }
+
+    public int getLiveHeartbeatSeconds() {
+        return liveHeartbeatSeconds > 0 ? liveHeartbeatSeconds : DEFAULT_LIVE_HEARTBEAT_SECONDS;
+    }
+
+    @DataBoundSetter
+    public void setLiveHeartbeatSeconds(int liveHeartbeatSeconds) {
+        this.liveHeartbeatSeconds = liveHeartbeatSeconds;
+    }
+
+    public int getLiveMaxPointsPerSecond() {
+        return liveMaxPointsPerSecond > 0 ? liveMaxPointsPerSecond : DEFAULT_LIVE_MAX_POINTS_PER_SECOND;
+    }
+
+    @DataBoundSetter
+    public void setLiveMaxPointsPerSecond(int liveMaxPointsPerSecond) {
+        this.liveMaxPointsPerSecond = liveMaxPointsPerSecond;
+    }
+
+    @Override
+    public boolean configure(StaplerRequest2 req, JSONObject formData) {
+        req.bindJSON(this, formData);
+        save();
+        PublicationQueue queue = PublicationQueue.getIfStarted();
+        if (queue != null) {
+            queue.reconfigure(getQueueCapacity(), getQueueWorkers(), getOverflowPolicy(), getSpoolMaxSizeBytes());
+        }
+        WriteBatcher batcher = WriteBatcher.getIfStarted();
+        if (batcher != null) {
+            batcher.reconfigure(getCoalesceMaxPoints(), getCoalesceMaxBytes(), getCoalesceLingerMillis(), getCoalesceMaxBufferedPoints());
+        }
+        LivePointStreamer streamer = LivePointStreamer.getIfStarted();
+        if (streamer != null) {
+            streamer.reconfigure(getLiveMaxPointsPerSecond());
+        }
+        return true;
+    }
+
+    public FormValidation doCheckQueueCapacity(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckQueueWorkers(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckGeneratorThreads(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckGeneratorTimeoutSeconds(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckCoalesceMaxPoints(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckCoalesceMaxKb(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckCoalesceLingerMillis(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckCoalesceMaxBufferedPoints(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckSpoolMaxSizeMb(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckSpoolMaxAgeHours(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckLiveHeartbeatSeconds(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckLiveMaxPointsPerSecond(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+}
@@ -1,8 +1,7 @@
 package jenkinsci.plugins.influxdb;
 
-import com.cloudbees.plugins.credentials.CredentialsProvider;
-import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import hudson.EnvVars;
+import hudson.FilePath;
 import hudson.ProxyConfiguration;
 import hudson.model.Run;
 import hudson.model.TaskListener;
@@ -11,16 +10,23 @@ import jenkinsci.plugins.influxdb.generators.*;
 import jenkinsci.plugins.influxdb.generators.serenity.SerenityJsonSummaryFile;
 import jenkinsci.plugins.influxdb.generators.serenity.SerenityPointGenerator;
 import jenkinsci.plugins.influxdb.models.AbstractPoint;
-import jenkinsci.plugins.influxdb.models.InfluxDBClientWrapper;
 import jenkinsci.plugins.influxdb.models.Target;
+import jenkinsci.plugins.influxdb.publication.PublicationQueue;
+import jenkinsci.plugins.influxdb.publication.PublicationTask;
+import jenkinsci.plugins.influxdb.publication.WriteBatcher;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
 import okhttp3.Credentials;
 import okhttp3.OkHttpClient;
-import org.jenkinsci.plugins.plaincredentials.StringCredentials;
 
+import javax.annotation.CheckForNull;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -167,165 +173,201 @@ public class InfluxDbPublicationService {
     }
 
     public void perform(Run<?, ?> build, TaskListener listener, EnvVars env) {
+        perform(build, null, listener, env);
+    }
+
+    /**
+     * @param workspace workspace of the build, in which file based generators read their reports on the agent owning
+     *                  it, or null to use the WORKSPACE env var on the controller
+     */
+    public void perform(Run<?, ?> build, @CheckForNull FilePath workspace, TaskListener listener, EnvVars env) {
         // Logging
         listener.getLogger().println("[InfluxDB Plugin] Collecting data...");
 
         // Renderer to use for the metrics
         ProjectNameRenderer measurementRenderer = new ProjectNameRenderer(customPrefix, customProjectName);
 
-        // Points to write
-        List<AbstractPoint> pointsToWrite = new ArrayList<>();
+        // Generators run concurrently, their points are merged in the order they are added
+        ParallelPointCollector collector = createPointCollector(listener);
+
+        // Generators reading the build log are created up front, so that their extractors are registered before
+        // the first of them scans the log
+        BuildLogScanner logScanner = new BuildLogScanner(build);
+        JenkinsBasePointGenerator jenkinsBaseGenerator = new JenkinsBasePointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, jenkinsEnvParameterField, customPrefix, measurementName, env, logScanner);
+        SonarQubePointGenerator sonarQubeGenerator = new SonarQubePointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, env, logScanner);
+        sonarQubeGenerator.setWorkspace(workspace);
+        ReportLocator reportLocator = ReportLocator.forBuild(build, env);
+        SerenityJsonSummaryFile serenitySummary = workspace != null
+                ? new SerenityJsonSummaryFile(workspace, reportLocator)
+                : new SerenityJsonSummaryFile(env.get("WORKSPACE"), reportLocator);
 
         // Basic metrics
-        JenkinsBasePointGenerator jGen = new JenkinsBasePointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, jenkinsEnvParameterField, customPrefix, measurementName, env);
-        addPoints(pointsToWrite, jGen, listener);
+        collector.add("Jenkins base", () -> jenkinsBaseGenerator);
+        collector.addFromPlugin("Agent", () -> new AgentPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix));
+        collector.addFromPlugin("Pipeline stages", () -> new PipelineStagePointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, env));
+        collector.addFromPlugin("Custom Data", () -> new CustomDataPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, customData, customDataTags, measurementName));
+        collector.addFromPlugin("Custom Data Map", () -> new CustomDataMapPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, customDataMap, customDataMapTags));
+        collector.addFromPlugin("Cobertura", () -> new CoberturaPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix));
+        collector.addFromPlugin("Robot Framework", () -> new RobotFrameworkPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix));
+        collector.addFromPlugin("JaCoCo", () -> new JacocoPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix));
+        collector.addFromPlugin("Performance", () -> new PerformancePointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix));
+        collector.addFromPlugin("Git", () -> new GitPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix));
+        AtomicReference<JUnitPointGenerator> junitGenerator = new AtomicReference<>();
+        collector.addStreamingFromPlugin("JUnit", () -> {
+            junitGenerator.set(new JUnitPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, env));
+            return junitGenerator.get();
+        });
+        collector.addFromPlugin("SonarQube", () -> sonarQubeGenerator);
+        collector.addFromPlugin("Serenity", () -> new SerenityPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, serenitySummary));
+        collector.addFromPlugin("Change log", () -> new ChangeLogPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix));
+        collector.addFromPlugin("Performance Publisher", () -> new PerfPublisherPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix));
+        collector.addFromPlugin("Metrics", () -> new MetricsPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix));
+        collector.addFromPlugin("Coverage", () -> new CoveragePointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix));
 
-        AgentPointGenerator agentGen = new AgentPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix);
-        addPointsFromPlugin(pointsToWrite, agentGen, listener, "Custom Data");
+        // Points to write
+        List<AbstractPoint> pointsToWrite = collector.collect();
 
-        CustomDataPointGenerator cdGen = new CustomDataPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, customData, customDataTags, measurementName);
-        addPointsFromPlugin(pointsToWrite, cdGen, listener, "Custom Data");
+        MeasurementFilter measurementFilter = createMeasurementFilter(listener);
+        pointsToWrite = measurementFilter.filter(pointsToWrite);
 
-        CustomDataMapPointGenerator cdmGen = new CustomDataMapPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, customDataMap, customDataMapTags);
-        addPointsFromPlugin(pointsToWrite, cdmGen, listener, "Custom Data Map");
+        publish(build, listener, pointsToWrite, true);
 
-        try {
-            CoberturaPointGenerator cGen = new CoberturaPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix);
-            addPointsFromPlugin(pointsToWrite, cGen, listener, "Cobertura");
-        } catch (NoClassDefFoundError ignore) {
-            logger.fine("Plugin skipped: Cobertura");
-        }
+        // Points of streaming generators are published chunk by chunk
+        AtomicBoolean streamedAll = new AtomicBoolean(true);
+        List<CompletableFuture<Void>> streamedWrites = new ArrayList<>();
+        collector.stream(chunk -> {
+            List<AbstractPoint> filtered = measurementFilter.filter(chunk);
+            if (filtered.size() < chunk.size()) {
+                streamedAll.set(false);
+            }
+            if (!filtered.isEmpty()) {
+                streamedWrites.add(publish(build, listener, filtered, false));
+            }
+        });
 
-        try {
-            RobotFrameworkPointGenerator rfGen = new RobotFrameworkPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix);
-            addPointsFromPlugin(pointsToWrite, rfGen, listener, "Robot Framework");
-        } catch (NoClassDefFoundError ignore) {
-            logger.fine("Plugin skipped: Robot Framework");
-        }
+        measurementFilter.log(listener);
 
-        try {
-            JacocoPointGenerator jacoGen = new JacocoPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix);
-            addPointsFromPlugin(pointsToWrite, jacoGen, listener, "JaCoCo");
-        } catch (NoClassDefFoundError ignore) {
-            logger.fine("Plugin skipped: JaCoCo");
+        // Test cases are only left out of later builds once they were written, which with asynchronous publication
+        // might be after the build completed
+        JUnitPointGenerator junit = junitGenerator.get();
+        if (streamedAll.get() && junit != null) {
+            CompletableFuture.allOf(streamedWrites.toArray(new CompletableFuture[0])).whenComplete((ignored, e) -> {
+                if (e == null) {
+                    attachFingerprint(build, junit);
+                }
+            });
         }
 
-        try {
-            PerformancePointGenerator perfGen = new PerformancePointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix);
-            addPointsFromPlugin(pointsToWrite, perfGen, listener, "Performance");
-        } catch (NoClassDefFoundError ignore) {
-            logger.fine("Plugin skipped: Performance");
+        // Points of a SonarQube analysis which is still being processed are published once it has completed,
+        // without holding up the build
+        CompletableFuture<List<AbstractPoint>> deferredSonarPoints = sonarQubeGenerator.getDeferredPoints();
+        if (deferredSonarPoints != null) {
+            deferredSonarPoints.whenComplete((points, e) -> publishDeferred(build, points, e, measurementFilter));
         }
 
-        try {
-            GitPointGenerator gitGen = new GitPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix);
-            addPointsFromPlugin(pointsToWrite, gitGen, listener, "Git");
-        } catch (NoClassDefFoundError ignore) {
-            logger.fine("Plugin skipped: Git");
-        }
-
-        JUnitPointGenerator junitGen = new JUnitPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, env);
-        addPointsFromPlugin(pointsToWrite, junitGen, listener, "JUnit");
-
-        SonarQubePointGenerator sonarGen = new SonarQubePointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, env);
-        addPointsFromPlugin(pointsToWrite, sonarGen, listener, "SonarQube");
-
-        SerenityJsonSummaryFile serenityJsonSummaryFile = new SerenityJsonSummaryFile(env.get("WORKSPACE"));
-        SerenityPointGenerator serenityGen = new SerenityPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, serenityJsonSummaryFile);
-        addPointsFromPlugin(pointsToWrite, serenityGen, listener, "Serenity");
-
-        ChangeLogPointGenerator changeLogGen = new ChangeLogPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix);
-        addPointsFromPlugin(pointsToWrite, changeLogGen, listener, "Change log");
+        listener.getLogger().println("[InfluxDB Plugin] Completed.");
+    }
 
-        try {
-            PerfPublisherPointGenerator perfPublisherGen = new PerfPublisherPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix);
-            addPointsFromPlugin(pointsToWrite, perfPublisherGen, listener, "Performance Publisher");
-        } catch (NoClassDefFoundError ignore) {
-            logger.fine("Plugin skipped: Performance Publisher");
+    private static void attachFingerprint(Run<?, ?> build, JUnitPointGenerator junit) {
+        junit.attachFingerprint();
+        if (!build.isBuilding()) {
+            try {
+                build.save();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not save the JUnit fingerprint of " + build, e);
+            }
         }
+    }
 
-        try {
-            MetricsPointGenerator metricsGen = new MetricsPointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix);
-            addPointsFromPlugin(pointsToWrite, metricsGen, listener, "Metrics");
-        } catch (NoClassDefFoundError ignore) {
-            logger.fine("Plugin skipped: Metrics");
+    /**
+     * Publishes points which became available after the build was published. The build log might already be closed,
+     * so failures are only logged, even for targets which expose exceptions.
+     */
+    private void publishDeferred(Run<?, ?> build, List<AbstractPoint> points, Throwable failure, MeasurementFilter measurementFilter) {
+        if (failure != null) {
+            logger.log(Level.WARNING, "[InfluxDB Plugin] Could not generate deferred points of " + build, failure);
+            return;
+        }
+        List<AbstractPoint> filtered = measurementFilter.filter(points);
+        if (filtered.isEmpty()) {
+            return;
         }
-
         try {
-            CoveragePointGenerator coverageGen = new CoveragePointGenerator(build, listener, measurementRenderer, timestamp, jenkinsEnvParameterTag, customPrefix);
-            addPointsFromPlugin(pointsToWrite, coverageGen, listener, "Coverage");
-        } catch (NoClassDefFoundError ignore) {
-            logger.fine("Plugin skipped: Coverage");
+            publish(build, TaskListener.NULL, filtered, false);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "[InfluxDB Plugin] Could not publish deferred points of " + build, e);
         }
+    }
 
-        pointsToWrite = filterByMeasurementRegex(pointsToWrite, listener);
-
+    /**
+     * Publishes points to all selected targets.
+     *
+     * @param announce whether to log the targets published to, which is done once per build
+     * @return a future which completes once the points were written to all targets. It fails if a target was skipped
+     * or could not be written to, and, for asynchronous publication, if the points were dropped or spilled to disk.
+     */
+    private CompletableFuture<Void> publish(Run<?, ?> build, TaskListener listener, List<AbstractPoint> pointsToWrite, boolean announce) {
+        boolean asyncPublication = Jenkins.getInstanceOrNull() != null && InfluxDbPublicationConfig.getInstance().isAsyncPublication();
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
         for (Target target : selectedTargets) {
             try {
                 new URL(target.getUrl());
             } catch (MalformedURLException e) {
-                String logMessage = String.format("[InfluxDB Plugin] Skipping target '%s' due to invalid URL '%s'",
-                        target.getDescription(),
-                        target.getUrl());
-                logger.warning(logMessage);
-                listener.getLogger().println(logMessage);
+                if (announce) {
+                    String logMessage = String.format("[InfluxDB Plugin] Skipping target '%s' due to invalid URL '%s'",
+                            target.getDescription(),
+                            target.getUrl());
+                    logger.warning(logMessage);
+                    listener.getLogger().println(logMessage);
+                }
+                writes.add(CompletableFuture.failedFuture(e));
                 continue;
             }
 
-            String logMessage = String.format("[InfluxDB Plugin] Publishing data to target '%s' (url='%s', database='%s')",
-                    target.getDescription(),
-                    target.getUrl(),
-                    target.getDatabase());
-            logger.fine(logMessage);
-            listener.getLogger().println(logMessage);
+            if (announce) {
+                String logMessage = String.format("[InfluxDB Plugin] Publishing data to target '%s' (url='%s', database='%s')",
+                        target.getDescription(),
+                        target.getUrl(),
+                        target.getDatabase());
+                logger.fine(logMessage);
+                listener.getLogger().println(logMessage);
+            }
 
-            InfluxDBClientWrapper influxDB = null;
             try {
-                StandardUsernamePasswordCredentials basicAuthCredentials = CredentialsProvider.findCredentialById(
-                        target.getCredentialsId(),
-                        StandardUsernamePasswordCredentials.class,
-                        build
-                );
-                StringCredentials tokenCredentials = CredentialsProvider.findCredentialById(
-                        target.getCredentialsId(),
-                        StringCredentials.class,
-                        build
-                );
-                influxDB = new InfluxDBClientWrapper(
-                        target.getUrl(),
-                        target.getOrganization(),
-                        target.getDatabase(),
-                        target.getRetentionPolicy(),
-                        basicAuthCredentials,
-                        tokenCredentials,
-                        target.isUsingJenkinsProxy()
-                );
-                influxDB.writePoints(pointsToWrite);
+                PublicationTask task = PublicationTask.forBuild(target, build, pointsToWrite);
+                if (asyncPublication) {
+                    writes.add(PublicationQueue.get().submit(task));
+                } else if (WriteBatcher.isEnabled()) {
+                    WriteBatcher.await(WriteBatcher.get().submit(task));
+                } else {
+                    task.write();
+                }
             } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
                 if (target.isExposeExceptions()) {
                     throw new InfluxReportException(e);
                 } else {
                     //Exceptions not exposed by configuration. Just log and ignore.
                     logger.log(Level.WARNING, "Could not report to InfluxDB. Ignoring Exception.", e);
-                }
-            } finally {
-                if (influxDB != null) {
-                    influxDB.close();
+                    writes.add(CompletableFuture.failedFuture(e));
                 }
             }
         }
-
-        listener.getLogger().println("[InfluxDB Plugin] Completed.");
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]));
     }
 
-    private List<AbstractPoint> filterByMeasurementRegex(List<AbstractPoint> unfiltered, TaskListener listener) {
+    /**
+     * @return a filter for the measurement regex, which lets all points pass if there is none and no point if it is
+     * invalid
+     */
+    private MeasurementFilter createMeasurementFilter(TaskListener listener) {
         if (measurementRegex == null || measurementRegex.trim().isEmpty()) {
-            return unfiltered;
+            return new MeasurementFilter(null, false);
         }
-
-        final Pattern pattern;
         try {
-            pattern = Pattern.compile(measurementRegex.trim());
+            return new MeasurementFilter(Pattern.compile(measurementRegex.trim()), false);
         } catch (PatternSyntaxException e) {
             listener.getLogger().println(String.format(
                     "[InfluxDB Plugin] Invalid measurementRegex '%s': %s",
@@ -333,30 +375,61 @@ public class InfluxDbPublicationService {
                     e.getMessage()));
             listener.getLogger().println(
                     "[InfluxDB Plugin] Publishing 0 point(s).");
-            return Collections.emptyList();
+            return new MeasurementFilter(null, true);
+        }
+    }
+
+    /**
+     * Filters points by the measurement regex. The points of every measurement are counted across all chunks they
+     * are filtered in, so that the included and excluded measurements are logged once, after streamed points
+     * were published as well.
+     */
+    private final class MeasurementFilter {
+
+        @CheckForNull
+        private final Pattern pattern;
+        private final boolean excludingAll;
+        private final Map<String, Long> allCounts = new TreeMap<>();
+        private final Map<String, Long> includedCounts = new TreeMap<>();
+
+        private MeasurementFilter(@CheckForNull Pattern pattern, boolean excludingAll) {
+            this.pattern = pattern;
+            this.excludingAll = excludingAll;
         }
 
-        List<AbstractPoint> filtered = unfiltered.stream()
-                .filter(point -> pattern.matcher(point.getName()).matches())
-                .collect(Collectors.toList());
-
-        Map<String, Long> allCounts = groupMeasurementCounts(unfiltered);
-        Map<String, Long> includedCounts = groupMeasurementCounts(filtered);
-        Map<String, Long> excludedCounts = subtractCounts(allCounts, includedCounts);
-
-        listener.getLogger().println(String.format(
-                "[InfluxDB Plugin] measurementRegex active: '%s'",
-                measurementRegex));
-        listener.getLogger().println(String.format(
-                "[InfluxDB Plugin] Publishing points to %d measurement(s): %s",
-                includedCounts.size(),
-                formatMeasurementList(includedCounts)));
-        listener.getLogger().println(String.format(
-                "[InfluxDB Plugin] Excluding points for %d measurement(s): %s",
-                excludedCounts.size(),
-                formatMeasurementList(excludedCounts)));
-
-        return filtered;
+        synchronized List<AbstractPoint> filter(List<AbstractPoint> unfiltered) {
+            if (excludingAll) {
+                return Collections.emptyList();
+            }
+            if (pattern == null) {
+                return unfiltered;
+            }
+            List<AbstractPoint> filtered = unfiltered.stream()
+                    .filter(point -> pattern.matcher(point.getName()).matches())
+                    .collect(Collectors.toList());
+            groupMeasurementCounts(unfiltered).forEach((name, count) -> allCounts.merge(name, count, Long::sum));
+            groupMeasurementCounts(filtered).forEach((name, count) -> includedCounts.merge(name, count, Long::sum));
+            return filtered;
+        }
+
+        synchronized void log(TaskListener listener) {
+            if (pattern == null) {
+                return;
+            }
+            Map<String, Long> excludedCounts = subtractCounts(allCounts, includedCounts);
+
+            listener.getLogger().println(String.format(
+                    "[InfluxDB Plugin] measurementRegex active: '%s'",
+                    measurementRegex));
+            listener.getLogger().println(String.format(
+                    "[InfluxDB Plugin] Publishing points to %d measurement(s): %s",
+                    includedCounts.size(),
+                    formatMeasurementList(includedCounts)));
+            listener.getLogger().println(String.format(
+                    "[InfluxDB Plugin] Excluding points for %d measurement(s): %s",
+                    excludedCounts.size(),
+                    formatMeasurementList(excludedCounts)));
+        }
     }
 
     private Map<String, Long> groupMeasurementCounts(List<AbstractPoint> points) {
@@ -390,20 +463,14 @@ public class InfluxDbPublicationService {
                 .collect(Collectors.joining(", "));
     }
 
-    private void addPointsFromPlugin(List<AbstractPoint> pointsToWrite, PointGenerator generator, TaskListener listener, String plugin) {
-        if (generator.hasReport()) {
-            listener.getLogger().println("[InfluxDB plugin] " + plugin + " plugin data found. Writing to InfluxDB...");
-            addPoints(pointsToWrite, generator, listener);
-        } else {
-            logger.fine("Data not found: " + plugin);
-        }
-    }
-
-    private void addPoints(List<AbstractPoint> pointsToWrite, PointGenerator generator, TaskListener listener) {
-        try {
-            pointsToWrite.addAll(Arrays.stream(generator.generate()).filter(Objects::nonNull).collect(Collectors.toList()));
-        } catch (Exception e) {
-            listener.getLogger().println("[InfluxDB Plugin] Failed to collect data. Ignoring Exception:" + e);
+    private ParallelPointCollector createPointCollector(TaskListener listener) {
+        int threads = InfluxDbPublicationConfig.DEFAULT_GENERATOR_THREADS;
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(InfluxDbPublicationConfig.DEFAULT_GENERATOR_TIMEOUT_SECONDS);
+        if (Jenkins.getInstanceOrNull() != null) {
+            InfluxDbPublicationConfig config = InfluxDbPublicationConfig.getInstance();
+            threads = config.getGeneratorThreads();
+            timeoutMillis = TimeUnit.SECONDS.toMillis(config.getGeneratorTimeoutSeconds());
         }
+        return new ParallelPointCollector(listener, ParallelPointCollector.getExecutor(threads), timeoutMillis);
     }
 }
@@ -235,7 +235,7 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep {
                 measurementName);
 
         // Publishes the metrics
-        publicationService.perform(build, listener, env);
+        publicationService.perform(build, workspace, listener, env);
     }
 
     private long resolveTimestampForPointGenerationInNanoseconds(Run<?, ?> build) {
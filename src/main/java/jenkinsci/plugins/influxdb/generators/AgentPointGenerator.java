@@ -4,15 +4,10 @@ import hudson.model.AbstractBuild;
 import hudson.model.Node;
 import hudson.model.Run;
 import hudson.model.TaskListener;
-import hudson.model.labels.LabelAtom;
 import jenkinsci.plugins.influxdb.models.AbstractPoint;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
 import org.apache.commons.collections.CollectionUtils;
-import org.jenkinsci.plugins.workflow.actions.WorkspaceAction;
-import org.jenkinsci.plugins.workflow.flow.FlowExecution;
 import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
-import org.jenkinsci.plugins.workflow.graph.FlowGraphWalker;
-import org.jenkinsci.plugins.workflow.graph.FlowNode;
 
 import java.util.*;
 
@@ -32,17 +27,17 @@ public class AgentPointGenerator extends AbstractPointGenerator {
     public AgentPointGenerator(Run<?, ?> build, TaskListener listener, ProjectNameRenderer projectNameRenderer,
                                long timestamp, String jenkinsEnvParameterTag, String customPrefix) {
         super(build, listener, projectNameRenderer, timestamp, jenkinsEnvParameterTag);
-        this.agentPoints = getAgentPoints(build);
         this.customPrefix = customPrefix;
     }
 
     @Override
     public boolean hasReport() {
-        return CollectionUtils.isNotEmpty(agentPoints);
+        return CollectionUtils.isNotEmpty(getAgentPoints());
     }
 
     @Override
     public AbstractPoint[] generate() {
+        List<Map.Entry<String, String>> agentPoints = getAgentPoints();
         List<AbstractPoint> points = new ArrayList<>();
         Map.Entry<String, String> agentPoint = null;
         for (int i = 0; i < agentPoints.size(); i++) {
@@ -57,9 +52,17 @@ public class AgentPointGenerator extends AbstractPointGenerator {
     }
 
     public String getFirstAgent() {
+        List<Map.Entry<String, String>> agentPoints = getAgentPoints();
         return !CollectionUtils.isEmpty(agentPoints) ? agentPoints.get(0).getKey() : "";
     }
 
+    private synchronized List<Map.Entry<String, String>> getAgentPoints() {
+        if (agentPoints == null) {
+            agentPoints = getAgentPoints(build);
+        }
+        return agentPoints;
+    }
+
     /**
      * Retrieve agent(s) used by the build and return {@link AgentPoint}
      *
@@ -99,26 +102,8 @@ public class AgentPointGenerator extends AbstractPointGenerator {
      */
     private List<Map.Entry<String, String>> getAgentsFromPipeline(FlowExecutionOwner.Executable build) {
         List<Map.Entry<String, String>> agentPointsList = new ArrayList<>();
-        FlowExecutionOwner flowExecutionOwner = build.asFlowExecutionOwner();
-        if (flowExecutionOwner != null) {
-            FlowExecution flowExecution = flowExecutionOwner.getOrNull();
-            if (flowExecution != null) {
-                FlowGraphWalker graphWalker = new FlowGraphWalker(flowExecution);
-                for (FlowNode flowNode : graphWalker) {
-                    WorkspaceAction workspaceAction = flowNode.getAction(WorkspaceAction.class);
-                    if (null != workspaceAction) {
-                        Set<LabelAtom> labels = workspaceAction.getLabels();
-                        StringJoiner labelString = new StringJoiner(", ");
-                        labelString.setEmptyValue("");
-                        for (LabelAtom label : labels) {
-                            labelString.add(label.getName());
-                        }
-                        String nodeName = workspaceAction.getNode();
-                        agentPointsList
-                                .add(new AbstractMap.SimpleEntry<>(nodeName, labelString.toString()));
-                    }
-                }
-            }
+        for (FlowGraphIndex.Agent agent : FlowGraphIndex.of((Run<?, ?>) build).getAgents()) {
+            agentPointsList.add(new AbstractMap.SimpleEntry<>(agent.nodeName(), agent.labels()));
         }
         return agentPointsList;
     }
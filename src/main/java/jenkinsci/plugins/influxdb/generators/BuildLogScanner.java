@@ -0,0 +1,308 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.console.ConsoleNote;
+import hudson.model.Run;
+import jenkins.util.SystemProperties;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.logging.Logger;
+
+/**
+ * Reads the console log of a build once on behalf of all generators which extract data from it.
+ * <p>
+ * Generators register an {@link Extractor} before the first {@link #scan()}. Each line is searched once for the
+ * distinct markers of all extractors, and a line is only passed to the extractors whose markers it contains. Reading
+ * stops as soon as all extractors are done. Console notes are removed from the lines before they are matched.
+ * <p>
+ * A {@link ReverseExtractor} looks for markers near the end of the log. It is first passed the lines at the end of
+ * the log file, last line first, read backwards in blocks up to a budget of {@link #REVERSE_SCAN_BYTES}. If it is not
+ * done within that budget, it is reset and passed the whole log from the beginning instead, unless
+ * {@link #REVERSE_SCAN_FALLBACK} is turned off, in which case it has no result. Logs which cannot be read backwards are
+ * always read from the beginning.
+ */
+public class BuildLogScanner {
+
+    /**
+     * Receives the lines of the build log which contain one of its markers.
+     */
+    public interface Extractor {
+
+        /**
+         * @return literal strings, one of which a line must contain to be passed to {@link #accept(String)}
+         */
+        List<String> getMarkers();
+
+        /**
+         * @param line line of the build log containing at least one of the markers
+         * @return true, if no further lines are needed
+         */
+        boolean accept(String line);
+    }
+
+    /**
+     * Extractor for markers which are expected near the end of the build log.
+     */
+    public interface ReverseExtractor extends Extractor {
+
+        /**
+         * @param line line of the build log containing at least one of the markers, passed in reverse order
+         * @return true, if no further lines are needed
+         */
+        boolean acceptFromEnd(String line);
+
+        /**
+         * Discards what was extracted from the end, before the log is passed from the beginning instead.
+         */
+        void reset();
+    }
+
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Number of bytes at the end of the log file which are read backwards for a {@link ReverseExtractor}, before the
+     * whole log is read from the beginning instead.
+     */
+    static final long REVERSE_SCAN_BYTES = SystemProperties.getLong(
+            BuildLogScanner.class.getName() + ".reverseScanBytes", 8L * 1024 * 1024);
+
+    /**
+     * Whether a {@link ReverseExtractor} which is not done within {@link #REVERSE_SCAN_BYTES} is passed the whole log
+     * from the beginning. Turning it off saves reading all of a large log for markers which are usually missing from
+     * it, at the cost of losing markers which are further from the end.
+     */
+    static final boolean REVERSE_SCAN_FALLBACK = SystemProperties.getBoolean(
+            BuildLogScanner.class.getName() + ".reverseScanFallback", true);
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(BuildLogScanner.class.getName());
+
+    private final Run<?, ?> build;
+    private final long reverseScanBytes;
+    private final boolean reverseScanFallback;
+    private final List<Extractor> pending = new ArrayList<>();
+
+    public BuildLogScanner(Run<?, ?> build) {
+        this(build, REVERSE_SCAN_BYTES, REVERSE_SCAN_FALLBACK);
+    }
+
+    BuildLogScanner(Run<?, ?> build, long reverseScanBytes, boolean reverseScanFallback) {
+        this.build = build;
+        this.reverseScanBytes = reverseScanBytes;
+        this.reverseScanFallback = reverseScanFallback;
+    }
+
+    public synchronized void register(Extractor extractor) {
+        pending.add(extractor);
+    }
+
+    /**
+     * Passes the build log to all extractors registered since the previous scan. Does nothing if there are none, so
+     * every generator can call this before reading the results of its extractor.
+     */
+    public synchronized void scan() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Extractor> forward = new ArrayList<>();
+        List<ReverseExtractor> reverse = new ArrayList<>();
+        for (Extractor extractor : pending) {
+            if (extractor instanceof ReverseExtractor reverseExtractor) {
+                reverse.add(reverseExtractor);
+            } else {
+                forward.add(extractor);
+            }
+        }
+        pending.clear();
+
+        if (!reverse.isEmpty()) {
+            File logFile = build.getLogFile();
+            if (canReadBackwards(logFile)) {
+                for (ReverseExtractor extractor : scanBackwards(logFile, reverse)) {
+                    extractor.reset();
+                    if (reverseScanFallback) {
+                        forward.add(extractor);
+                    } else {
+                        logger.fine(String.format("%s not done within the last %d bytes of the log of %s",
+                                extractor.getClass().getSimpleName(), reverseScanBytes, build));
+                    }
+                }
+            } else {
+                forward.addAll(reverse);
+            }
+        }
+        if (!forward.isEmpty()) {
+            scanForwards(forward);
+        }
+    }
+
+    private void scanForwards(List<Extractor> extractors) throws IOException {
+        Dispatcher dispatcher = new Dispatcher(extractors);
+        try (BufferedReader br = new BufferedReader(build.getLogReader())) {
+            String line;
+            while (!dispatcher.isDone() && (line = br.readLine()) != null) {
+                dispatcher.dispatch(line, Extractor::accept);
+            }
+        }
+    }
+
+    /**
+     * Reads the log file backwards in blocks of {@value #BLOCK_SIZE} bytes, until all extractors are done, the
+     * beginning of the file is reached or the byte budget is used up.
+     *
+     * @return the extractors which are not done although the beginning of the file was not reached
+     */
+    private List<ReverseExtractor> scanBackwards(File logFile, List<ReverseExtractor> extractors) throws IOException {
+        Dispatcher dispatcher = new Dispatcher(extractors);
+        BiPredicate<Extractor, String> accept = (extractor, line) -> ((ReverseExtractor) extractor).acceptFromEnd(line);
+        Charset charset = build.getCharset();
+
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "r")) {
+            long position = file.length();
+            long limit = Math.max(0, position - reverseScanBytes);
+            byte[] block = new byte[BLOCK_SIZE];
+            // bytes of the line which starts before the block read last
+            byte[] carry = new byte[0];
+            while (position > limit && !dispatcher.isDone()) {
+                int length = (int) Math.min(BLOCK_SIZE, position - limit);
+                position -= length;
+                file.seek(position);
+                file.readFully(block, 0, length);
+
+                byte[] buffer = new byte[length + carry.length];
+                System.arraycopy(block, 0, buffer, 0, length);
+                System.arraycopy(carry, 0, buffer, length, carry.length);
+                int end = buffer.length;
+                for (int i = buffer.length - 1; i >= 0 && !dispatcher.isDone(); i--) {
+                    if (buffer[i] == '\n') {
+                        dispatcher.dispatch(decode(buffer, i + 1, end, charset), accept);
+                        end = i;
+                    }
+                }
+                carry = Arrays.copyOf(buffer, end);
+            }
+            if (position == 0 && !dispatcher.isDone()) {
+                dispatcher.dispatch(decode(carry, 0, carry.length, charset), accept);
+                return List.of();
+            }
+        }
+        return dispatcher.getPending();
+    }
+
+    /**
+     * Log files can only be read backwards line by line if they are not compressed and every line feed byte is a
+     * line feed, which holds for UTF-8 and other ASCII compatible charsets.
+     */
+    private boolean canReadBackwards(File logFile) {
+        Charset charset = build.getCharset();
+        return logFile != null && logFile.isFile() && !logFile.getName().endsWith(".gz")
+                && charset != null && Arrays.equals("\n".getBytes(charset), new byte[]{'\n'});
+    }
+
+    private static String decode(byte[] bytes, int start, int end, Charset charset) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        return new String(bytes, start, end - start, charset);
+    }
+
+    /**
+     * Passes lines to the extractors whose markers they contain and keeps track of the extractors which are done.
+     * Each distinct marker is searched once per line, also if several extractors share it or it overlaps with
+     * another marker, and only as long as one of its extractors is not done.
+     */
+    private static final class Dispatcher {
+
+        private final List<? extends Extractor> extractors;
+        private final String[] markers;
+        // indexes of the extractors owning each marker
+        private final int[][] markerOwners;
+        private final boolean[] done;
+        private final boolean[] hit;
+        private int remaining;
+
+        private Dispatcher(List<? extends Extractor> extractors) {
+            this.extractors = extractors;
+            this.done = new boolean[extractors.size()];
+            this.hit = new boolean[extractors.size()];
+            Map<String, List<Integer>> owners = new LinkedHashMap<>();
+            for (int i = 0; i < extractors.size(); i++) {
+                List<String> extractorMarkers = extractors.get(i).getMarkers();
+                if (extractorMarkers.isEmpty()) {
+                    // no line is ever passed to it
+                    done[i] = true;
+                    continue;
+                }
+                remaining++;
+                for (String marker : extractorMarkers) {
+                    List<Integer> markerOwner = owners.computeIfAbsent(marker, m -> new ArrayList<>());
+                    if (!markerOwner.contains(i)) {
+                        markerOwner.add(i);
+                    }
+                }
+            }
+            this.markers = owners.keySet().toArray(new String[0]);
+            this.markerOwners = owners.values().stream()
+                    .map(list -> list.stream().mapToInt(Integer::intValue).toArray())
+                    .toArray(int[][]::new);
+        }
+
+        private boolean isDone() {
+            return remaining == 0;
+        }
+
+        private void dispatch(String line, BiPredicate<Extractor, String> accept) {
+            line = ConsoleNote.removeNotes(line);
+            boolean found = false;
+            for (int m = 0; m < markers.length; m++) {
+                if (isPending(markerOwners[m]) && line.contains(markers[m])) {
+                    for (int owner : markerOwners[m]) {
+                        hit[owner] = true;
+                    }
+                    found = true;
+                }
+            }
+            if (!found) {
+                return;
+            }
+            for (int i = 0; i < extractors.size(); i++) {
+                if (hit[i] && !done[i] && accept.test(extractors.get(i), line)) {
+                    done[i] = true;
+                    remaining--;
+                }
+            }
+            Arrays.fill(hit, false);
+        }
+
+        private boolean isPending(int[] owners) {
+            for (int owner : owners) {
+                if (!done[owner]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends Extractor> List<T> getPending() {
+            List<T> pending = new ArrayList<>();
+            for (int i = 0; i < extractors.size(); i++) {
+                if (!done[i]) {
+                    pending.add((T) extractors.get(i));
+                }
+            }
+            return pending;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.labels.LabelAtom;
+import org.jenkinsci.plugins.workflow.actions.ErrorAction;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.actions.WarningAction;
+import org.jenkinsci.plugins.workflow.actions.WorkspaceAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowGraphWalker;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.steps.FlowInterruptedException;
+import org.jenkinsci.plugins.workflow.support.actions.PauseAction;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.WeakHashMap;
+
+/**
+ * What the point generators need to know about the flow graph of a pipeline build, gathered in a single walk over the
+ * graph: the agents the build ran on, and the stages and parallel branches with their timings, results and agents.
+ * <p>
+ * The index of a build is created when it is first needed and shared by all generators. It is reused until the heads
+ * of the flow graph change, so that it is only rebuilt for builds which are still running.
+ */
+public final class FlowGraphIndex {
+
+    private static final FlowGraphIndex EMPTY = new FlowGraphIndex(List.of(), List.of(), List.of());
+
+    // by build, without keeping builds in memory
+    private static final Map<Run<?, ?>, Slot> indexes = new WeakHashMap<>();
+
+    private final List<String> headIds;
+    private final List<Agent> agents;
+    private final List<Block> blocks;
+
+    private FlowGraphIndex(List<String> headIds, List<Agent> agents, List<Block> blocks) {
+        this.headIds = headIds;
+        this.agents = agents;
+        this.blocks = blocks;
+    }
+
+    /**
+     * @return the index of the given build, which is empty unless the build is a pipeline
+     */
+    public static FlowGraphIndex of(Run<?, ?> build) {
+        if (!(build instanceof FlowExecutionOwner.Executable)) {
+            return EMPTY;
+        }
+        FlowExecutionOwner owner = ((FlowExecutionOwner.Executable) build).asFlowExecutionOwner();
+        FlowExecution execution = owner == null ? null : owner.getOrNull();
+        if (execution == null) {
+            return EMPTY;
+        }
+
+        List<String> headIds = new ArrayList<>();
+        for (FlowNode head : execution.getCurrentHeads()) {
+            headIds.add(head.getId());
+        }
+        Slot slot;
+        synchronized (indexes) {
+            slot = indexes.computeIfAbsent(build, b -> new Slot());
+        }
+        synchronized (slot) {
+            if (slot.index == null || !slot.index.headIds.equals(headIds)) {
+                slot.index = scan(execution, headIds);
+            }
+            return slot.index;
+        }
+    }
+
+    private static FlowGraphIndex scan(FlowExecution execution, List<String> headIds) {
+        List<Agent> agents = new ArrayList<>();
+        Map<String, Block> blocks = new HashMap<>();
+        Map<String, String> enclosingIds = new HashMap<>();
+        Map<String, Long> endTimes = new HashMap<>();
+        Map<String, Result> endResults = new HashMap<>();
+        // by id of the node block allocating the workspace
+        Map<String, Workspace> workspaces = new HashMap<>();
+        // pauses and warnings, by id of the innermost block they belong to
+        List<Map.Entry<String, Long>> pauses = new ArrayList<>();
+        List<Map.Entry<String, Result>> warnings = new ArrayList<>();
+
+        for (FlowNode node : new FlowGraphWalker(execution)) {
+            WorkspaceAction workspaceAction = node.getAction(WorkspaceAction.class);
+            if (workspaceAction != null) {
+                StringJoiner labels = new StringJoiner(", ");
+                labels.setEmptyValue("");
+                for (LabelAtom label : workspaceAction.getLabels()) {
+                    labels.add(label.getName());
+                }
+                agents.add(new Agent(workspaceAction.getNode(), labels.toString()));
+                workspaces.put(node.getId(), new Workspace(workspaceAction.getNode(), TimingAction.getStartTime(node)));
+            }
+
+            String blockId = node instanceof BlockStartNode ? node.getId() : node.getEnclosingId();
+            if (blockId != null) {
+                long pauseMillis = PauseAction.getPauseMillis(node);
+                if (pauseMillis > 0) {
+                    pauses.add(Map.entry(blockId, pauseMillis));
+                }
+                WarningAction warningAction = node.getPersistentAction(WarningAction.class);
+                if (warningAction != null) {
+                    warnings.add(Map.entry(blockId, warningAction.getResult()));
+                }
+            }
+
+            if (node instanceof BlockStartNode) {
+                enclosingIds.put(node.getId(), node.getEnclosingId());
+                String name = getBlockName(node);
+                if (name != null) {
+                    blocks.put(node.getId(), new Block(node.getId(), name, isParallelBranch(node),
+                            TimingAction.getStartTime(node)));
+                }
+            } else if (node instanceof BlockEndNode<?> end) {
+                String startId = end.getStartNode().getId();
+                endTimes.put(startId, TimingAction.getStartTime(node));
+                endResults.put(startId, getResult(end));
+            }
+        }
+
+        List<Block> sortedBlocks = new ArrayList<>(blocks.values());
+        for (Block block : sortedBlocks) {
+            block.endMillis = endTimes.getOrDefault(block.id, -1L);
+            block.result = endResults.get(block.id);
+            for (String id = enclosingIds.get(block.id); id != null; id = enclosingIds.get(id)) {
+                if (block.parentId == null && blocks.containsKey(id)) {
+                    block.parentId = id;
+                }
+                if (block.agentName == null && workspaces.containsKey(id)) {
+                    block.agentName = workspaces.get(id).nodeName;
+                }
+            }
+        }
+
+        // pauses and warnings count for all blocks enclosing them
+        for (Map.Entry<String, Long> pause : pauses) {
+            for (Block block : enclosingBlocks(pause.getKey(), blocks, enclosingIds)) {
+                block.pauseMillis += pause.getValue();
+            }
+        }
+        for (Map.Entry<String, Result> warning : warnings) {
+            for (Block block : enclosingBlocks(warning.getKey(), blocks, enclosingIds)) {
+                if (block.result != null) {
+                    block.result = block.result.combine(warning.getValue());
+                }
+            }
+        }
+
+        // blocks which are not run on an agent, such as parallel branches allocating their own, take the agent which
+        // was allocated first within them
+        for (Map.Entry<String, Workspace> workspace : workspaces.entrySet()) {
+            for (Block block : enclosingBlocks(enclosingIds.get(workspace.getKey()), blocks, enclosingIds)) {
+                if (block.nestedAgentName == null || block.nestedAgentStartMillis > workspace.getValue().startMillis) {
+                    block.nestedAgentName = workspace.getValue().nodeName;
+                    block.nestedAgentStartMillis = workspace.getValue().startMillis;
+                }
+            }
+        }
+        sortedBlocks.sort(Comparator.comparingLong((Block block) -> block.startMillis)
+                .thenComparing(block -> block.id, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return new FlowGraphIndex(List.copyOf(headIds), agents, sortedBlocks);
+    }
+
+    /**
+     * @return the name of the stage or parallel branch started by the given node, or null if it starts neither
+     */
+    @CheckForNull
+    static String getBlockName(FlowNode start) {
+        ThreadNameAction threadNameAction = start.getAction(ThreadNameAction.class);
+        if (threadNameAction != null) {
+            return threadNameAction.getThreadName();
+        }
+        LabelAction labelAction = start.getAction(LabelAction.class);
+        return labelAction != null ? labelAction.getDisplayName() : null;
+    }
+
+    static boolean isParallelBranch(FlowNode start) {
+        return start.getAction(ThreadNameAction.class) != null;
+    }
+
+    /**
+     * @return the result of the block ended by the given node, not taking warnings within the block into account
+     */
+    static Result getResult(BlockEndNode<?> end) {
+        ErrorAction errorAction = end.getPersistentAction(ErrorAction.class);
+        if (errorAction == null) {
+            return Result.SUCCESS;
+        }
+        return errorAction.getError() instanceof FlowInterruptedException interrupted
+                ? interrupted.getResult() : Result.FAILURE;
+    }
+
+    /**
+     * @return the stages and parallel branches enclosing the block with the given id, including the block itself
+     */
+    private static List<Block> enclosingBlocks(@CheckForNull String blockId, Map<String, Block> blocks,
+                                               Map<String, String> enclosingIds) {
+        List<Block> enclosing = new ArrayList<>();
+        for (String id = blockId; id != null; id = enclosingIds.get(id)) {
+            Block block = blocks.get(id);
+            if (block != null) {
+                enclosing.add(block);
+            }
+        }
+        return enclosing;
+    }
+
+    /**
+     * @return the agents of the build, in the order in which the flow graph is walked
+     */
+    public List<Agent> getAgents() {
+        return agents;
+    }
+
+    /**
+     * @return the stages and parallel branches of the build, ordered by their start
+     */
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @param nodeName name of the agent
+     * @param labels   labels of the agent, separated by commas
+     */
+    public record Agent(String nodeName, String labels) {
+    }
+
+    /**
+     * A stage or parallel branch.
+     */
+    public static final class Block {
+
+        private final String id;
+        private final String name;
+        private final boolean parallelBranch;
+        private final long startMillis;
+        private long endMillis;
+        private long pauseMillis;
+        private Result result;
+        private String parentId;
+        private String agentName;
+        // the agent allocated first within the block
+        private String nestedAgentName;
+        private long nestedAgentStartMillis = Long.MAX_VALUE;
+
+        private Block(String id, String name, boolean parallelBranch, long startMillis) {
+            this.id = id;
+            this.name = name;
+            this.parallelBranch = parallelBranch;
+            this.startMillis = startMillis;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isParallelBranch() {
+            return parallelBranch;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        /**
+         * @return the end of the block, or -1 if it has not ended yet
+         */
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        /**
+         * @return the time for which the block was paused, such as waiting for input
+         */
+        public long getPauseMillis() {
+            return pauseMillis;
+        }
+
+        /**
+         * @return the result of the block, or null if it has not ended yet
+         */
+        @CheckForNull
+        public Result getResult() {
+            return result;
+        }
+
+        /**
+         * @return the id of the innermost stage or parallel branch enclosing this one, or null if there is none
+         */
+        @CheckForNull
+        public String getParentId() {
+            return parentId;
+        }
+
+        /**
+         * @return the agent the block ran on, or the first agent allocated within it, or null if there is none
+         */
+        @CheckForNull
+        public String getAgentName() {
+            return agentName != null ? agentName : nestedAgentName;
+        }
+    }
+
+    /**
+     * @param nodeName    name of the agent
+     * @param startMillis start of the node block allocating the workspace
+     */
+    private record Workspace(String nodeName, long startMillis) {
+    }
+
+    private static final class Slot {
+
+        private FlowGraphIndex index;
+    }
+}
@@ -0,0 +1,189 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import hudson.tasks.junit.CaseResult;
+
+import javax.annotation.CheckForNull;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Compact record of the status and duration bucket of every test case published by a build, used to publish only the
+ * test cases which changed since the previous build.
+ * <p>
+ * Each test case is stored as a single {@code long}: the upper 56 bits are a hash of the test name, the lower 8 bits
+ * hold the status ordinal and the power-of-two bucket of the duration in milliseconds. The sorted entries are
+ * persisted as a Base64 string, so that large test suites do not bloat the build record.
+ */
+public final class JUnitFingerprintAction extends InvisibleAction {
+
+    /** Number of previous builds searched for a fingerprint. **/
+    static final int MAX_LOOKBACK = 10;
+
+    static final int NOT_FOUND = -1;
+
+    private static final int VALUE_BITS = 8;
+    private static final int BUCKET_BITS = 5;
+    private static final int BUCKET_MASK = (1 << BUCKET_BITS) - 1;
+    private static final long KEY_MASK = ~((1L << VALUE_BITS) - 1);
+
+    private final String entries;
+
+    private transient long[] decoded;
+
+    JUnitFingerprintAction(long[] sortedEntries) {
+        ByteBuffer buffer = ByteBuffer.allocate(sortedEntries.length * Long.BYTES);
+        buffer.asLongBuffer().put(sortedEntries);
+        this.entries = Base64.getEncoder().encodeToString(buffer.array());
+        this.decoded = sortedEntries;
+    }
+
+    /**
+     * @return the fingerprint of the closest of the previous {@value #MAX_LOOKBACK} builds which has one
+     */
+    @CheckForNull
+    static JUnitFingerprintAction findBaseline(Run<?, ?> build) {
+        Run<?, ?> previous = build.getPreviousBuild();
+        for (int i = 0; previous != null && i < MAX_LOOKBACK; i++) {
+            JUnitFingerprintAction action = previous.getAction(JUnitFingerprintAction.class);
+            if (action != null) {
+                return action;
+            }
+            previous = previous.getPreviousBuild();
+        }
+        return null;
+    }
+
+    /**
+     * @return the key of a test case, a 64-bit FNV-1a hash of its name with the value bits cleared
+     */
+    static long key(String testName) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < testName.length(); i++) {
+            hash ^= testName.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash & KEY_MASK;
+    }
+
+    /**
+     * @return the value of a test case, where FIXED counts as PASSED and REGRESSION as FAILED, so that a test case is
+     * not reported again just because the previous build had a different outcome
+     */
+    static int value(CaseResult.Status status, float durationSeconds) {
+        CaseResult.Status outcome = switch (status) {
+            case FIXED -> CaseResult.Status.PASSED;
+            case REGRESSION -> CaseResult.Status.FAILED;
+            default -> status;
+        };
+        return outcome.ordinal() << BUCKET_BITS | bucket(durationSeconds);
+    }
+
+    static int status(int value) {
+        return value >>> BUCKET_BITS;
+    }
+
+    static int bucket(int value) {
+        return value & BUCKET_MASK;
+    }
+
+    /**
+     * @return 0 for durations below one millisecond, otherwise 1 plus the base 2 logarithm of the duration in
+     * milliseconds, capped to fit into the bucket bits
+     */
+    static int bucket(float durationSeconds) {
+        long millis = (long) (durationSeconds * 1000);
+        if (millis < 1) {
+            return 0;
+        }
+        return Math.min(BUCKET_MASK, 64 - Long.numberOfLeadingZeros(millis));
+    }
+
+    static long entry(long key, int value) {
+        return key | value;
+    }
+
+    int size() {
+        return getEntries().length;
+    }
+
+    /**
+     * @return the value stored for the given key, or {@value #NOT_FOUND} if this fingerprint does not contain it
+     */
+    int lookup(long key) {
+        long[] sorted = getEntries();
+        int index = Arrays.binarySearch(sorted, key);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        if (index < sorted.length && (sorted[index] & KEY_MASK) == key) {
+            return (int) (sorted[index] & ~KEY_MASK);
+        }
+        return NOT_FOUND;
+    }
+
+    private long[] getEntries() {
+        if (decoded == null) {
+            long[] values = new long[0];
+            if (entries != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(entries));
+                values = new long[buffer.remaining() / Long.BYTES];
+                buffer.asLongBuffer().get(values);
+            }
+            decoded = values;
+        }
+        return decoded;
+    }
+
+    /**
+     * Collects the entries of a new fingerprint.
+     */
+    static final class Builder {
+
+        private long[] entries = new long[64];
+        private int count;
+
+        void add(long key, int value) {
+            if (count == entries.length) {
+                entries = Arrays.copyOf(entries, count * 2);
+            }
+            entries[count++] = entry(key, value);
+        }
+
+        /**
+         * @return the number of test cases of the previous fingerprint which were not added to this one
+         */
+        int countRemoved(@CheckForNull JUnitFingerprintAction previous) {
+            if (previous == null) {
+                return 0;
+            }
+            long[] current = sorted();
+            int removed = 0;
+            for (long entry : previous.getEntries()) {
+                long key = entry & KEY_MASK;
+                int index = Arrays.binarySearch(current, key);
+                if (index < 0) {
+                    index = -index - 1;
+                }
+                if (index >= current.length || (current[index] & KEY_MASK) != key) {
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        JUnitFingerprintAction build() {
+            return new JUnitFingerprintAction(sorted());
+        }
+
+        private long[] sorted() {
+            if (entries.length != count) {
+                entries = Arrays.copyOf(entries, count);
+            }
+            Arrays.sort(entries);
+            return entries;
+        }
+    }
+}
@@ -4,14 +4,22 @@ import hudson.EnvVars;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.SuiteResult;
 import hudson.tasks.test.AbstractTestResultAction;
 import jenkinsci.plugins.influxdb.models.AbstractPoint;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
 import org.apache.commons.collections.iterators.ReverseListIterator;
 import org.apache.commons.lang.StringUtils;
 
+import javax.annotation.CheckForNull;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class JUnitPointGenerator extends AbstractPointGenerator {
 
@@ -24,11 +32,60 @@ public class JUnitPointGenerator extends AbstractPointGenerator {
     private static final String JUNIT_DURATION = "test_duration";
     private static final String JUNIT_COUNT = "test_count";
 
+    private static final String JUNIT_AGGREGATION_LEVEL = "aggregation_level";
+    private static final String JUNIT_GROUP_NAME = "group_name";
+    private static final String JUNIT_DURATION_SUM = "test_duration_sum";
+    private static final String JUNIT_DURATION_MIN = "test_duration_min";
+    private static final String JUNIT_DURATION_MAX = "test_duration_max";
+    private static final String JUNIT_DURATION_P50 = "test_duration_p50";
+    private static final String JUNIT_DURATION_P95 = "test_duration_p95";
+
+    private static final String JUNIT_NEW_COUNT = "test_new_count";
+    private static final String JUNIT_STATUS_CHANGED_COUNT = "test_status_changed_count";
+    private static final String JUNIT_DURATION_CHANGED_COUNT = "test_duration_changed_count";
+    private static final String JUNIT_UNCHANGED_COUNT = "test_unchanged_count";
+    private static final String JUNIT_REMOVED_COUNT = "test_removed_count";
+    private static final String JUNIT_BASELINE_FOUND = "baseline_found";
+
+    static final String AGGREGATION_ENV = "LOG_JUNIT_AGGREGATION";
+    static final String CASES_ENV = "LOG_JUNIT_CASES";
+    static final String SLOW_THRESHOLD_ENV = "LOG_JUNIT_SLOW_THRESHOLD";
+    static final String DELTA_ENV = "LOG_JUNIT_DELTA";
+    static final String DELTA_DURATION_BUCKETS_ENV = "LOG_JUNIT_DELTA_DURATION_BUCKETS";
+
+    static final int DEFAULT_DELTA_DURATION_BUCKETS = 2;
+
+    static final int CHUNK_SIZE = 5000;
+
+    /**
+     * Level at which test results are rolled up into {@code junit_aggregate_data} points.
+     */
+    enum Aggregation {
+        CASE, CLASS, SUITE, PIPELINE_STEP
+    }
+
+    /**
+     * Test cases which get a {@code junit_data} point of their own.
+     */
+    enum Cases {
+        ALL, FAILED_OR_SLOW, NONE
+    }
+
     private final String customPrefix;
     private final TaskListener listener;
 
     private final EnvVars env;
 
+    private Aggregation aggregation;
+    private Cases cases;
+    private double slowThreshold;
+    private Delta delta;
+    @CheckForNull
+    private JUnitFingerprintAction fingerprint;
+
+    // the enclosing flow nodes are those of the suite, so they are only looked up once per suite
+    private final Map<SuiteResult, String> enclosingFlowNodeStrings = new IdentityHashMap<>();
+
     public JUnitPointGenerator(Run<?, ?> build, TaskListener listener,
                                ProjectNameRenderer projectNameRenderer,
                                long timestamp, String jenkinsEnvParameterTag,
@@ -53,45 +110,280 @@ public class JUnitPointGenerator extends AbstractPointGenerator {
 
     @Override
     public AbstractPoint[] generate() {
-
         List<AbstractPoint> points = new ArrayList<>();
+        generate(points::addAll);
+        return points.toArray(new AbstractPoint[0]);
+    }
+
+    /**
+     * Generates points for the test cases selected by {@value #CASES_ENV} and, unless {@value #AGGREGATION_ENV} is
+     * {@code case}, one aggregate point per class, suite or pipeline step. If {@value #DELTA_ENV} is set, only test
+     * cases which changed since the previous build are published, followed by a {@code junit_delta_data} summary.
+     * Test cases are visited once, and points are passed on in chunks of {@value #CHUNK_SIZE} points.
+     */
+    @Override
+    public void generate(Consumer<List<AbstractPoint>> consumer) {
+        readOptions();
+
+        //get tests from build
+        AbstractTestResultAction testResultAction = build.getAction(AbstractTestResultAction.class);
 
-        // iterate each caseResult to get suiteName, testName and testStatus
-        List<CaseResult> allTestResults = getAllTestResults(build);
+        Map<String, TestGroup> groups = new LinkedHashMap<>();
 
-        for (CaseResult caseResult : allTestResults) {
-            AbstractPoint point = buildPoint("junit_data", customPrefix, build)
-                    .addField(JUNIT_SUITE_NAME, caseResult.getSuiteResult().getName())
-                    .addField(JUNIT_TEST_NAME, caseResult.getName())
-                    .addField(JUNIT_TEST_CLASS_FULL_NAME, caseResult.getClassName())
-                    .addField(JUNIT_PIPELINE_STEP, getCaseResultEnclosingFlowNodeString(caseResult))
-                    .addField(JUNIT_TEST_STATUS, caseResult.getStatus().toString())
-                    .addField(JUNIT_TEST_STATUS_ORDINAL, caseResult.getStatus().ordinal())
-                    .addField(JUNIT_DURATION, caseResult.getDuration())
-                    .addField(JUNIT_COUNT, 1L);
-            points.add(point);
+        // iterate failed, skipped and passed tests in turn, without copying them into a single list
+        List<AbstractPoint> chunk = new ArrayList<>();
+        for (List<?> testResults : List.<List<?>>of(
+                testResultAction.getFailedTests(),
+                testResultAction.getSkippedTests(),
+                testResultAction.getPassedTests())) {
+            for (Object testResult : testResults) {
+                CaseResult caseResult = (CaseResult) testResult;
+                if (aggregation != Aggregation.CASE) {
+                    groups.computeIfAbsent(getGroupName(caseResult), TestGroup::new).add(caseResult);
+                }
+                boolean publishedIndividually = isPublishedIndividually(caseResult);
+                boolean changed = delta == null || delta.track(caseResult, publishedIndividually);
+                if (!changed || !publishedIndividually) {
+                    continue;
+                }
+                chunk.add(generateCasePoint(caseResult));
+                if (chunk.size() == CHUNK_SIZE) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>();
+                }
+            }
         }
 
-        return points.toArray(new AbstractPoint[0]);
+        for (TestGroup group : groups.values()) {
+            chunk.add(generateGroupPoint(group));
+            if (chunk.size() == CHUNK_SIZE) {
+                consumer.accept(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        if (delta != null) {
+            chunk.add(generateDeltaPoint(delta));
+            fingerprint = delta.fingerprint.build();
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
     }
 
-    private List<CaseResult> getAllTestResults(Run<?, ?> build) {
-        //get tests from build
-        AbstractTestResultAction testResultAction = build.getAction(AbstractTestResultAction.class);
+    /**
+     * Stores the fingerprint recorded by the last {@link #generate(Consumer)} on the build, as the baseline of the
+     * next build. Only to be called once the points were published, as the test cases recorded in it are not
+     * reported again until they change.
+     */
+    public void attachFingerprint() {
+        if (fingerprint != null) {
+            build.addOrReplaceAction(fingerprint);
+        }
+    }
 
-        // create a list that contains all tests
-        List<CaseResult> allTestResults = new ArrayList<>();
-        allTestResults.addAll(testResultAction.getFailedTests());
-        allTestResults.addAll(testResultAction.getSkippedTests());
-        allTestResults.addAll(testResultAction.getPassedTests());
+    private void readOptions() {
+        aggregation = parseOption(Aggregation.class, AGGREGATION_ENV, Aggregation.CASE);
+        cases = parseOption(Cases.class, CASES_ENV, aggregation == Aggregation.CASE ? Cases.ALL : Cases.FAILED_OR_SLOW);
+        String threshold = env.get(SLOW_THRESHOLD_ENV);
+        slowThreshold = Double.POSITIVE_INFINITY;
+        if (StringUtils.isNotBlank(threshold)) {
+            try {
+                slowThreshold = Double.parseDouble(threshold.trim());
+            } catch (NumberFormatException e) {
+                listener.getLogger().println(String.format("[InfluxDB Plugin] Ignoring invalid %s '%s'", SLOW_THRESHOLD_ENV, threshold));
+            }
+        }
+        delta = null;
+        fingerprint = null;
+        if (Boolean.parseBoolean(env.get(DELTA_ENV))) {
+            int durationBuckets = DEFAULT_DELTA_DURATION_BUCKETS;
+            String buckets = env.get(DELTA_DURATION_BUCKETS_ENV);
+            if (StringUtils.isNotBlank(buckets)) {
+                try {
+                    durationBuckets = Math.max(1, Integer.parseInt(buckets.trim()));
+                } catch (NumberFormatException e) {
+                    listener.getLogger().println(String.format("[InfluxDB Plugin] Ignoring invalid %s '%s'", DELTA_DURATION_BUCKETS_ENV, buckets));
+                }
+            }
+            delta = new Delta(JUnitFingerprintAction.findBaseline(build), durationBuckets);
+        }
+    }
 
-        return allTestResults;
+    private <T extends Enum<T>> T parseOption(Class<T> type, String name, T defaultValue) {
+        String value = env.get(name);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            listener.getLogger().println(String.format("[InfluxDB Plugin] Ignoring invalid %s '%s', using '%s'",
+                    name, value, defaultValue.name().toLowerCase(Locale.ROOT)));
+            return defaultValue;
+        }
+    }
+
+    private boolean isPublishedIndividually(CaseResult caseResult) {
+        return switch (cases) {
+            case ALL -> true;
+            case FAILED_OR_SLOW -> caseResult.isFailed() || caseResult.getDuration() >= slowThreshold;
+            case NONE -> false;
+        };
+    }
+
+    private String getGroupName(CaseResult caseResult) {
+        return switch (aggregation) {
+            case CLASS -> caseResult.getClassName();
+            case SUITE -> caseResult.getSuiteResult().getName();
+            case PIPELINE_STEP -> getCaseResultEnclosingFlowNodeString(caseResult);
+            case CASE -> caseResult.getFullName();
+        };
+    }
+
+    private AbstractPoint generateGroupPoint(TestGroup group) {
+        AbstractPoint point = buildPoint("junit_aggregate_data", customPrefix, build)
+                .addField(JUNIT_AGGREGATION_LEVEL, aggregation.name().toLowerCase(Locale.ROOT))
+                .addField(JUNIT_GROUP_NAME, group.name)
+                .addField(JUNIT_COUNT, (long) group.count)
+                .addField(JUNIT_DURATION_SUM, group.durationSum)
+                .addField(JUNIT_DURATION_MIN, group.durationMin)
+                .addField(JUNIT_DURATION_MAX, group.durationMax)
+                .addField(JUNIT_DURATION_P50, group.percentile(0.5))
+                .addField(JUNIT_DURATION_P95, group.percentile(0.95));
+        CaseResult.Status[] statuses = CaseResult.Status.values();
+        for (int i = 0; i < statuses.length; i++) {
+            point.addField("test_" + statuses[i].name().toLowerCase(Locale.ROOT) + "_count", (long) group.statusCounts[i]);
+        }
+        return point;
+    }
+
+    private AbstractPoint generateDeltaPoint(Delta delta) {
+        int removed = delta.fingerprint.countRemoved(delta.baseline);
+        int unchanged = delta.testCount - delta.newCount - delta.statusChangedCount - delta.durationChangedCount;
+        return buildPoint("junit_delta_data", customPrefix, build)
+                .addField(JUNIT_BASELINE_FOUND, delta.baseline != null)
+                .addField(JUNIT_COUNT, (long) delta.testCount)
+                .addField(JUNIT_NEW_COUNT, (long) delta.newCount)
+                .addField(JUNIT_STATUS_CHANGED_COUNT, (long) delta.statusChangedCount)
+                .addField(JUNIT_DURATION_CHANGED_COUNT, (long) delta.durationChangedCount)
+                .addField(JUNIT_UNCHANGED_COUNT, (long) unchanged)
+                .addField(JUNIT_REMOVED_COUNT, (long) removed);
+    }
+
+    private AbstractPoint generateCasePoint(CaseResult caseResult) {
+        // get suiteName, testName and testStatus of the caseResult
+        return buildPoint("junit_data", customPrefix, build)
+                .addField(JUNIT_SUITE_NAME, caseResult.getSuiteResult().getName())
+                .addField(JUNIT_TEST_NAME, caseResult.getName())
+                .addField(JUNIT_TEST_CLASS_FULL_NAME, caseResult.getClassName())
+                .addField(JUNIT_PIPELINE_STEP, getCaseResultEnclosingFlowNodeString(caseResult))
+                .addField(JUNIT_TEST_STATUS, caseResult.getStatus().toString())
+                .addField(JUNIT_TEST_STATUS_ORDINAL, caseResult.getStatus().ordinal())
+                .addField(JUNIT_DURATION, caseResult.getDuration())
+                .addField(JUNIT_COUNT, 1L);
     }
 
     private String getCaseResultEnclosingFlowNodeString(CaseResult caseResult) {
+        SuiteResult suiteResult = caseResult.getSuiteResult();
+        if (suiteResult == null) {
+            return joinEnclosingFlowNodeNames(caseResult);
+        }
+        return enclosingFlowNodeStrings.computeIfAbsent(suiteResult, s -> joinEnclosingFlowNodeNames(caseResult));
+    }
+
+    private static String joinEnclosingFlowNodeNames(CaseResult caseResult) {
         if (!caseResult.getEnclosingFlowNodeNames().isEmpty()) {
             return StringUtils.join(new ReverseListIterator(caseResult.getEnclosingFlowNodeNames()), " / ");
         }
         return "";
     }
+
+    /**
+     * Compares test cases against the fingerprint of a previous build and records the new fingerprint. Test cases
+     * which are not published keep their previously published value, so that slow drifts in duration are still
+     * detected, and those which were never published are left out.
+     */
+    private static final class Delta {
+
+        private final JUnitFingerprintAction baseline;
+        private final int durationBuckets;
+        private final JUnitFingerprintAction.Builder fingerprint = new JUnitFingerprintAction.Builder();
+        private int testCount;
+        private int newCount;
+        private int statusChangedCount;
+        private int durationChangedCount;
+
+        private Delta(JUnitFingerprintAction baseline, int durationBuckets) {
+            this.baseline = baseline;
+            this.durationBuckets = durationBuckets;
+        }
+
+        /**
+         * @param published whether the test case is published if it changed
+         * @return true, if the test case is new or its status or duration bucket changed since it was last published
+         */
+        private boolean track(CaseResult caseResult, boolean published) {
+            long key = JUnitFingerprintAction.key(caseResult.getFullName());
+            int value = JUnitFingerprintAction.value(caseResult.getStatus(), caseResult.getDuration());
+            int previous = baseline != null ? baseline.lookup(key) : JUnitFingerprintAction.NOT_FOUND;
+            testCount++;
+
+            boolean changed = true;
+            if (previous == JUnitFingerprintAction.NOT_FOUND) {
+                newCount++;
+            } else if (JUnitFingerprintAction.status(previous) != JUnitFingerprintAction.status(value)) {
+                statusChangedCount++;
+            } else if (Math.abs(JUnitFingerprintAction.bucket(previous) - JUnitFingerprintAction.bucket(value)) >= durationBuckets) {
+                durationChangedCount++;
+            } else {
+                changed = false;
+            }
+            if (changed && published) {
+                fingerprint.add(key, value);
+            } else if (previous != JUnitFingerprintAction.NOT_FOUND) {
+                fingerprint.add(key, previous);
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Counts, status histogram and duration statistics of a group of test cases.
+     */
+    private static final class TestGroup {
+
+        private final String name;
+        private final int[] statusCounts = new int[CaseResult.Status.values().length];
+        private float[] durations = new float[16];
+        private int count;
+        private double durationSum;
+        private double durationMin = Double.POSITIVE_INFINITY;
+        private double durationMax = Double.NEGATIVE_INFINITY;
+
+        private TestGroup(String name) {
+            this.name = name;
+        }
+
+        private void add(CaseResult caseResult) {
+            float duration = caseResult.getDuration();
+            statusCounts[caseResult.getStatus().ordinal()]++;
+            if (count == durations.length) {
+                durations = Arrays.copyOf(durations, count * 2);
+            }
+            durations[count++] = duration;
+            durationSum += duration;
+            durationMin = Math.min(durationMin, duration);
+            durationMax = Math.max(durationMax, duration);
+        }
+
+        /**
+         * @return the duration below which the given share of test cases completed, using the nearest-rank method
+         */
+        private double percentile(double share) {
+            float[] sorted = Arrays.copyOf(durations, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(share * count);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
 }
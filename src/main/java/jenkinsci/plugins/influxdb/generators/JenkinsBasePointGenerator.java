@@ -11,7 +11,6 @@ import jenkinsci.plugins.influxdb.models.AbstractPoint;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +56,8 @@ public class JenkinsBasePointGenerator extends AbstractPointGenerator {
     private final String customPrefix;
     private final String jenkinsEnvParameterField;
     private final String measurementName;
+    private final BuildLogScanner logScanner;
+    private final AgentNameExtractor agentNameExtractor = new AgentNameExtractor();
     private EnvVars env;
 
 
@@ -65,12 +66,23 @@ public class JenkinsBasePointGenerator extends AbstractPointGenerator {
                                      ProjectNameRenderer projectNameRenderer,
                                      long timestamp, String jenkinsEnvParameterTag, String jenkinsEnvParameterField,
                                      String customPrefix, String measurementName, EnvVars env) {
+        this(build, listener, projectNameRenderer, timestamp, jenkinsEnvParameterTag, jenkinsEnvParameterField,
+                customPrefix, measurementName, env, new BuildLogScanner(build));
+    }
+
+    public JenkinsBasePointGenerator(Run<?, ?> build, TaskListener listener,
+                                     ProjectNameRenderer projectNameRenderer,
+                                     long timestamp, String jenkinsEnvParameterTag, String jenkinsEnvParameterField,
+                                     String customPrefix, String measurementName, EnvVars env,
+                                     BuildLogScanner logScanner) {
         super(build, listener, projectNameRenderer, timestamp, jenkinsEnvParameterTag);
         this.build = build;
         this.customPrefix = customPrefix;
         this.jenkinsEnvParameterField = jenkinsEnvParameterField;
         this.measurementName = measurementName;
         this.env = env;
+        this.logScanner = logScanner;
+        logScanner.register(agentNameExtractor);
     }
 
     public boolean hasReport() {
@@ -204,19 +216,33 @@ public class JenkinsBasePointGenerator extends AbstractPointGenerator {
      * @return agent name
      */
     private String getNodeNameFromLogs() {
-        String agentName = "";
-        try (BufferedReader br = new BufferedReader(build.getLogReader())) {
-            String line;
-            String[] splitLine;
-            while ((line = br.readLine()) != null) {
-                if (line.startsWith(AGENT_LOG_PATTERN)) {
-                    splitLine = line.split(" ");
-                    agentName = splitLine.length >= 3 ? splitLine[2] : "";
-                    break;
-                }
-            }
+        try {
+            logScanner.scan();
         } catch (IOException e) {
         }
-        return agentName;
+        return agentNameExtractor.agentName;
+    }
+
+    /**
+     * Takes the agent name from the first line starting with {@value #AGENT_LOG_PATTERN}.
+     */
+    private static final class AgentNameExtractor implements BuildLogScanner.Extractor {
+
+        private String agentName = "";
+
+        @Override
+        public List<String> getMarkers() {
+            return List.of(AGENT_LOG_PATTERN);
+        }
+
+        @Override
+        public boolean accept(String line) {
+            if (!line.startsWith(AGENT_LOG_PATTERN)) {
+                return false;
+            }
+            String[] splitLine = line.split(" ");
+            agentName = splitLine.length >= 3 ? splitLine[2] : "";
+            return true;
+        }
     }
 }
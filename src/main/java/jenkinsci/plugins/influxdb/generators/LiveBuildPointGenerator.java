@@ -0,0 +1,104 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Generates the points of a pipeline build which is still running: an event whenever a stage or parallel branch
+ * starts or ends, and a heartbeat of the build.
+ */
+public class LiveBuildPointGenerator extends AbstractPointGenerator {
+
+    private static final String STAGE_ID = "stage_id";
+    private static final String STAGE_NAME = "stage_name";
+    private static final String PARALLEL_BRANCH = "parallel_branch";
+    private static final String EVENT = "event";
+    private static final String DURATION = "duration";
+    private static final String STATUS = "status";
+
+    private static final String ELAPSED_TIME = "elapsed_time";
+    private static final String RUNNING_STAGES = "running_stages";
+    private static final String COMPLETED_STAGES = "completed_stages";
+
+    private static final String RUNNING = "RUNNING";
+
+    private final String customPrefix;
+    private final int runningStages;
+    private final int completedStages;
+
+    public LiveBuildPointGenerator(Run<?, ?> build, TaskListener listener,
+                                   ProjectNameRenderer projectNameRenderer,
+                                   long timestamp, String jenkinsEnvParameterTag,
+                                   String customPrefix, int runningStages, int completedStages) {
+        super(build, listener, projectNameRenderer, timestamp, jenkinsEnvParameterTag);
+        this.customPrefix = customPrefix;
+        this.runningStages = runningStages;
+        this.completedStages = completedStages;
+    }
+
+    /**
+     * @return true, as a running build always has a heartbeat
+     */
+    @Override
+    public boolean hasReport() {
+        return true;
+    }
+
+    /**
+     * @return the heartbeat of the build
+     */
+    @Override
+    public AbstractPoint[] generate() {
+        AbstractPoint point = buildPoint("live_build_data", customPrefix, build)
+                .addField(ELAPSED_TIME, Math.max(0, System.currentTimeMillis() - build.getStartTimeInMillis()))
+                .addField(RUNNING_STAGES, runningStages)
+                .addField(COMPLETED_STAGES, completedStages);
+        return new AbstractPoint[]{point};
+    }
+
+    /**
+     * @return the event of the stage or parallel branch started by the given node, or null if it starts neither
+     */
+    @CheckForNull
+    public AbstractPoint generateStageStart(BlockStartNode start) {
+        String name = FlowGraphIndex.getBlockName(start);
+        if (name == null) {
+            return null;
+        }
+        return buildStageEvent(start, name, "start", 0, RUNNING);
+    }
+
+    /**
+     * @return the event of the stage or parallel branch ended by the given node, or null if it ends neither. Warnings
+     * within the stage are not taken into account for its status, these are only known once the build has completed.
+     */
+    @CheckForNull
+    public AbstractPoint generateStageEnd(BlockEndNode<?> end) {
+        BlockStartNode start = end.getStartNode();
+        String name = FlowGraphIndex.getBlockName(start);
+        if (name == null) {
+            return null;
+        }
+        long duration = Math.max(0, TimingAction.getStartTime(end) - TimingAction.getStartTime(start));
+        Result result = FlowGraphIndex.getResult(end);
+        return buildStageEvent(start, name, "end", duration, result.toString());
+    }
+
+    private AbstractPoint buildStageEvent(BlockStartNode start, String name, String event, long duration, String status) {
+        return buildPoint("stage_event_data", customPrefix, build)
+                .addField(STAGE_ID, start.getId())
+                .addField(STAGE_NAME, name)
+                .addField(PARALLEL_BRANCH, FlowGraphIndex.isParallelBranch(start))
+                .addField(EVENT, event)
+                .addField(DURATION, duration)
+                .addField(STATUS, status);
+    }
+}
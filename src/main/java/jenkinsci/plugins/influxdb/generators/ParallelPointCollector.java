@@ -0,0 +1,287 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import org.springframework.security.core.Authentication;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Runs point generators concurrently on a bounded, controller-wide executor.
+ * <p>
+ * Generators are created, checked for a report and run on the executor, so that expensive constructors run
+ * concurrently as well. Their points are merged in the order the generators were added, regardless of the order in
+ * which they complete. A generator which has not completed within the timeout after it was submitted, whether it is
+ * still running or still waiting for a thread, is cancelled and contributes no points.
+ * <p>
+ * The executor queues at most {@link #QUEUE_CAPACITY} generators. Generators submitted while the queue is full run on
+ * the calling thread instead, so that builds whose generators hang cannot hold up the generators of all other builds.
+ * <p>
+ * Generators which produce very many points can be added as streaming generators instead. They run after the others
+ * on the calling thread, without timeout, and hand over their points in chunks instead of all at once.
+ */
+public class ParallelPointCollector {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(ParallelPointCollector.class.getName());
+
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    /**
+     * Number of generators which may wait for a thread of the controller-wide executor.
+     */
+    static final int QUEUE_CAPACITY = Math.max(1, SystemProperties.getInteger(
+            ParallelPointCollector.class.getName() + ".queueCapacity", 64));
+
+    private static ThreadPoolExecutor executor;
+
+    private final TaskListener listener;
+    private final ExecutorService generatorExecutor;
+    private final long timeoutMillis;
+    private final List<GeneratorTask> tasks = new ArrayList<>();
+    private final List<GeneratorTask> streamingTasks = new ArrayList<>();
+
+    public ParallelPointCollector(TaskListener listener, ExecutorService generatorExecutor, long timeoutMillis) {
+        this.listener = listener;
+        this.generatorExecutor = generatorExecutor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns the controller-wide executor for point generators, resized to the given number of threads.
+     */
+    public static synchronized ExecutorService getExecutor(int threads) {
+        int size = Math.max(1, threads);
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDbPointGenerator"),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+        } else if (executor.getMaximumPoolSize() != size) {
+            if (size > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(size);
+                executor.setCorePoolSize(size);
+            } else {
+                executor.setCorePoolSize(size);
+                executor.setMaximumPoolSize(size);
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Adds a generator whose points are always collected.
+     *
+     * @param name    name of the generator, used in log messages
+     * @param factory creates the generator
+     */
+    public void add(String name, Callable<PointGenerator> factory) {
+        tasks.add(new GeneratorTask(name, false, factory));
+    }
+
+    /**
+     * Adds a generator whose points are collected only if it {@link PointGenerator#hasReport() has a report}.
+     * A generator which depends on a plugin that is not installed is skipped.
+     *
+     * @param plugin  name of the plugin the generator reads from, used in log messages
+     * @param factory creates the generator
+     */
+    public void addFromPlugin(String plugin, Callable<PointGenerator> factory) {
+        tasks.add(new GeneratorTask(plugin, true, factory));
+    }
+
+    /**
+     * Adds a generator whose points are {@link #stream(Consumer) streamed} in chunks rather than collected, if it
+     * {@link PointGenerator#hasReport() has a report}.
+     *
+     * @param plugin  name of the plugin the generator reads from, used in log messages
+     * @param factory creates the generator
+     */
+    public void addStreamingFromPlugin(String plugin, Callable<PointGenerator> factory) {
+        streamingTasks.add(new GeneratorTask(plugin, true, factory));
+    }
+
+    /**
+     * Runs all added generators and waits for them to complete or time out.
+     *
+     * @return the points of all generators, in the order the generators were added
+     */
+    public List<AbstractPoint> collect() {
+        Authentication authentication = Jenkins.getAuthentication2();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        List<Future<List<AbstractPoint>>> futures = new ArrayList<>();
+        for (GeneratorTask task : tasks) {
+            futures.add(generatorExecutor.submit(() -> {
+                try (ACLContext ignored = ACL.as2(authentication)) {
+                    return task.call();
+                }
+            }));
+        }
+
+        List<AbstractPoint> points = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            GeneratorTask task = tasks.get(i);
+            Future<List<AbstractPoint>> future = futures.get(i);
+            try {
+                points.addAll(await(task, future, deadline));
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                listener.getLogger().println("[InfluxDB Plugin] Interrupted while collecting data.");
+                break;
+            }
+        }
+        if (generatorExecutor instanceof ThreadPoolExecutor threadPoolExecutor) {
+            // drop the generators which were cancelled while still queued
+            threadPoolExecutor.purge();
+        }
+        return points;
+    }
+
+    /**
+     * Runs the streaming generators one after another on the calling thread, passing each chunk of points to the
+     * given consumer as soon as it is generated. Failures of a generator are logged and ignored, exceptions thrown
+     * by the consumer are rethrown.
+     */
+    public void stream(Consumer<List<AbstractPoint>> consumer) {
+        for (GeneratorTask task : streamingTasks) {
+            ChunkConsumer chunkConsumer = new ChunkConsumer(consumer);
+            try {
+                PointGenerator generator = task.createGenerator();
+                if (generator != null) {
+                    generator.generate(chunkConsumer);
+                    logger.fine(String.format("%s streamed %d point(s) in %d chunk(s)", task.name, chunkConsumer.points, chunkConsumer.chunks));
+                }
+            } catch (RuntimeException e) {
+                if (chunkConsumer.failure != null) {
+                    throw chunkConsumer.failure;
+                }
+                listener.getLogger().println("[InfluxDB Plugin] Failed to collect data. Ignoring Exception:" + e);
+            } catch (Exception e) {
+                listener.getLogger().println("[InfluxDB Plugin] Failed to collect data. Ignoring Exception:" + e);
+            }
+        }
+    }
+
+    private List<AbstractPoint> await(GeneratorTask task, Future<List<AbstractPoint>> future, long deadline) throws InterruptedException {
+        while (true) {
+            try {
+                return future.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (System.currentTimeMillis() >= deadline) {
+                    future.cancel(true);
+                    listener.getLogger().println(String.format(
+                            "[InfluxDB Plugin] %s data collection timed out after %d ms%s. Ignoring.", task.name, timeoutMillis,
+                            task.startedAt > 0 ? "" : ", waiting for a free thread"));
+                    return Collections.emptyList();
+                }
+            } catch (CancellationException e) {
+                return Collections.emptyList();
+            } catch (ExecutionException e) {
+                listener.getLogger().println("[InfluxDB Plugin] Failed to collect data. Ignoring Exception:" + e.getCause());
+                return Collections.emptyList();
+            }
+        }
+    }
+
+    private final class GeneratorTask implements Callable<List<AbstractPoint>> {
+
+        private final String name;
+        private final boolean requiresReport;
+        private final Callable<PointGenerator> factory;
+        private volatile long startedAt;
+
+        private GeneratorTask(String name, boolean requiresReport, Callable<PointGenerator> factory) {
+            this.name = name;
+            this.requiresReport = requiresReport;
+            this.factory = factory;
+        }
+
+        @Override
+        public List<AbstractPoint> call() throws Exception {
+            startedAt = System.currentTimeMillis();
+            PointGenerator generator = createGenerator();
+            if (generator == null) {
+                return Collections.emptyList();
+            }
+            List<AbstractPoint> points = Arrays.stream(generator.generate()).filter(Objects::nonNull).collect(Collectors.toList());
+            logger.fine(String.format("%s generated %d point(s) in %d ms", name, points.size(), System.currentTimeMillis() - startedAt));
+            return points;
+        }
+
+        /**
+         * @return the generator, or null if it has no report or depends on a plugin which is not installed
+         */
+        @CheckForNull
+        private PointGenerator createGenerator() throws Exception {
+            PointGenerator generator;
+            try {
+                generator = factory.call();
+                if (requiresReport && !generator.hasReport()) {
+                    logger.fine("Data not found: " + name);
+                    return null;
+                }
+            } catch (NoClassDefFoundError ignore) {
+                logger.fine("Plugin skipped: " + name);
+                return null;
+            }
+            if (requiresReport) {
+                listener.getLogger().println("[InfluxDB plugin] " + name + " plugin data found. Writing to InfluxDB...");
+            }
+            return generator;
+        }
+    }
+
+    /**
+     * Passes chunks on to a consumer, remembering whether the consumer failed.
+     */
+    private static final class ChunkConsumer implements Consumer<List<AbstractPoint>> {
+
+        private final Consumer<List<AbstractPoint>> consumer;
+        private RuntimeException failure;
+        private int chunks;
+        private long points;
+
+        private ChunkConsumer(Consumer<List<AbstractPoint>> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void accept(List<AbstractPoint> chunk) {
+            List<AbstractPoint> nonNullPoints = chunk.stream().filter(Objects::nonNull).collect(Collectors.toList());
+            chunks++;
+            points += nonNullPoints.size();
+            try {
+                consumer.accept(nonNullPoints);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.EnvVars;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a point per stage and parallel branch of a pipeline build, read from the {@link FlowGraphIndex} of the
+ * build.
+ */
+public class PipelineStagePointGenerator extends AbstractPointGenerator {
+
+    private static final String STAGE_ID = "stage_id";
+    private static final String STAGE_NAME = "stage_name";
+    private static final String PARENT_STAGE_ID = "parent_stage_id";
+    private static final String PARALLEL_BRANCH = "parallel_branch";
+    private static final String START_OFFSET = "start_offset";
+    private static final String DURATION = "duration";
+    private static final String PAUSE_DURATION = "pause_duration";
+    private static final String STATUS = "status";
+    private static final String AGENT_NAME = "agent_name";
+
+    static final String STAGES_ENV = "LOG_PIPELINE_STAGES";
+
+    private static final String RUNNING = "RUNNING";
+
+    private final String customPrefix;
+    private final EnvVars env;
+
+    public PipelineStagePointGenerator(Run<?, ?> build, TaskListener listener,
+                                       ProjectNameRenderer projectNameRenderer,
+                                       long timestamp, String jenkinsEnvParameterTag,
+                                       String customPrefix, EnvVars env) {
+        super(build, listener, projectNameRenderer, timestamp, jenkinsEnvParameterTag);
+        this.customPrefix = customPrefix;
+        this.env = env;
+    }
+
+    /**
+     * @return true, if environment variable {@value #STAGES_ENV} is set to true and the build has stages or parallel
+     * branches
+     */
+    @Override
+    public boolean hasReport() {
+        return Boolean.parseBoolean(env.getOrDefault(STAGES_ENV, "false"))
+                && !FlowGraphIndex.of(build).getBlocks().isEmpty();
+    }
+
+    @Override
+    public AbstractPoint[] generate() {
+        long buildStart = build.getStartTimeInMillis();
+        long now = System.currentTimeMillis();
+        // stages share the timestamp of the build, so every stage is offset by one more time unit
+        TimeGenerator stageTime = new TimeGenerator(timestamp);
+
+        List<AbstractPoint> points = new ArrayList<>();
+        for (FlowGraphIndex.Block block : FlowGraphIndex.of(build).getBlocks()) {
+            Result result = block.getResult();
+            long end = block.getEndMillis() < 0 ? now : block.getEndMillis();
+            String agentName = block.getAgentName();
+            String parentId = block.getParentId();
+            points.add(buildPoint("stage_data", customPrefix, build, stageTime.next())
+                    .addField(STAGE_ID, block.getId())
+                    .addField(STAGE_NAME, block.getName())
+                    .addField(PARENT_STAGE_ID, parentId != null ? parentId : "")
+                    .addField(PARALLEL_BRANCH, block.isParallelBranch())
+                    .addField(START_OFFSET, block.getStartMillis() - buildStart)
+                    .addField(DURATION, Math.max(0, end - block.getStartMillis()))
+                    .addField(PAUSE_DURATION, block.getPauseMillis())
+                    .addField(STATUS, result != null ? result.toString() : RUNNING)
+                    .addField(AGENT_NAME, agentName != null ? agentName : ""));
+        }
+        return points.toArray(new AbstractPoint[0]);
+    }
+}
@@ -3,12 +3,26 @@ package jenkinsci.plugins.influxdb.generators;
 import hudson.model.Run;
 import jenkinsci.plugins.influxdb.models.AbstractPoint;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface PointGenerator {
 
     boolean hasReport();
 
     AbstractPoint[] generate();
 
+    /**
+     * Generates the points in chunks and passes each chunk to the given consumer as soon as it is complete, so that
+     * not all points need to be held in memory at once. The consumer may keep the chunks it is passed.
+     * <p>
+     * By default, all points of {@link #generate()} are passed as a single chunk.
+     */
+    default void generate(Consumer<List<AbstractPoint>> consumer) {
+        consumer.accept(Arrays.asList(generate()));
+    }
+
     /**
      * Initializes a basic build point with the basic data already set with a specified timestamp.
      */
@@ -0,0 +1,228 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.EnvVars;
+import hudson.model.Job;
+import hudson.model.Run;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds report files in a workspace or artifacts directory without walking the whole tree.
+ * <p>
+ * The search is limited to the search roots below the directory, to a maximum depth, and skips excluded directories.
+ * It stops as soon as enough files were found. The path at which a report was last found for a job is remembered and
+ * checked first, and if the report still exists there, it is returned without searching. Locators are serializable,
+ * so that they can search a workspace on the agent owning it, in which case the path is remembered by that agent.
+ * <p>
+ * The search is configured with the following env vars:
+ * <ul>
+ *     <li>{@value #SEARCH_ROOTS_ENV}: comma separated directories relative to the searched directory, by default the
+ *     directory itself</li>
+ *     <li>{@value #MAX_DEPTH_ENV}: number of directory levels searched below each search root, by default
+ *     {@value #DEFAULT_MAX_DEPTH}</li>
+ *     <li>{@value #EXCLUDES_ENV}: comma separated globs of directories which are not searched, matched against their
+ *     path relative to the search root and against their name, by default {@value #DEFAULT_EXCLUDES}</li>
+ * </ul>
+ */
+public final class ReportLocator implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String SEARCH_ROOTS_ENV = "REPORT_SEARCH_ROOTS";
+    static final String MAX_DEPTH_ENV = "REPORT_SEARCH_MAX_DEPTH";
+    static final String EXCLUDES_ENV = "REPORT_SEARCH_EXCLUDES";
+
+    static final int DEFAULT_MAX_DEPTH = 10;
+    static final String DEFAULT_EXCLUDES = "node_modules,.git,.svn,.hg,.gradle,.m2,.npm,.yarn,.cache";
+
+    /** Number of jobs for which the path of a report is remembered. **/
+    static final int MAX_REMEMBERED = 1024;
+
+    // relative path at which a report was last found, by job and report name, in access order
+    private static final Map<String, String> lastFound = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_REMEMBERED;
+        }
+    };
+
+    private final String jobName;
+    private final List<String> searchRoots;
+    private final int maxDepth;
+    private final List<String> excludes;
+
+    private transient List<PathMatcher> excludeMatchers;
+
+    ReportLocator(@CheckForNull String jobName, List<String> searchRoots, int maxDepth, List<String> excludes) {
+        this.jobName = jobName;
+        this.searchRoots = searchRoots.isEmpty() ? List.of("") : List.copyOf(searchRoots);
+        this.maxDepth = maxDepth;
+        this.excludes = List.copyOf(excludes);
+    }
+
+    /**
+     * @return a locator for the reports of the given build, configured by its env vars
+     */
+    public static ReportLocator forBuild(Run<?, ?> build, EnvVars env) {
+        Job<?, ?> job = build.getParent();
+        int maxDepth = DEFAULT_MAX_DEPTH;
+        String depth = env.get(MAX_DEPTH_ENV);
+        if (depth != null && !depth.isEmpty()) {
+            try {
+                maxDepth = Integer.parseInt(depth.trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return new ReportLocator(job == null ? null : job.getFullName(),
+                split(env.get(SEARCH_ROOTS_ENV, "")),
+                maxDepth,
+                split(env.get(EXCLUDES_ENV, DEFAULT_EXCLUDES)));
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (!part.trim().isEmpty()) {
+                values.add(part.trim());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Ruling out a second report takes a search of the whole tree, so a report found at the remembered path is trusted
+     * to be the only one, as it was when it was found. A report which was added next to it since is not noticed.
+     *
+     * @param reportName name of the report file, or a path pattern ending with it
+     * @return the report below the given directory, or null if there is none or more than one
+     */
+    @CheckForNull
+    public Path findSingle(Path directory, String reportName) throws IOException {
+        List<Path> reports = find(directory, reportName, 2);
+        return reports.size() == 1 ? reports.get(0) : null;
+    }
+
+    /**
+     * @param reportName name of the report file, or a path pattern ending with it
+     * @return the first report found below the given directory, or null if there is none
+     */
+    @CheckForNull
+    public Path findFirst(Path directory, String reportName) throws IOException {
+        List<Path> reports = find(directory, reportName, 1);
+        return reports.isEmpty() ? null : reports.get(0);
+    }
+
+    private List<Path> find(Path directory, String reportName, int limit) throws IOException {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return List.of();
+        }
+        String key = jobName == null ? null : jobName + '\n' + reportName;
+        if (key != null) {
+            String remembered;
+            synchronized (lastFound) {
+                remembered = lastFound.get(key);
+            }
+            if (remembered != null) {
+                Path report = directory.resolve(remembered).normalize();
+                if (Files.isRegularFile(report)) {
+                    return List.of(report);
+                }
+            }
+        }
+
+        Set<Path> reports = new LinkedHashSet<>();
+        for (String searchRoot : searchRoots) {
+            Path root = directory.resolve(searchRoot).normalize();
+            if (reports.size() < limit && root.startsWith(directory.normalize()) && Files.isDirectory(root)) {
+                Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), maxDepth,
+                        new Search(root, reportName, limit, reports));
+            }
+        }
+
+        if (key != null && reports.size() == 1) {
+            String relative = directory.relativize(reports.iterator().next()).toString();
+            synchronized (lastFound) {
+                lastFound.put(key, relative);
+            }
+        }
+        return new ArrayList<>(reports);
+    }
+
+    private boolean isExcluded(Path root, Path dir) {
+        if (dir.equals(root)) {
+            return false;
+        }
+        if (excludeMatchers == null) {
+            List<PathMatcher> matchers = new ArrayList<>();
+            for (String exclude : excludes) {
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + exclude));
+            }
+            excludeMatchers = matchers;
+        }
+        Path relative = root.relativize(dir);
+        Path name = dir.getFileName();
+        for (PathMatcher exclude : excludeMatchers) {
+            if (exclude.matches(relative) || name != null && exclude.matches(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects matching files until the limit is reached.
+     */
+    private final class Search extends SimpleFileVisitor<Path> {
+
+        private final Path root;
+        private final String reportName;
+        private final int limit;
+        private final Set<Path> reports;
+
+        private Search(Path root, String reportName, int limit, Set<Path> reports) {
+            this.root = root;
+            this.reportName = reportName;
+            this.limit = limit;
+            this.reports = reports;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return isExcluded(root, dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && file.endsWith(reportName)) {
+                reports.add(file);
+                if (reports.size() >= limit) {
+                    return FileVisitResult.TERMINATE;
+                }
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            // unreadable directories do not contain the report as far as we can tell
+            return FileVisitResult.CONTINUE;
+        }
+    }
+}
@@ -6,13 +6,19 @@ import hudson.plugins.robot.RobotBuildAction;
 import hudson.plugins.robot.model.RobotCaseResult;
 import hudson.plugins.robot.model.RobotResult;
 import hudson.plugins.robot.model.RobotSuiteResult;
+import jenkins.util.SystemProperties;
 import jenkinsci.plugins.influxdb.models.AbstractPoint;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
 
@@ -31,8 +37,13 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
     private static final String RF_TAG_NAME = "rf_tag_name";
     private static final String RF_AGE = "rf_age";
 
+    /**
+     * Minimum number of suites for which the tags of the suites are aggregated in parallel.
+     */
+    static final int PARALLEL_SUITE_THRESHOLD = SystemProperties.getInteger(
+            RobotFrameworkPointGenerator.class.getName() + ".parallelSuiteThreshold", 64);
+
     private final String customPrefix;
-    private final Map<String, RobotTagResult> tagResults;
 
     public RobotFrameworkPointGenerator(Run<?, ?> build, TaskListener listener,
                                         ProjectNameRenderer projectNameRenderer,
@@ -40,7 +51,6 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
                                         String customPrefix) {
         super(build, listener, projectNameRenderer, timestamp, jenkinsEnvParameterTag);
         this.customPrefix = customPrefix;
-        tagResults = new Hashtable<>();
     }
 
     public boolean hasReport() {
@@ -74,48 +84,68 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
 
     private List<AbstractPoint> generateSubPoints(RobotResult robotResult) {
         List<AbstractPoint> subPoints = new ArrayList<>();
+        Set<CaseKey> cases = new HashSet<>();
         TimeGenerator suiteResultTime = new TimeGenerator(timestamp);
+        List<RobotSuiteResult> suiteResults = new ArrayList<>(robotResult.getAllSuites());
 
-        for (RobotSuiteResult suiteResult : robotResult.getAllSuites()) {
+        for (RobotSuiteResult suiteResult : suiteResults) {
             long caseTimeStamp = suiteResultTime.next();
             subPoints.add(generateSuitePoint(suiteResult, caseTimeStamp));
             // To preserve the existing functionality of the case being timestamps after the
             // suiteResult, seed the new TimeGenerator with the suiteResult's time
             TimeGenerator caseResultTime = new TimeGenerator(caseTimeStamp);
             for (RobotCaseResult caseResult : suiteResult.getAllCases()) {
-                AbstractPoint casePoint = generateCasePoint(caseResult, caseResultTime.next());
-                if (casePointExists(subPoints, casePoint)) {
-                    continue;
+                long caseTimestamp = caseResultTime.next();
+                // Cases are the same if all their fields are equal
+                if (cases.add(CaseKey.of(caseResult))) {
+                    subPoints.add(generateCasePoint(caseResult, caseTimestamp));
                 }
-                subPoints.add(casePoint);
             }
         }
 
         TimeGenerator tagTime = new TimeGenerator(timestamp);
-        for (Map.Entry<String, RobotTagResult> entry : tagResults.entrySet()) {
-            subPoints.add(generateTagPoint(entry.getValue(), tagTime.next()));
+        for (RobotTagResult tagResult : aggregateTagResults(suiteResults).values()) {
+            subPoints.add(generateTagPoint(tagResult, tagTime.next()));
         }
         return subPoints;
     }
 
-    private boolean casePointExists(List<AbstractPoint> subPoints, AbstractPoint point) {
-        for (AbstractPoint p : subPoints) {
-            try {
-                // CasePoints are the same if all the fields are equal
-                String pFields = p.toString().substring(p.toString().indexOf("fields="));
-                String pointFields = point.toString().substring(point.toString().indexOf("fields="));
-                if (pFields.equals(pointFields)) {
-                    return true;
+    /**
+     * Aggregates the results of the cases by tag. The suites are aggregated separately, in parallel if there are many
+     * of them, and merged in their order, so that a case counts for a tag only the first time it is seen as before.
+     *
+     * @return the results by tag, ordered by tag
+     */
+    private static Map<String, RobotTagResult> aggregateTagResults(List<RobotSuiteResult> suiteResults) {
+        List<Map<String, RobotTagResult>> suiteTagResults = (suiteResults.size() >= PARALLEL_SUITE_THRESHOLD
+                ? suiteResults.parallelStream() : suiteResults.stream())
+                .map(RobotFrameworkPointGenerator::aggregateTagResults)
+                .collect(Collectors.toList());
+
+        Map<String, RobotTagResult> tagResults = new TreeMap<>();
+        for (Map<String, RobotTagResult> suiteTagResult : suiteTagResults) {
+            for (RobotTagResult tagResult : suiteTagResult.values()) {
+                RobotTagResult merged = tagResults.putIfAbsent(tagResult.name, tagResult);
+                if (merged != null) {
+                    merged.merge(tagResult);
                 }
-            } catch (StringIndexOutOfBoundsException e) {
-                // Handle exception
             }
         }
-        return false;
+        return tagResults;
+    }
+
+    private static Map<String, RobotTagResult> aggregateTagResults(RobotSuiteResult suiteResult) {
+        Map<String, RobotTagResult> tagResults = new HashMap<>();
+        for (RobotCaseResult caseResult : suiteResult.getAllCases()) {
+            for (String tag : caseResult.getTags()) {
+                tagResults.computeIfAbsent(tag, RobotTagResult::new).mark(caseResult);
+            }
+        }
+        return tagResults;
     }
 
     private AbstractPoint generateCasePoint(RobotCaseResult caseResult, long timestamp) {
-        AbstractPoint point = buildPoint("testcase_point", customPrefix, build, timestamp)
+        return buildPoint("testcase_point", customPrefix, build, timestamp)
                 .addField(RF_NAME, caseResult.getName())
                 .addField(RF_SUITE_NAME, caseResult.getParent().getName())
                 .addField(RF_FAILED, caseResult.getFailed())
@@ -123,26 +153,6 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
                 .addField(RF_SKIPPED, caseResult.getSkipped())
                 .addField(RF_DURATION, caseResult.getDuration())
                 .addField(RF_AGE, caseResult.getAge());
-
-        for (String tag : caseResult.getTags()) {
-            markTagResult(tag, caseResult);
-        }
-
-        return point;
-    }
-
-    private void markTagResult(String tag, RobotCaseResult caseResult) {
-        if (tagResults.get(tag) == null)
-            tagResults.put(tag, new RobotTagResult(tag));
-
-        RobotTagResult tagResult = tagResults.get(tag);
-        if (!tagResult.testCases.contains(caseResult.getDuplicateSafeName())) {
-            tagResult.failed += caseResult.getFailed();
-            tagResult.passed += caseResult.getPassed();
-            tagResult.skipped += caseResult.getSkipped();
-            tagResult.duration += caseResult.getDuration();
-            tagResult.testCases.add(caseResult.getDuplicateSafeName());
-        }
     }
 
     private AbstractPoint generateTagPoint(RobotTagResult tagResult, long timestamp) {
@@ -166,10 +176,23 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
                 .addField(RF_DURATION, suiteResult.getDuration());
     }
 
+    /**
+     * The fields of a case point, by which duplicate cases are recognized.
+     */
+    private record CaseKey(String suiteName, String name, long failed, long passed, long skipped, long duration,
+                           long age) {
+
+        private static CaseKey of(RobotCaseResult caseResult) {
+            return new CaseKey(caseResult.getParent().getName(), caseResult.getName(), caseResult.getFailed(),
+                    caseResult.getPassed(), caseResult.getSkipped(), caseResult.getDuration(), caseResult.getAge());
+        }
+    }
+
     private static final class RobotTagResult {
 
         private final String name;
-        private final List<String> testCases = new ArrayList<>();
+        // by duplicate safe name, the first case with that name
+        private final Map<String, RobotCaseResult> testCases = new LinkedHashMap<>();
         private int failed = 0;
         private int passed = 0;
         private int skipped = 0;
@@ -178,5 +201,20 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
         private RobotTagResult(String name) {
             this.name = name;
         }
+
+        private void mark(RobotCaseResult caseResult) {
+            if (testCases.putIfAbsent(caseResult.getDuplicateSafeName(), caseResult) == null) {
+                failed += caseResult.getFailed();
+                passed += caseResult.getPassed();
+                skipped += caseResult.getSkipped();
+                duration += caseResult.getDuration();
+            }
+        }
+
+        private void merge(RobotTagResult other) {
+            for (RobotCaseResult caseResult : other.testCases.values()) {
+                mark(caseResult);
+            }
+        }
     }
 }
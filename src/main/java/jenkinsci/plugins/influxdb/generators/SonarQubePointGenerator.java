@@ -1,8 +1,13 @@
 package jenkinsci.plugins.influxdb.generators;
 
 import hudson.EnvVars;
+import hudson.FilePath;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.MasterToSlaveFileCallable;
 import jenkinsci.plugins.influxdb.models.AbstractPoint;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
 import net.sf.json.JSONArray;
@@ -10,19 +15,31 @@ import net.sf.json.JSONObject;
 import okhttp3.*;
 import org.apache.commons.lang3.StringUtils;
 
+import javax.annotation.CheckForNull;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class SonarQubePointGenerator extends AbstractPointGenerator {
 
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(SonarQubePointGenerator.class.getName());
+
     private static final String BUILD_DISPLAY_NAME = "display_name";
     private static final String SONARQUBE_LINES_OF_CODE = "lines_of_code";
     private static final String SONARQUBE_COMPLEXITY = "complexity";
@@ -45,39 +62,79 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
     private static final String SONARQUBE_TECHNICAL_DEBT_RATIO = "sqale_debt_ratio";
 
     private static final short DEFAULT_MAX_RETRY_COUNT = 10;
-    private static final int DEFAULT_RETRY_SLEEP = 5000;
+    private static final long INITIAL_POLL_DELAY_MILLIS = 1000;
+    private static final long MAX_POLL_DELAY_MILLIS = 15000;
+    private static final int DEFAULT_TIME_BUDGET_SECONDS = 120;
+    // Time kept for fetching metrics when waiting for the analysis task
+    private static final long FETCH_RESERVE_MILLIS = 10000;
+
+    // Fields taken from numeric measures, and the key of their metric in SonarQube
+    private static final Map<String, String> NUMERIC_METRICS = new LinkedHashMap<>();
+    // Fields taken from measures as they are
+    private static final List<String> STRING_METRICS = List.of(SONARQUBE_ALERT_STATUS, SONARQUBE_QUALITY_GATE_DETAILS);
+    // Fields taken from the number of unresolved issues, and their severity in SonarQube
+    private static final Map<String, String> ISSUE_SEVERITIES = new LinkedHashMap<>();
+
+    static {
+        NUMERIC_METRICS.put(SONARQUBE_LINES_OF_CODE, "ncloc");
+        for (String metric : List.of(SONARQUBE_CODE_SMELLS, SONARQUBE_BUGS, SONARQUBE_COVERAGE,
+                SONARQUBE_VULNERABILITIES, SONARQUBE_BRANCH_COVERAGE, SONARQUBE_LINE_COVERAGE,
+                SONARQUBE_LINES_TO_COVER, SONARQUBE_DUPLICATED_LINES_DENSITY, SONARQUBE_COMPLEXITY,
+                SONARQUBE_TECHNICAL_DEBT, SONARQUBE_TECHNICAL_DEBT_RATIO)) {
+            NUMERIC_METRICS.put(metric, metric);
+        }
+        ISSUE_SEVERITIES.put(SONARQUBE_CRITICAL_ISSUES, "CRITICAL");
+        ISSUE_SEVERITIES.put(SONARQUBE_BLOCKER_ISSUES, "BLOCKER");
+        ISSUE_SEVERITIES.put(SONARQUBE_MAJOR_ISSUES, "MAJOR");
+        ISSUE_SEVERITIES.put(SONARQUBE_MINOR_ISSUES, "MINOR");
+        ISSUE_SEVERITIES.put(SONARQUBE_INFO_ISSUES, "INFO");
+    }
 
     // Default SonarQube report file name
     private static final String SONARQUBE_DEFAULT_BUILD_REPORT_NAME = "report-task.txt";
     // Patterns used for data extraction from SonarQube report file
-    private static final String PROJECT_KEY_PATTERN_IN_REPORT = "projectKey=(.*)";
-    private static final String URL_PATTERN_IN_REPORT = "serverUrl=(.*)";
-    private static final String TASK_ID_PATTERN_IN_REPORT = "ceTaskId=(.*)";
-    private static final String TASK_URL_PATTERN_IN_REPORT = "ceTaskUrl=(.*)";
-    // Patterns used for data extraction from build log
-    private static final String URL_PATTERN_IN_LOGS_ANALYSIS = ".*" + Pattern.quote("ANALYSIS SUCCESSFUL, you can browse ")
-            + "(.*)";
-    private static final String TASK_URL_PATTERN_IN_LOGS = ".*" + Pattern.quote("More about the report processing at ")
-            + "(.*)";
-    private static final String PROJECT_NAME_PATTERN_IN_LOGS = ".*" + Pattern.quote("Project key: ")
-            + "(.*)";
-    private static final String URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS = ".*" + Pattern.quote("QUALITY GATE STATUS: ")
-            + "(.*)" + Pattern.quote(" - View details on ") + "(.*)";
-    private static final String URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS_v4_8 = ".*" + Pattern.quote("ANALYSIS SUCCESSFUL, you can find the results at: ")
-            + "(.*)";
-    private static final String URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS_TIMEOUT = ".*" + Pattern.quote("Quality Gate check timeout exceeded - View details on ")
-            + "(.*)";
+    private static final Pattern PROJECT_KEY_PATTERN_IN_REPORT = Pattern.compile("projectKey=(.*)");
+    private static final Pattern URL_PATTERN_IN_REPORT = Pattern.compile("serverUrl=(.*)");
+    private static final Pattern TASK_ID_PATTERN_IN_REPORT = Pattern.compile("ceTaskId=(.*)");
+    private static final Pattern TASK_URL_PATTERN_IN_REPORT = Pattern.compile("ceTaskUrl=(.*)");
+    // Markers and patterns used for data extraction from build log
+    private static final String ANALYSIS_MARKER_IN_LOGS = "ANALYSIS SUCCESSFUL, you can browse ";
+    private static final String TASK_URL_MARKER_IN_LOGS = "More about the report processing at ";
+    private static final String PROJECT_NAME_MARKER_IN_LOGS = "Project key: ";
+    private static final String QUALITY_GATE_STATUS_MARKER_IN_LOGS = "QUALITY GATE STATUS: ";
+    private static final String QUALITY_GATE_STATUS_v4_8_MARKER_IN_LOGS = "ANALYSIS SUCCESSFUL, you can find the results at: ";
+    private static final String QUALITY_GATE_STATUS_TIMEOUT_MARKER_IN_LOGS = "Quality Gate check timeout exceeded - View details on ";
+    private static final Pattern URL_PATTERN_IN_LOGS_ANALYSIS = Pattern.compile(".*" + Pattern.quote(ANALYSIS_MARKER_IN_LOGS)
+            + "(.*)");
+    private static final Pattern TASK_URL_PATTERN_IN_LOGS = Pattern.compile(".*" + Pattern.quote(TASK_URL_MARKER_IN_LOGS)
+            + "(.*)");
+    private static final Pattern PROJECT_NAME_PATTERN_IN_LOGS = Pattern.compile(".*" + Pattern.quote(PROJECT_NAME_MARKER_IN_LOGS)
+            + "(.*)");
+    private static final Pattern URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS = Pattern.compile(".*" + Pattern.quote(QUALITY_GATE_STATUS_MARKER_IN_LOGS)
+            + "(.*)" + Pattern.quote(" - View details on ") + "(.*)");
+    private static final Pattern URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS_v4_8 = Pattern.compile(".*" + Pattern.quote(QUALITY_GATE_STATUS_v4_8_MARKER_IN_LOGS)
+            + "(.*)");
+    private static final Pattern URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS_TIMEOUT = Pattern.compile(".*" + Pattern.quote(QUALITY_GATE_STATUS_TIMEOUT_MARKER_IN_LOGS)
+            + "(.*)");
     // https://sonarcloud.io/web_api/api/issues
     private static final String SONAR_ISSUES_BASE_URL = "/api/issues/search?ps=1";
+    private static final String SONAR_ISSUES_SEVERITIES_FACET = "&facets=severities";
+    private static final String SONAR_ISSUES_SEVERITY = "&severities=";
     // SonarQube 5.4+ expects componentKey=, SonarQube 8.1 expects component=, we
     // can make both of them happy
     // https://sonarcloud.io/web_api/api/measures
     private static final String SONAR_METRICS_BASE_URL = "/api/measures/component?componentKey=%s&component=%s";
     private static final String SONAR_METRICS_BASE_METRIC = "&metricKeys=";
     private static final OkHttpClient httpClient = new OkHttpClient();
+    private static final ExecutorService requestExecutor = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "SonarQubePointGenerator"));
+    private static final ScheduledExecutorService pollScheduler = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "SonarQubePointGenerator task poller"));
     private static final String BRANCH_NAME_BASE_URL = "&branch=";
     private final String customPrefix;
     private final TaskListener listener;
+    private final BuildLogScanner logScanner;
+    private final SonarLogExtractor logExtractor = new SonarLogExtractor();
     private String projectKey = null;
     private String sonarBuildURL = null;
     private String sonarBuildTaskIdUrl = null;
@@ -85,8 +142,13 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
     private String sonarIssuesUrl;
     private String sonarMetricsUrl;
     private String token = null;
+    private long deadlineNanos = Long.MAX_VALUE;
+    private volatile CompletableFuture<List<AbstractPoint>> deferredPoints = null;
+    // Responses of a successfully completed analysis no longer change and are shared with other builds
+    private volatile boolean cacheResponses = false;
 
     private EnvVars env;
+    private FilePath workspace;
 
     public SonarQubePointGenerator(Run<?, ?> build, TaskListener listener,
                                    ProjectNameRenderer projectNameRenderer,
@@ -94,10 +156,23 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
                                    String jenkinsEnvParameterTag,
                                    String customPrefix,
                                    EnvVars env) {
+        this(build, listener, projectNameRenderer, timestamp, jenkinsEnvParameterTag, customPrefix, env,
+                new BuildLogScanner(build));
+    }
+
+    public SonarQubePointGenerator(Run<?, ?> build, TaskListener listener,
+                                   ProjectNameRenderer projectNameRenderer,
+                                   long timestamp,
+                                   String jenkinsEnvParameterTag,
+                                   String customPrefix,
+                                   EnvVars env,
+                                   BuildLogScanner logScanner) {
         super(build, listener, projectNameRenderer, timestamp, jenkinsEnvParameterTag);
         this.customPrefix = customPrefix;
         this.listener = listener;
         this.env = env;
+        this.logScanner = logScanner;
+        logScanner.register(logExtractor);
     }
 
     public String getProjectKey() {
@@ -136,7 +211,7 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
         }
 
         try {
-            if (applySonarProjectResult(getSonarProjectFromBuildLog(build))) {
+            if (applySonarProjectResult(getSonarProjectFromBuildLog())) {
                 return true;
             }
         } catch (IOException | IndexOutOfBoundsException | UncheckedIOException ignored) {
@@ -162,51 +237,74 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
         this.env = env;
     }
 
-    private void waitForQualityGateTask() throws IOException {
-        String status;
-        String output;
-        String logMessage;
-        int count = 0;
-        int MAX_RETRY_COUNT = DEFAULT_MAX_RETRY_COUNT;
-
-        String max_retry = this.env.get("SONAR_TASK_MAX_RETRY_COUNT");
+    /**
+     * @param workspace workspace of the build, in which the report is searched on the agent owning it
+     */
+    public void setWorkspace(@CheckForNull FilePath workspace) {
+        this.workspace = workspace;
+    }
 
-        if (max_retry != null && !max_retry.isEmpty()) {
+    private int getMaxRetryCount() {
+        String maxRetry = env.get("SONAR_TASK_MAX_RETRY_COUNT");
+        if (maxRetry != null && !maxRetry.isEmpty()) {
             try {
-                MAX_RETRY_COUNT = Integer.parseInt(max_retry);
+                return Integer.parseInt(maxRetry);
             } catch (NumberFormatException ignored) {
             }
         }
+        return DEFAULT_MAX_RETRY_COUNT;
+    }
 
-        do {
-            try {
-                Thread.sleep(DEFAULT_RETRY_SLEEP);
-            } catch (InterruptedException ignored) {
-            }
+    private String getTaskStatus() throws IOException {
+        String output = getResult(sonarBuildTaskIdUrl);
+        return JSONObject.fromObject(output).getJSONObject("task").getString("status").toUpperCase();
+    }
 
-            output = getResult(sonarBuildTaskIdUrl);
-            JSONObject taskObjects = JSONObject.fromObject(output);
-            status = taskObjects.getJSONObject("task").getString("status").toUpperCase();
+    private static boolean isTaskFinished(String status) {
+        return status.equals("SUCCESS") || status.equals("FAILED") || status.equals("CANCELED");
+    }
 
-            ++count;
+    /**
+     * Polls the analysis task in the background, with the delay doubling from {@value #INITIAL_POLL_DELAY_MILLIS} up
+     * to {@value #MAX_POLL_DELAY_MILLIS} ms. Polls and metric requests run on the request executor, the scheduler only
+     * hands them over, so that no thread waits in between.
+     */
+    private void schedulePoll(int attempt, long delayMillis) {
+        pollScheduler.schedule(() -> requestExecutor.execute(() -> poll(attempt, delayMillis)),
+                delayMillis, TimeUnit.MILLISECONDS);
+    }
 
-            if (status.equals("FAILED") || status.equals("CANCELED")) {
-                logMessage = "[InfluxDB Plugin] Warning: SonarQube task " + sonarBuildTaskId + " failed. Status is " + status + "! Getting the QG metrics from the latest completed task!";
-                listener.getLogger().println(logMessage);
-                break;
+    private void poll(int attempt, long delayMillis) {
+        try {
+            String status = getTaskStatus();
+            if (!isTaskFinished(status)) {
+                long nextDelayMillis = Math.min(MAX_POLL_DELAY_MILLIS, delayMillis * 2);
+                if (attempt < getMaxRetryCount() && remainingMillis() > nextDelayMillis + FETCH_RESERVE_MILLIS) {
+                    logger.fine("SonarQube task " + sonarBuildTaskId + " status is " + status);
+                    schedulePoll(attempt + 1, nextDelayMillis);
+                    return;
+                }
+                logger.warning("Timeout! SonarQube task " + sonarBuildTaskId + " of " + build + " is still in progress. Getting the QG metrics from the latest completed task!");
+            } else if (status.equals("SUCCESS")) {
+                cacheResponses = true;
+            } else {
+                logger.warning("SonarQube task " + sonarBuildTaskId + " of " + build + " failed. Status is " + status + "! Getting the QG metrics from the latest completed task!");
             }
-
-            logMessage = "[InfluxDB Plugin] INFO: SonarQube task " + sonarBuildTaskId + " status is " + status;
-            listener.getLogger().println(logMessage);
-
-        } while (!status.equals("SUCCESS") && count <= MAX_RETRY_COUNT);
-
-        if (!status.equals("SUCCESS") && count > MAX_RETRY_COUNT) {
-            logMessage = "[InfluxDB Plugin] WARNING: Timeout! SonarQube task " + sonarBuildTaskId + " is still in progress. Getting the QG metrics from the latest completed task!";
-            listener.getLogger().println(logMessage);
+            deferredPoints.complete(List.of(fetchPoint()));
+        } catch (Exception e) {
+            deferredPoints.completeExceptionally(e);
         }
     }
 
+    /**
+     * @return the points which are generated once the analysis task, which was still being processed when
+     * {@link #generate()} returned, has completed, or null if no points are pending
+     */
+    @CheckForNull
+    public CompletableFuture<List<AbstractPoint>> getDeferredPoints() {
+        return deferredPoints;
+    }
+
     private void setSonarDetails(String sonarBuildURL) {
         // Use SONAR_HOST_URL environment variable if provided, sonarBuildURL otherwise
         String sonarServer = env.get("SONAR_HOST_URL", sonarBuildURL);
@@ -223,7 +321,7 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
         sonarIssuesUrl = sonarServer + SONAR_ISSUES_BASE_URL
                 + branchName
                 + "&componentKeys=" + projectKey
-                + "&resolved=false&severities=";
+                + "&resolved=false";
 
         sonarMetricsUrl = sonarServer + String.format(SONAR_METRICS_BASE_URL, projectKey, projectKey) + branchName;
 
@@ -237,36 +335,36 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
         }
     }
 
+    /**
+     * Fetches all measures in a single request and all issue counts in another one, which runs concurrently. Waiting
+     * for the analysis task and both requests are limited by the time budget of {@code SONAR_TIME_BUDGET_SECONDS}.
+     * <p>
+     * If the analysis task is still being processed, no point is returned. The task is polled in the background
+     * instead, and the point is made available through {@link #getDeferredPoints()} once the task has completed.
+     */
     public AbstractPoint[] generate() {
         setSonarDetails(sonarBuildURL);
+        deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(getTimeBudgetSeconds());
 
         AbstractPoint point = null;
         try {
             if (sonarBuildTaskId != null) {
-                waitForQualityGateTask();
+                String status = getTaskStatus();
+                if (!isTaskFinished(status)) {
+                    String logMessage = "[InfluxDB Plugin] INFO: SonarQube task " + sonarBuildTaskId + " status is " + status + ". SonarQube metrics are published once it has completed.";
+                    listener.getLogger().println(logMessage);
+                    deferredPoints = new CompletableFuture<>();
+                    schedulePoll(1, INITIAL_POLL_DELAY_MILLIS);
+                    return new AbstractPoint[0];
+                }
+                if (status.equals("SUCCESS")) {
+                    cacheResponses = true;
+                } else {
+                    String logMessage = "[InfluxDB Plugin] Warning: SonarQube task " + sonarBuildTaskId + " failed. Status is " + status + "! Getting the QG metrics from the latest completed task!";
+                    listener.getLogger().println(logMessage);
+                }
             }
-
-            point = buildPoint("sonarqube_data", customPrefix, build)
-                    .addField(BUILD_DISPLAY_NAME, build.getDisplayName())
-                    .addField(SONARQUBE_CRITICAL_ISSUES, getSonarIssues(sonarIssuesUrl, "CRITICAL"))
-                    .addField(SONARQUBE_BLOCKER_ISSUES, getSonarIssues(sonarIssuesUrl, "BLOCKER"))
-                    .addField(SONARQUBE_MAJOR_ISSUES, getSonarIssues(sonarIssuesUrl, "MAJOR"))
-                    .addField(SONARQUBE_MINOR_ISSUES, getSonarIssues(sonarIssuesUrl, "MINOR"))
-                    .addField(SONARQUBE_INFO_ISSUES, getSonarIssues(sonarIssuesUrl, "INFO"))
-                    .addField(SONARQUBE_LINES_OF_CODE, getSonarMetric(sonarMetricsUrl, "ncloc"))
-                    .addField(SONARQUBE_CODE_SMELLS, getSonarMetric(sonarMetricsUrl, SONARQUBE_CODE_SMELLS))
-                    .addField(SONARQUBE_BUGS, getSonarMetric(sonarMetricsUrl, SONARQUBE_BUGS))
-                    .addField(SONARQUBE_COVERAGE, getSonarMetric(sonarMetricsUrl, SONARQUBE_COVERAGE))
-                    .addField(SONARQUBE_VULNERABILITIES, getSonarMetric(sonarMetricsUrl, SONARQUBE_VULNERABILITIES))
-                    .addField(SONARQUBE_BRANCH_COVERAGE, getSonarMetric(sonarMetricsUrl, SONARQUBE_BRANCH_COVERAGE))
-                    .addField(SONARQUBE_LINE_COVERAGE, getSonarMetric(sonarMetricsUrl, SONARQUBE_LINE_COVERAGE))
-                    .addField(SONARQUBE_LINES_TO_COVER, getSonarMetric(sonarMetricsUrl, SONARQUBE_LINES_TO_COVER))
-                    .addField(SONARQUBE_DUPLICATED_LINES_DENSITY, getSonarMetric(sonarMetricsUrl, SONARQUBE_DUPLICATED_LINES_DENSITY))
-                    .addField(SONARQUBE_COMPLEXITY, getSonarMetric(sonarMetricsUrl, SONARQUBE_COMPLEXITY))
-                    .addField(SONARQUBE_ALERT_STATUS, getSonarMetricStr(sonarMetricsUrl, SONARQUBE_ALERT_STATUS))
-                    .addField(SONARQUBE_QUALITY_GATE_DETAILS, getSonarMetricStr(sonarMetricsUrl, SONARQUBE_QUALITY_GATE_DETAILS))
-                    .addField(SONARQUBE_TECHNICAL_DEBT, getSonarMetric(sonarMetricsUrl, SONARQUBE_TECHNICAL_DEBT))
-                    .addField(SONARQUBE_TECHNICAL_DEBT_RATIO, getSonarMetric(sonarMetricsUrl, SONARQUBE_TECHNICAL_DEBT_RATIO));
+            point = fetchPoint();
         } catch (IOException e) {
             String logMessage = "[InfluxDB Plugin] Warning: IOException while fetching SonarQube metrics: " + e.getMessage();
             listener.getLogger().println(logMessage);
@@ -275,6 +373,62 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
         return new AbstractPoint[]{point};
     }
 
+    private AbstractPoint fetchPoint() throws IOException {
+        CompletableFuture<Map<String, Integer>> issues = CompletableFuture.supplyAsync(() -> {
+            try {
+                return getSonarIssueCounts(sonarIssuesUrl);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, requestExecutor);
+        List<String> metricKeys = new ArrayList<>(NUMERIC_METRICS.values());
+        metricKeys.addAll(STRING_METRICS);
+        Map<String, String> measures = getSonarMetrics(sonarMetricsUrl, metricKeys);
+        Map<String, Integer> issueCounts = join(issues);
+
+        AbstractPoint point = buildPoint("sonarqube_data", customPrefix, build)
+                .addField(BUILD_DISPLAY_NAME, build.getDisplayName());
+        for (Map.Entry<String, String> severity : ISSUE_SEVERITIES.entrySet()) {
+            point.addField(severity.getKey(), issueCounts.getOrDefault(severity.getValue(), 0).intValue());
+        }
+        for (Map.Entry<String, String> metric : NUMERIC_METRICS.entrySet()) {
+            point.addField(metric.getKey(), parseMetric(measures.getOrDefault(metric.getValue(), "")));
+        }
+        for (String metric : STRING_METRICS) {
+            point.addField(metric, measures.getOrDefault(metric, ""));
+        }
+        return point;
+    }
+
+    private int getTimeBudgetSeconds() {
+        String budget = env.get("SONAR_TIME_BUDGET_SECONDS");
+        if (budget != null && !budget.isEmpty()) {
+            try {
+                return Integer.parseInt(budget);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return DEFAULT_TIME_BUDGET_SECONDS;
+    }
+
+    private long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
     protected String getResult(String url) throws IOException {
         Request.Builder requestBuilder = new Request.Builder()
                 .get()
@@ -286,7 +440,15 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
             requestBuilder.header("Authorization", credential);
         }
 
-        try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
+        Call call = httpClient.newCall(requestBuilder.build());
+        if (deadlineNanos != Long.MAX_VALUE) {
+            long remaining = remainingMillis();
+            if (remaining <= 0) {
+                throw new IOException("SonarQube time budget exceeded before requesting URL : " + url);
+            }
+            call.timeout().timeout(remaining, TimeUnit.MILLISECONDS);
+        }
+        try (Response response = call.execute()) {
             if (response.code() != 200) {
                 throw new RuntimeException("Failed : HTTP error code : " + response.code() + " from URL : " + url);
             }
@@ -299,71 +461,53 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
         }
     }
 
-    private String[] getSonarProjectFromBuildLog(Run<?, ?> build) throws IOException {
-
-        String projName = null;
-        String url = null;
-        String taskId = null;
-        String taskUrl = null;
-
-        try (BufferedReader br = new BufferedReader(build.getLogReader())) {
-            String line;
-            Matcher match;
-            Pattern p_analysis_url = Pattern.compile(URL_PATTERN_IN_LOGS_ANALYSIS);
-            Pattern p_qg_url = Pattern.compile(URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS);
-            Pattern p_qg_url_timeout = Pattern.compile(URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS_TIMEOUT);
-            Pattern p_qg_url_v4_8 = Pattern.compile(URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS_v4_8);
-
-            Pattern p_taskUrl = Pattern.compile(TASK_URL_PATTERN_IN_LOGS);
-            Pattern p_projName = Pattern.compile(PROJECT_NAME_PATTERN_IN_LOGS);
-
-            while ((line = br.readLine()) != null) {
-                match = p_projName.matcher(line);
-                if (match.matches()) {
-                    projName = match.group(1);
-                    continue;
-                }
-                match = p_qg_url.matcher(line);
-                if (match.matches()) {
-                    url = match.group(2);
-                    //Task already executed.  No need to search for other lines
-                    break;
-                }
-                match = p_qg_url_v4_8.matcher(line);
-                if (match.matches()) {
-                    url = match.group(1);  // https://<url>/dashboard?id=<id>
-                    url = url.substring(0, url.lastIndexOf(('/')));  // strip '/dashboard?id=<id>'
-                    continue;
-                }
-                match = p_qg_url_timeout.matcher(line);
-                if (match.matches()) {
-                    url = match.group(1);
-                    continue;
-                }
-                match = p_analysis_url.matcher(line);
-                if (match.matches()) {
-                    url = match.group(1);
-                    continue;
-                }
-                match = p_taskUrl.matcher(line);
-                if (match.matches()) {
-                    taskUrl = match.group(1);
-                    taskId = taskUrl.split("=")[1];
-                    break; // No need to search for other lines
-                }
-            }
+    /**
+     * @return the response of a request for the analysis, taken from the {@link SonarQubeResponseCache} once the
+     * analysis task has completed successfully
+     */
+    private String getAnalysisResult(String url) throws IOException {
+        if (!cacheResponses) {
+            return getResult(url);
         }
-        return new String[]{projName, url, taskId, taskUrl};
+        SonarQubeResponseCache.Key key = SonarQubeResponseCache.Key.of(url, sonarBuildTaskId, token);
+        return SonarQubeResponseCache.getInstance().get(key, () -> getResult(url));
+    }
+
+    private String[] getSonarProjectFromBuildLog() throws IOException {
+        logScanner.scan();
+        return logExtractor.getResult();
     }
 
+    /**
+     * Finds and parses the report in the workspace on the agent owning it.
+     */
     private String[] getSonarProjectFromBuildReport() throws IOException, UncheckedIOException {
-        String workspaceDir = env.get("WORKSPACE");
-        Path reportPath = workspaceDir == null ? null : findSingleReportPath(Paths.get(workspaceDir));
-        if (reportPath == null) {
+        FilePath ws = getWorkspace();
+        if (ws == null) {
             return new String[]{null, null, null, null};
         }
 
-        return parseSonarProjectFromReportFile(reportPath.toFile().getPath());
+        String reportName = env.get("SONARQUBE_BUILD_REPORT_NAME",
+                SONARQUBE_DEFAULT_BUILD_REPORT_NAME);
+        try {
+            return ws.act(new ReportReader(ReportLocator.forBuild(build, env), reportName));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading SonarQube report in " + ws.getRemote());
+        }
+    }
+
+    /**
+     * @return the workspace of the build, or the directory of the WORKSPACE env var on the controller if it is not
+     * known
+     */
+    @CheckForNull
+    private FilePath getWorkspace() {
+        if (workspace != null) {
+            return workspace;
+        }
+        String workspaceDir = env.get("WORKSPACE");
+        return workspaceDir == null ? null : new FilePath(new File(workspaceDir));
     }
 
     private String[] getSonarProjectFromBuildArtifact() throws IOException, UncheckedIOException {
@@ -388,24 +532,10 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
         String reportName = env.get("SONARQUBE_BUILD_REPORT_NAME",
                 SONARQUBE_DEFAULT_BUILD_REPORT_NAME);
 
-        List<Path> reportsPaths;
-        try (Stream<Path> pathStream = Files.find(rootPath,
-                Integer.MAX_VALUE,
-                (p, basicFileAttributes) ->
-                        basicFileAttributes.isRegularFile() &&
-                    p.endsWith(reportName))
-        ) {
-            reportsPaths = pathStream.collect(Collectors.toList());
-        }
-
-        if (reportsPaths.size() != 1) {
-            return null;
-        }
-
-        return reportsPaths.get(0);
+        return ReportLocator.forBuild(build, env).findSingle(rootPath, reportName);
     }
 
-    private String[] parseSonarProjectFromReportFile(String reportFilePath) throws IOException {
+    private static String[] parseSonarProjectFromReportFile(String reportFilePath) throws IOException {
         String projName = null;
         String url = null;
         String taskId = null;
@@ -415,32 +545,27 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
                 new InputStreamReader(
                         new FileInputStream(reportFilePath), StandardCharsets.UTF_8))) {
             String line;
-
-            Pattern p_proj_name = Pattern.compile(PROJECT_KEY_PATTERN_IN_REPORT);
-            Pattern p_url = Pattern.compile(URL_PATTERN_IN_REPORT);
-            Pattern p_task = Pattern.compile(TASK_ID_PATTERN_IN_REPORT);
-            Pattern p_url_task = Pattern.compile(TASK_URL_PATTERN_IN_REPORT);
             while ((line = br.readLine()) != null) {
 
-                Matcher match = p_proj_name.matcher(line);
+                Matcher match = PROJECT_KEY_PATTERN_IN_REPORT.matcher(line);
                 if (match.matches()) {
                     projName = match.group(1);
                     continue;
                 }
 
-                match = p_url.matcher(line);
+                match = URL_PATTERN_IN_REPORT.matcher(line);
                 if (match.matches()) {
                     url = match.group(1);
                     continue;
                 }
 
-                match = p_task.matcher(line);
+                match = TASK_ID_PATTERN_IN_REPORT.matcher(line);
                 if (match.matches()) {
                     taskId = match.group(1);
                     continue;
                 }
 
-                match = p_url_task.matcher(line);
+                match = TASK_URL_PATTERN_IN_REPORT.matcher(line);
                 if (match.matches()) {
                     taskUrl = match.group(1);
                 }
@@ -450,38 +575,213 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
         return new String[]{projName, url, taskId, taskUrl};
     }
 
+    /**
+     * Finds the report on the agent owning the workspace and returns only the values extracted from it.
+     */
+    private static final class ReportReader extends MasterToSlaveFileCallable<String[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ReportLocator locator;
+        private final String reportName;
+
+        private ReportReader(ReportLocator locator, String reportName) {
+            this.locator = locator;
+            this.reportName = reportName;
+        }
+
+        @Override
+        public String[] invoke(File workspace, VirtualChannel channel) throws IOException {
+            Path reportPath = locator.findSingle(workspace.toPath(), reportName);
+            if (reportPath == null) {
+                return new String[]{null, null, null, null};
+            }
+            return parseSonarProjectFromReportFile(reportPath.toString());
+        }
+    }
+
     public String getSonarMetricStr(String url, String metric) throws IOException {
-        return getSonarMetricValue(url, metric);
+        return getSonarMetrics(url, List.of(metric)).getOrDefault(metric, "");
     }
 
     public Float getSonarMetric(String url, String metric) throws IOException {
-        Float value = null;
+        return parseMetric(getSonarMetricStr(url, metric));
+    }
+
+    private static Float parseMetric(String value) {
         try {
-            value = Float.parseFloat(getSonarMetricValue(url, metric));
+            return Float.parseFloat(value);
         } catch (NumberFormatException ignored) {
+            return null;
         }
-
-        return value;
     }
 
-    private String getSonarMetricValue(String url, String metric) throws IOException {
-
-        String value = "";
-
-        String output = getResult(url + SONAR_METRICS_BASE_METRIC + metric);
-        JSONObject metricsObjects = JSONObject.fromObject(output);
-        try {
-            JSONArray array = metricsObjects.getJSONObject("component").getJSONArray("measures");
-            JSONObject metricsObject = array.getJSONObject(0);
-            value = metricsObject.getString("value");
-        } catch (IndexOutOfBoundsException ignored) {
+    /**
+     * @return the values of the given metrics by metric key, fetched in a single request. Metrics without a measure
+     * are missing.
+     */
+    private Map<String, String> getSonarMetrics(String url, List<String> metrics) throws IOException {
+        String output = getAnalysisResult(url + SONAR_METRICS_BASE_METRIC + String.join(",", metrics));
+        JSONArray array = JSONObject.fromObject(output).getJSONObject("component").getJSONArray("measures");
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < array.size(); i++) {
+            JSONObject measure = array.getJSONObject(i);
+            if (measure.has("value")) {
+                values.put(measure.getString("metric"), measure.getString("value"));
+            }
         }
+        return values;
+    }
 
-        return value;
+    /**
+     * @return the number of unresolved issues by severity, taken from the severities facet of a single request. Falls
+     * back to one request per severity for servers which do not return the facet.
+     */
+    private Map<String, Integer> getSonarIssueCounts(String url) throws IOException {
+        String output = getAnalysisResult(url + SONAR_ISSUES_SEVERITIES_FACET);
+        Map<String, Integer> counts = new HashMap<>();
+        JSONArray facets = JSONObject.fromObject(output).optJSONArray("facets");
+        for (int i = 0; facets != null && i < facets.size(); i++) {
+            JSONObject facet = facets.getJSONObject(i);
+            if ("severities".equals(facet.optString("property"))) {
+                JSONArray values = facet.getJSONArray("values");
+                for (int j = 0; j < values.size(); j++) {
+                    JSONObject value = values.getJSONObject(j);
+                    counts.put(value.getString("val"), value.getInt("count"));
+                }
+                return counts;
+            }
+        }
+        for (String severity : ISSUE_SEVERITIES.values()) {
+            counts.put(severity, getSonarIssues(url, severity));
+        }
+        return counts;
     }
 
     private int getSonarIssues(String url, String severity) throws IOException {
-        String output = getResult(url + severity);
+        String output = getAnalysisResult(url + SONAR_ISSUES_SEVERITY + severity);
         return JSONObject.fromObject(output).getInt("total");
     }
+
+    /**
+     * Extracts project key, server URL and task from the output of the SonarQube scanner in the build log.
+     * <p>
+     * Read from the end, the last analysis in the log is used: its task URL, the URL reported before the task URL,
+     * or the quality gate URL if there is no task URL, and the project key reported before them.
+     */
+    private static final class SonarLogExtractor implements BuildLogScanner.ReverseExtractor {
+
+        private String projName = null;
+        private String url = null;
+        private String taskId = null;
+        private String taskUrl = null;
+        private boolean urlFromQualityGate = false;
+
+        @Override
+        public List<String> getMarkers() {
+            return List.of(PROJECT_NAME_MARKER_IN_LOGS, QUALITY_GATE_STATUS_MARKER_IN_LOGS,
+                    QUALITY_GATE_STATUS_v4_8_MARKER_IN_LOGS, QUALITY_GATE_STATUS_TIMEOUT_MARKER_IN_LOGS,
+                    ANALYSIS_MARKER_IN_LOGS, TASK_URL_MARKER_IN_LOGS);
+        }
+
+        @Override
+        public boolean accept(String line) {
+            Matcher match = PROJECT_NAME_PATTERN_IN_LOGS.matcher(line);
+            if (match.matches()) {
+                projName = match.group(1);
+                return false;
+            }
+            match = URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS.matcher(line);
+            if (match.matches()) {
+                url = match.group(2);
+                //Task already executed.  No need to search for other lines
+                return true;
+            }
+            match = URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS_v4_8.matcher(line);
+            if (match.matches()) {
+                url = match.group(1);  // https://<url>/dashboard?id=<id>
+                url = url.substring(0, url.lastIndexOf(('/')));  // strip '/dashboard?id=<id>'
+                return false;
+            }
+            match = URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS_TIMEOUT.matcher(line);
+            if (match.matches()) {
+                url = match.group(1);
+                return false;
+            }
+            match = URL_PATTERN_IN_LOGS_ANALYSIS.matcher(line);
+            if (match.matches()) {
+                url = match.group(1);
+                return false;
+            }
+            match = TASK_URL_PATTERN_IN_LOGS.matcher(line);
+            if (match.matches()) {
+                taskUrl = match.group(1);
+                taskId = taskUrl.split("=")[1];
+                return true; // No need to search for other lines
+            }
+            return false;
+        }
+
+        @Override
+        public boolean acceptFromEnd(String line) {
+            Matcher match = PROJECT_NAME_PATTERN_IN_LOGS.matcher(line);
+            if (match.matches()) {
+                if (url == null && taskUrl == null) {
+                    // the analysis of this project did not complete, look for an earlier one
+                    return false;
+                }
+                projName = match.group(1);
+                return true;
+            }
+            match = URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS.matcher(line);
+            if (match.matches()) {
+                if (url == null && taskUrl == null) {
+                    url = match.group(2);
+                    urlFromQualityGate = true;
+                }
+                return false;
+            }
+            match = TASK_URL_PATTERN_IN_LOGS.matcher(line);
+            if (match.matches()) {
+                if (taskUrl == null) {
+                    taskUrl = match.group(1);
+                    taskId = taskUrl.split("=")[1];
+                }
+                return false;
+            }
+            String analysisUrl = null;
+            match = URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS_v4_8.matcher(line);
+            if (match.matches()) {
+                analysisUrl = match.group(1);  // https://<url>/dashboard?id=<id>
+                analysisUrl = analysisUrl.substring(0, analysisUrl.lastIndexOf(('/')));  // strip '/dashboard?id=<id>'
+            }
+            match = URL_PATTERN_IN_LOGS_QUALITY_GATE_STATUS_TIMEOUT.matcher(line);
+            if (analysisUrl == null && match.matches()) {
+                analysisUrl = match.group(1);
+            }
+            match = URL_PATTERN_IN_LOGS_ANALYSIS.matcher(line);
+            if (analysisUrl == null && match.matches()) {
+                analysisUrl = match.group(1);
+            }
+            // reading forwards, the URL reported before the task URL takes precedence over the quality gate URL
+            if (analysisUrl != null && (url == null || urlFromQualityGate && taskUrl != null)) {
+                url = analysisUrl;
+                urlFromQualityGate = false;
+            }
+            return false;
+        }
+
+        @Override
+        public void reset() {
+            projName = null;
+            url = null;
+            taskId = null;
+            taskUrl = null;
+            urlFromQualityGate = false;
+        }
+
+        private String[] getResult() {
+            return new String[]{projName, url, taskId, taskUrl};
+        }
+    }
 }
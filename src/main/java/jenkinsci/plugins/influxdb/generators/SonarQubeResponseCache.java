@@ -0,0 +1,177 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.Util;
+import jenkins.util.SystemProperties;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the responses of SonarQube API requests between all builds which report the same analysis, such as matrix
+ * cells, parallel branches or downstream jobs of the same commit.
+ * <p>
+ * Responses are keyed by the request URL, which contains the server URL, project key and branch, the id of the
+ * analysis task and a digest of the token the request was made with. Concurrent requests for the same key are made
+ * only once, the other callers wait for its response. Responses expire after {@link #TTL_MILLIS}, and the oldest are
+ * evicted when more than {@link #MAX_ENTRIES} are cached. Failed requests are not cached.
+ */
+public final class SonarQubeResponseCache {
+
+    /**
+     * Time for which a response is reused.
+     */
+    static final long TTL_MILLIS = SystemProperties.getLong(
+            SonarQubeResponseCache.class.getName() + ".ttlMillis", TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * Maximum number of cached responses.
+     */
+    static final int MAX_ENTRIES = SystemProperties.getInteger(
+            SonarQubeResponseCache.class.getName() + ".maxEntries", 256);
+
+    private static final SonarQubeResponseCache INSTANCE = new SonarQubeResponseCache(TTL_MILLIS, MAX_ENTRIES);
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    // in insertion order, which is the order of creation, as expired entries are removed before they are replaced
+    private final Map<Key, Entry> entries = new LinkedHashMap<>();
+
+    SonarQubeResponseCache(long ttlMillis, int maxEntries) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = maxEntries;
+    }
+
+    public static SonarQubeResponseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Makes a request.
+     */
+    @FunctionalInterface
+    public interface Request {
+
+        String execute() throws IOException;
+    }
+
+    /**
+     * Returns the cached response for the given key, waits for a request for it which is in flight, or makes the
+     * request.
+     */
+    public String get(@Nonnull Key key, @Nonnull Request request) throws IOException {
+        Entry entry;
+        boolean owner = false;
+        synchronized (this) {
+            long now = System.nanoTime();
+            evictExpired(now);
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(now);
+                entries.put(key, entry);
+                owner = true;
+                evictOldest();
+            }
+        }
+        if (owner) {
+            return load(key, entry, request);
+        }
+        try {
+            return entry.response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String load(Key key, Entry entry, Request request) throws IOException {
+        boolean loaded = false;
+        try {
+            String response = request.execute();
+            entry.response.complete(response);
+            loaded = true;
+            return response;
+        } catch (IOException | RuntimeException e) {
+            entry.response.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (!loaded) {
+                synchronized (this) {
+                    entries.remove(key, entry);
+                }
+                // in case of an error, so that no caller waits forever
+                entry.response.completeExceptionally(new IOException("SonarQube request was not completed"));
+            }
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().createdAt >= ttlNanos) {
+                iterator.remove();
+            } else {
+                // all later entries were created later
+                break;
+            }
+        }
+    }
+
+    private void evictOldest() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Forgets all cached responses.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of cached responses, including requests in flight
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+
+        private final long createdAt;
+        private final CompletableFuture<String> response = new CompletableFuture<>();
+
+        private Entry(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Identifies a response.
+     *
+     * @param url    the request URL
+     * @param taskId the id of the analysis task the response belongs to
+     * @param token  digest of the token the request is made with, so that responses are only shared between callers
+     *               with the same access rights
+     */
+    public record Key(String url, String taskId, String token) {
+
+        public static Key of(String url, String taskId, @CheckForNull String token) {
+            return new Key(url, taskId, token == null ? "" : Util.getDigestOf(token));
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package jenkinsci.plugins.influxdb.generators.serenity;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 
 public interface ISerenityJsonSummaryFile {
     boolean exists();
     Path getPath();
     String getContents() throws IOException;
-}
\ No newline at end of file
+
+    default SerenitySummary getSummary() throws IOException {
+        return SerenitySummary.read(new ByteArrayInputStream(getContents().getBytes(StandardCharsets.UTF_8)));
+    }
+}
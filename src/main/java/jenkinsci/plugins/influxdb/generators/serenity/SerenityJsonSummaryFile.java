@@ -1,36 +1,159 @@
 package jenkinsci.plugins.influxdb.generators.serenity;
 
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkinsci.plugins.influxdb.generators.ReportLocator;
+
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 
+/**
+ * The Serenity summary in a workspace, which is found and parsed on the agent owning the workspace.
+ */
 public class SerenityJsonSummaryFile implements ISerenityJsonSummaryFile {
 
     private static final String SERENITY_OUTPUT_DIRECTORY = "target/site/serenity";
     private static final String SERENITY_JSON_SUMMARY_FILE = "serenity-summary.json";
 
-    private final String workspace;
+    private final FilePath workspace;
+    private final ReportLocator locator;
+    private Location location;
 
     public SerenityJsonSummaryFile(String workspace) {
+        this(workspace, null);
+    }
+
+    /**
+     * @param locator used to search the workspace if the summary is not in the default output directory, or null to
+     *                only look there
+     */
+    public SerenityJsonSummaryFile(String workspace, ReportLocator locator) {
+        this(workspace == null ? null : new FilePath(new File(workspace)), locator);
+    }
+
+    /**
+     * @param locator used to search the workspace if the summary is not in the default output directory, or null to
+     *                only look there
+     */
+    public SerenityJsonSummaryFile(FilePath workspace, ReportLocator locator) {
         this.workspace = workspace;
+        this.locator = locator;
     }
 
     public boolean exists() {
         try {
-            return Files.exists(getPath());
-        } catch (IllegalArgumentException e) {
+            return locate().exists();
+        } catch (IllegalArgumentException | IOException e) {
             return false;
         }
     }
 
     public Path getPath() {
+        try {
+            return Paths.get(locate().path());
+        } catch (IOException e) {
+            return Paths.get(workspace.getRemote(), SERENITY_OUTPUT_DIRECTORY, SERENITY_JSON_SUMMARY_FILE);
+        }
+    }
+
+    public String getContents() throws IOException {
+        try {
+            return getSummaryFile().readToString();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading Serenity summary in " + workspace.getRemote());
+        }
+    }
+
+    /**
+     * Parses the summary on the agent owning the workspace, so that only the values are transferred.
+     */
+    @Override
+    public SerenitySummary getSummary() throws IOException {
+        try {
+            return getSummaryFile().act(new SummaryParser());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading Serenity summary in " + workspace.getRemote());
+        }
+    }
+
+    private FilePath getSummaryFile() throws IOException {
+        Location found = locate();
+        if (!found.exists()) {
+            throw new NoSuchFileException(found.path());
+        }
+        return new FilePath(workspace.getChannel(), found.path());
+    }
+
+    private synchronized Location locate() throws IOException {
         if (workspace == null) {
             throw new IllegalArgumentException("no workspace");
         }
-        return java.nio.file.Paths.get(workspace, SERENITY_OUTPUT_DIRECTORY, SERENITY_JSON_SUMMARY_FILE);
+        if (location == null) {
+            try {
+                location = workspace.act(new SummaryLocator(locator));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while locating Serenity summary in " + workspace.getRemote());
+            }
+        }
+        return location;
     }
 
-    public String getContents() throws IOException {
-        return Files.readString(getPath());
+    /**
+     * @param path   path of the summary on the agent
+     * @param exists whether the summary exists
+     */
+    private record Location(String path, boolean exists) implements Serializable {
+    }
+
+    /**
+     * Finds the summary on the agent owning the workspace.
+     */
+    private static final class SummaryLocator extends MasterToSlaveFileCallable<Location> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ReportLocator locator;
+
+        private SummaryLocator(ReportLocator locator) {
+            this.locator = locator;
+        }
+
+        @Override
+        public Location invoke(File workspace, VirtualChannel channel) throws IOException {
+            Path path = workspace.toPath().resolve(SERENITY_OUTPUT_DIRECTORY).resolve(SERENITY_JSON_SUMMARY_FILE);
+            if (locator != null && !Files.exists(path)) {
+                Path located = locator.findFirst(workspace.toPath(), "serenity/" + SERENITY_JSON_SUMMARY_FILE);
+                if (located != null) {
+                    path = located;
+                }
+            }
+            return new Location(path.toString(), Files.exists(path));
+        }
+    }
+
+    /**
+     * Parses the summary on the agent owning it.
+     */
+    private static final class SummaryParser extends MasterToSlaveFileCallable<SerenitySummary> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public SerenitySummary invoke(File summary, VirtualChannel channel) throws IOException {
+            try (InputStream in = Files.newInputStream(summary.toPath())) {
+                return SerenitySummary.read(in);
+            }
+        }
     }
-}
\ No newline at end of file
+}
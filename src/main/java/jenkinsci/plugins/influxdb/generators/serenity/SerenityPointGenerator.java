@@ -5,10 +5,9 @@ import hudson.model.TaskListener;
 import jenkinsci.plugins.influxdb.generators.AbstractPointGenerator;
 import jenkinsci.plugins.influxdb.models.AbstractPoint;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
 
 import java.io.IOException;
+import java.util.Map;
 
 public class SerenityPointGenerator extends AbstractPointGenerator {
 
@@ -70,62 +69,48 @@ public class SerenityPointGenerator extends AbstractPointGenerator {
     }
 
     public AbstractPoint[] generate() {
-        String contents;
+        SerenitySummary summary;
         try {
-            contents = serenityJsonSummaryFile.getContents();
+            summary = serenityJsonSummaryFile.getSummary();
         } catch (IOException e) {
             listener.getLogger().println("Failed to read from file " + serenityJsonSummaryFile.getPath() + ", due to: " + e);
             return null;
         }
 
-        JSONObject root = JSONObject.fromObject(contents);
-        JSONObject results = root.getJSONObject("results");
-        JSONObject resultsCounts = results.getJSONObject("counts");
-        JSONObject resultsPercentages = results.getJSONObject("percentages");
-        JSONArray tagTypes = root.getJSONArray("tags");
-
         AbstractPoint point = buildPoint("serenity_data", customPrefix, build);
 
         // include results.counts fields
         point
-                .addField(SERENITY_RESULTS_COUNTS_TOTAL, resultsCounts.getInt("total"))
-                .addField(SERENITY_RESULTS_COUNTS_SUCCESS, resultsCounts.getInt("success"))
-                .addField(SERENITY_RESULTS_COUNTS_PENDING, resultsCounts.getInt("pending"))
-                .addField(SERENITY_RESULTS_COUNTS_IGNORED, resultsCounts.getInt("ignored"))
-                .addField(SERENITY_RESULTS_COUNTS_SKIPPED, resultsCounts.getInt("skipped"))
-                .addField(SERENITY_RESULTS_COUNTS_FAILURE, resultsCounts.getInt("failure"))
-                .addField(SERENITY_RESULTS_COUNTS_ERROR, resultsCounts.getInt("error"))
-                .addField(SERENITY_RESULTS_COUNTS_COMPROMISED, resultsCounts.getInt("compromised"));
+                .addField(SERENITY_RESULTS_COUNTS_TOTAL, summary.getCount("total"))
+                .addField(SERENITY_RESULTS_COUNTS_SUCCESS, summary.getCount("success"))
+                .addField(SERENITY_RESULTS_COUNTS_PENDING, summary.getCount("pending"))
+                .addField(SERENITY_RESULTS_COUNTS_IGNORED, summary.getCount("ignored"))
+                .addField(SERENITY_RESULTS_COUNTS_SKIPPED, summary.getCount("skipped"))
+                .addField(SERENITY_RESULTS_COUNTS_FAILURE, summary.getCount("failure"))
+                .addField(SERENITY_RESULTS_COUNTS_ERROR, summary.getCount("error"))
+                .addField(SERENITY_RESULTS_COUNTS_COMPROMISED, summary.getCount("compromised"));
 
         // include results.percentages fields
         point
-                .addField(SERENITY_RESULTS_PERCENTAGES_SUCCESS, resultsPercentages.getInt("success"))
-                .addField(SERENITY_RESULTS_PERCENTAGES_PENDING, resultsPercentages.getInt("pending"))
-                .addField(SERENITY_RESULTS_PERCENTAGES_IGNORED, resultsPercentages.getInt("ignored"))
-                .addField(SERENITY_RESULTS_PERCENTAGES_SKIPPED, resultsPercentages.getInt("skipped"))
-                .addField(SERENITY_RESULTS_PERCENTAGES_FAILURE, resultsPercentages.getInt("failure"))
-                .addField(SERENITY_RESULTS_PERCENTAGES_ERROR, resultsPercentages.getInt("error"))
-                .addField(SERENITY_RESULTS_PERCENTAGES_COMPROMISED, resultsPercentages.getInt("compromised"));
+                .addField(SERENITY_RESULTS_PERCENTAGES_SUCCESS, summary.getPercentage("success"))
+                .addField(SERENITY_RESULTS_PERCENTAGES_PENDING, summary.getPercentage("pending"))
+                .addField(SERENITY_RESULTS_PERCENTAGES_IGNORED, summary.getPercentage("ignored"))
+                .addField(SERENITY_RESULTS_PERCENTAGES_SKIPPED, summary.getPercentage("skipped"))
+                .addField(SERENITY_RESULTS_PERCENTAGES_FAILURE, summary.getPercentage("failure"))
+                .addField(SERENITY_RESULTS_PERCENTAGES_ERROR, summary.getPercentage("error"))
+                .addField(SERENITY_RESULTS_PERCENTAGES_COMPROMISED, summary.getPercentage("compromised"));
 
         // include remaining results fields
         point
-                .addField(SERENITY_RESULTS_TOTAL_TEST_DURATION, results.getLong("totalTestDuration"))
-                .addField(SERENITY_RESULTS_TOTAL_CLOCK_DURATION, results.getLong("totalClockDuration"))
-                .addField(SERENITY_RESULTS_MIN_TEST_DURATION, results.getLong("minTestDuration"))
-                .addField(SERENITY_RESULTS_MAX_TEST_DURATION, results.getLong("maxTestDuration"))
-                .addField(SERENITY_RESULTS_AVERAGE_TEST_DURATION, results.getLong("averageTestDuration"));
+                .addField(SERENITY_RESULTS_TOTAL_TEST_DURATION, summary.getDuration("totalTestDuration"))
+                .addField(SERENITY_RESULTS_TOTAL_CLOCK_DURATION, summary.getDuration("totalClockDuration"))
+                .addField(SERENITY_RESULTS_MIN_TEST_DURATION, summary.getDuration("minTestDuration"))
+                .addField(SERENITY_RESULTS_MAX_TEST_DURATION, summary.getDuration("maxTestDuration"))
+                .addField(SERENITY_RESULTS_AVERAGE_TEST_DURATION, summary.getDuration("averageTestDuration"));
 
         // include tags fields
-        for (int iTagType = 0; iTagType < tagTypes.size(); iTagType++) {
-            JSONObject tagType = tagTypes.getJSONObject(iTagType);
-            String tagTypeType = tagType.getString("tagType");
-            JSONArray tagResults = tagType.getJSONArray("tagResults");
-            for (int iTag = 0; iTag < tagResults.size(); iTag++) {
-                JSONObject tagResult = tagResults.getJSONObject(iTag);
-                String field = "serenity_tags_" + tagTypeType + ":" + tagResult.getString("tagName");
-                point
-                        .addField(field, tagResult.getInt("count"));
-            }
+        for (Map.Entry<String, Long> tag : summary.getTags().entrySet()) {
+            point.addField("serenity_tags_" + tag.getKey(), tag.getValue());
         }
 
         return new AbstractPoint[]{point};
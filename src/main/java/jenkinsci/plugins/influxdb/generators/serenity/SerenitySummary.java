@@ -0,0 +1,240 @@
+package jenkinsci.plugins.influxdb.generators.serenity;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import jenkins.util.SystemProperties;
+
+import javax.annotation.CheckForNull;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The values of a Serenity summary which are published: the results counts, percentages and durations, and the count
+ * of every tag.
+ * <p>
+ * The summary is read with a pull parser, which skips everything else without building it in memory, and stops once
+ * the results and tags were read. Summaries larger than {@link #MAX_BYTES} are rejected.
+ */
+public final class SerenitySummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Maximum number of bytes read from a summary.
+     */
+    static final long MAX_BYTES = SystemProperties.getLong(
+            SerenitySummary.class.getName() + ".maxBytes", 256L * 1024 * 1024);
+
+    private static final Set<String> DURATIONS = Set.of("totalTestDuration", "totalClockDuration",
+            "minTestDuration", "maxTestDuration", "averageTestDuration");
+
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private final Map<String, Long> percentages = new LinkedHashMap<>();
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+    // by tag type and tag name, separated by a colon
+    private final Map<String, Long> tags = new LinkedHashMap<>();
+
+    private SerenitySummary() {
+    }
+
+    public static SerenitySummary read(InputStream in) throws IOException {
+        return read(in, MAX_BYTES);
+    }
+
+    static SerenitySummary read(InputStream in, long maxBytes) throws IOException {
+        SerenitySummary summary = new SerenitySummary();
+        boolean resultsRead = false;
+        boolean tagsRead = false;
+        try (JsonReader json = new JsonReader(new InputStreamReader(new CappedInputStream(in, maxBytes), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            while (!(resultsRead && tagsRead) && json.hasNext()) {
+                switch (json.nextName()) {
+                    case "results" -> {
+                        summary.readResults(json);
+                        resultsRead = true;
+                    }
+                    case "tags" -> {
+                        summary.readTags(json);
+                        tagsRead = true;
+                    }
+                    default -> json.skipValue();
+                }
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Invalid Serenity summary: " + e.getMessage(), e);
+        }
+        if (!resultsRead) {
+            throw new IOException("Serenity summary has no results");
+        }
+        return summary;
+    }
+
+    private void readResults(JsonReader json) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("counts")) {
+                readNumbers(json, counts);
+            } else if (name.equals("percentages")) {
+                readNumbers(json, percentages);
+            } else if (DURATIONS.contains(name)) {
+                durations.put(name, readLong(json));
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    private void readTags(JsonReader json) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            String tagType = null;
+            List<String> tagNames = new ArrayList<>();
+            List<Long> tagCounts = new ArrayList<>();
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (name.equals("tagType")) {
+                    tagType = readString(json);
+                } else if (name.equals("tagResults") && json.peek() == JsonToken.BEGIN_ARRAY) {
+                    readTagResults(json, tagNames, tagCounts);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            for (int i = 0; i < tagNames.size(); i++) {
+                tags.put(tagType + ":" + tagNames.get(i), tagCounts.get(i));
+            }
+        }
+        json.endArray();
+    }
+
+    private static void readTagResults(JsonReader json, List<String> tagNames, List<Long> tagCounts) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            String tagName = null;
+            Long count = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (name.equals("tagName")) {
+                    tagName = readString(json);
+                } else if (name.equals("count")) {
+                    count = readLong(json);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            tagNames.add(tagName);
+            tagCounts.add(count);
+        }
+        json.endArray();
+    }
+
+    private static void readNumbers(JsonReader json, Map<String, Long> values) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            values.put(name, readLong(json));
+        }
+        json.endObject();
+    }
+
+    @CheckForNull
+    private static String readString(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        return json.nextString();
+    }
+
+    /**
+     * @return the value as a whole number, where decimals are truncated
+     */
+    @CheckForNull
+    private static Long readLong(JsonReader json) throws IOException {
+        String value = readString(json);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return (long) Double.parseDouble(value);
+        }
+    }
+
+    @CheckForNull
+    public Long getCount(String name) {
+        return counts.get(name);
+    }
+
+    @CheckForNull
+    public Long getPercentage(String name) {
+        return percentages.get(name);
+    }
+
+    @CheckForNull
+    public Long getDuration(String name) {
+        return durations.get(name);
+    }
+
+    /**
+     * @return the count of every tag, by tag type and tag name separated by a colon
+     */
+    public Map<String, Long> getTags() {
+        return tags;
+    }
+
+    /**
+     * Fails once more than the maximum number of bytes was read.
+     */
+    private static final class CappedInputStream extends FilterInputStream {
+
+        private final long maxBytes;
+        private long read;
+
+        private CappedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws IOException {
+            read += n;
+            if (read > maxBytes) {
+                throw new IOException("Serenity summary is larger than " + maxBytes + " bytes");
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package jenkinsci.plugins.influxdb.global;
 
 import hudson.EnvVars;
 import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Job;
 import hudson.model.Run;
@@ -25,27 +27,11 @@ import java.util.regex.Pattern;
 @Extension
 public class GlobalRunListener extends RunListener<Run<?, ?>> {
 
-    private static final String VARIABLE_PREFIX = "INFLUXDB_PLUGIN_";
+    static final String VARIABLE_PREFIX = "INFLUXDB_PLUGIN_";
 
     @Override
     public void onCompleted(Run<?, ?> build, @Nonnull TaskListener listener) {
-        // Gets the full path of the build's project
-        String path = build.getParent().getRelativeNameFrom(Jenkins.getInstanceOrNull());
-        // Gets the list of targets from the configuration
-        Jenkins jenkins = Jenkins.getInstanceOrNull();
-        if (jenkins == null) {
-            return;
-        }
-        List<Target> targets = jenkins.getDescriptorByType(InfluxDbPublisher.DescriptorImpl.class).getTargets();
-        // Selects the targets eligible as global listeners and which match the build path
-        List<Target> selectedTargets = new ArrayList<>();
-        for (Target target : targets) {
-            // Checks if the target matches the path to the project
-            // Skip build if it already publishes information on this target
-            if (isTargetMatchingPath(target, path) && !isPublicationInBuild(target, build)) {
-                selectedTargets.add(target);
-            }
-        }
+        List<Target> selectedTargets = selectTargets(build);
         // If some targets are selected
         if (!selectedTargets.isEmpty()) {
 
@@ -73,11 +59,36 @@ public class GlobalRunListener extends RunListener<Run<?, ?>> {
             );
 
             // Publication
-            publicationService.perform(build, listener, env);
+            // Freestyle builds still know their workspace, so that reports are read on the agent owning it
+            FilePath workspace = build instanceof AbstractBuild<?, ?> abstractBuild ? abstractBuild.getWorkspace() : null;
+            publicationService.perform(build, workspace, listener, env);
+        }
+    }
+
+    /**
+     * Selects the targets eligible as global listeners and which match the path of the build's project.
+     */
+    static List<Target> selectTargets(Run<?, ?> build) {
+        // Gets the list of targets from the configuration
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return List.of();
+        }
+        // Gets the full path of the build's project
+        String path = build.getParent().getRelativeNameFrom(jenkins);
+        List<Target> targets = jenkins.getDescriptorByType(InfluxDbPublisher.DescriptorImpl.class).getTargets();
+        List<Target> selectedTargets = new ArrayList<>();
+        for (Target target : targets) {
+            // Checks if the target matches the path to the project
+            // Skip build if it already publishes information on this target
+            if (isTargetMatchingPath(target, path) && !isPublicationInBuild(target, build)) {
+                selectedTargets.add(target);
+            }
         }
+        return selectedTargets;
     }
 
-    private boolean isPublicationInBuild(Target target, Run<?, ?> build) {
+    private static boolean isPublicationInBuild(Target target, Run<?, ?> build) {
         Job<?, ?> parent = build.getParent();
         if (parent instanceof AbstractProject) {
             InfluxDbPublisher publisher = (InfluxDbPublisher) ((AbstractProject) parent).getPublishersList().get(InfluxDbPublisher.class);
@@ -89,7 +100,7 @@ public class GlobalRunListener extends RunListener<Run<?, ?>> {
         return false;
     }
 
-    private boolean isTargetMatchingPath(@Nonnull Target target, @Nonnull String path) {
+    private static boolean isTargetMatchingPath(@Nonnull Target target, @Nonnull String path) {
         if (target.isGlobalListener()) {
             String pattern = target.getGlobalListenerFilter();
             return StringUtils.isBlank(pattern) || Pattern.matches(pattern, path);
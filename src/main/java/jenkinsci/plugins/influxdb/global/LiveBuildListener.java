@@ -0,0 +1,197 @@
+package jenkinsci.plugins.influxdb.global;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkinsci.plugins.influxdb.InfluxDbPublicationConfig;
+import jenkinsci.plugins.influxdb.generators.FlowGraphIndex;
+import jenkinsci.plugins.influxdb.generators.LiveBuildPointGenerator;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import jenkinsci.plugins.influxdb.models.Target;
+import jenkinsci.plugins.influxdb.publication.LivePointStreamer;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionListener;
+import org.jenkinsci.plugins.workflow.flow.GraphListener;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streams the points of running pipeline builds to the targets configured as global listeners, if live streaming is
+ * enabled in {@link InfluxDbPublicationConfig}: an event whenever a stage or parallel branch starts or ends, and a
+ * heartbeat of the build at a fixed interval.
+ * <p>
+ * Points are handed over to the {@link LivePointStreamer}, so that the build never waits for them to be written.
+ */
+@Extension
+public class LiveBuildListener extends FlowExecutionListener implements GraphListener {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(LiveBuildListener.class.getName());
+
+    // by execution, only for builds which are streamed
+    private static final Map<FlowExecution, LiveBuild> liveBuilds = new ConcurrentHashMap<>();
+
+    @Override
+    public void onRunning(@Nonnull FlowExecution execution) {
+        register(execution, false);
+    }
+
+    @Override
+    public void onResumed(@Nonnull FlowExecution execution) {
+        register(execution, true);
+    }
+
+    @Override
+    public void onCompleted(@Nonnull FlowExecution execution) {
+        liveBuilds.remove(execution);
+    }
+
+    @Override
+    public void onNewHead(FlowNode node) {
+        LiveBuild liveBuild = liveBuilds.get(node.getExecution());
+        if (liveBuild == null) {
+            return;
+        }
+        if (node instanceof BlockStartNode start) {
+            AbstractPoint point = liveBuild.generator().generateStageStart(start);
+            if (point != null) {
+                liveBuild.runningStages.incrementAndGet();
+                liveBuild.offer(point);
+            }
+        } else if (node instanceof BlockEndNode<?> end) {
+            AbstractPoint point = liveBuild.generator().generateStageEnd(end);
+            if (point != null) {
+                liveBuild.runningStages.decrementAndGet();
+                liveBuild.completedStages.incrementAndGet();
+                liveBuild.offer(point);
+            }
+        }
+    }
+
+    /**
+     * @param resumed whether the build was resumed after a restart, in which case the stages are counted from its
+     *                flow graph, as the events of those which started before are not seen again
+     */
+    private static void register(FlowExecution execution, boolean resumed) {
+        if (!InfluxDbPublicationConfig.getInstance().isLiveStreaming()) {
+            return;
+        }
+        Run<?, ?> build = getBuild(execution);
+        if (build == null) {
+            return;
+        }
+        List<Target> targets = GlobalRunListener.selectTargets(build);
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        EnvVars env;
+        try {
+            env = build.getEnvironment(TaskListener.NULL);
+        } catch (IOException | InterruptedException e) {
+            env = new EnvVars();
+        }
+        LiveBuild liveBuild = new LiveBuild(build, targets, env);
+        if (resumed) {
+            for (FlowGraphIndex.Block block : FlowGraphIndex.of(build).getBlocks()) {
+                if (block.getEndMillis() < 0) {
+                    liveBuild.runningStages.incrementAndGet();
+                } else {
+                    liveBuild.completedStages.incrementAndGet();
+                }
+            }
+        }
+        liveBuilds.put(execution, liveBuild);
+    }
+
+    @CheckForNull
+    private static Run<?, ?> getBuild(FlowExecution execution) {
+        try {
+            Queue.Executable executable = execution.getOwner().getExecutable();
+            return executable instanceof Run<?, ?> build ? build : null;
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Could not get the build of " + execution, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the heartbeats of the streamed builds which are due.
+     */
+    @Extension
+    public static class Heartbeat extends PeriodicWork {
+
+        static final long CHECK_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+        @Override
+        public long getRecurrencePeriod() {
+            return CHECK_INTERVAL_MILLIS;
+        }
+
+        @Override
+        protected void doRun() {
+            long interval = TimeUnit.SECONDS.toMillis(InfluxDbPublicationConfig.getInstance().getLiveHeartbeatSeconds());
+            long now = System.currentTimeMillis();
+            for (LiveBuild liveBuild : liveBuilds.values()) {
+                if (now - liveBuild.lastHeartbeatMillis >= interval) {
+                    liveBuild.lastHeartbeatMillis = now;
+                    for (AbstractPoint point : liveBuild.generator().generate()) {
+                        liveBuild.offer(point);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class LiveBuild {
+
+        private final Run<?, ?> build;
+        private final List<Target> targets;
+        private final ProjectNameRenderer projectNameRenderer;
+        private final String customPrefix;
+        private final String jenkinsEnvParameterTag;
+        private final AtomicInteger runningStages = new AtomicInteger();
+        private final AtomicInteger completedStages = new AtomicInteger();
+        private final AtomicLong sequence = new AtomicLong();
+        private volatile long lastHeartbeatMillis = System.currentTimeMillis();
+
+        private LiveBuild(Run<?, ?> build, List<Target> targets, EnvVars env) {
+            this.build = build;
+            this.targets = targets;
+            this.customPrefix = env.get(GlobalRunListener.VARIABLE_PREFIX + "CUSTOM_PREFIX");
+            this.projectNameRenderer = new ProjectNameRenderer(customPrefix,
+                    env.get(GlobalRunListener.VARIABLE_PREFIX + "CUSTOM_PROJECT_NAME"));
+            this.jenkinsEnvParameterTag = env.expand(env.get(GlobalRunListener.VARIABLE_PREFIX + "CUSTOM_TAGS"));
+        }
+
+        private LiveBuildPointGenerator generator() {
+            // points of the same build and measurement need distinct timestamps, so that none of them is overwritten
+            long timestamp = System.currentTimeMillis() * 1000000 + sequence.getAndIncrement() % 1000000;
+            return new LiveBuildPointGenerator(build, TaskListener.NULL, projectNameRenderer, timestamp,
+                    jenkinsEnvParameterTag, customPrefix, runningStages.get(), completedStages.get());
+        }
+
+        private void offer(AbstractPoint point) {
+            LivePointStreamer.get().offer(build, targets, point);
+        }
+    }
+}
@@ -1,101 +1,235 @@
 package jenkinsci.plugins.influxdb.models;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
-
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point which is independent of the client used to write it.
+ * <p>
+ * Tags and fields are kept in arrays sorted by key, so a point holds a handful of small objects no matter how many
+ * clients exist. It is converted to the point type of the client actually connected only when it is written.
+ */
 public class AbstractPoint {
-    private final com.influxdb.client.write.Point v1v2Point;
-    private final com.influxdb.v3.client.Point v3Point;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final String measurement;
+
+    private String[] tagKeys = new String[INITIAL_CAPACITY];
+    private String[] tagValues = new String[INITIAL_CAPACITY];
+    private int tagCount;
+
+    private String[] fieldKeys = new String[INITIAL_CAPACITY];
+    private Object[] fieldValues = new Object[INITIAL_CAPACITY];
+    private int fieldCount;
+
+    private long time;
+    @CheckForNull
+    private TimeUnit precision;
 
     public AbstractPoint(@Nonnull String measurement) {
-        this.v1v2Point = new com.influxdb.client.write.Point(measurement);
-        this.v3Point = new com.influxdb.v3.client.Point(measurement);
+        this.measurement = Objects.requireNonNull(measurement, "measurement");
     }
 
     public String getName() {
-        String v1v2Name = this.v1v2Point.toLineProtocol().split(",")[0];
-        String v3Name = this.v3Point.toLineProtocol().split(",")[0];
-        if (!v1v2Name.equals(v3Name)) {
-            throw new RuntimeException("V1V2 point name '%s' differs from V3 point name '%s'".formatted(v1v2Name, v3Name));
-        }
-        return v1v2Name;
+        return measurement;
     }
 
+    /**
+     * Converts this point to a point of the InfluxDB 1.x/2.x client. A new point is created on every call.
+     */
     public com.influxdb.client.write.Point getV1v2Point() {
-        return v1v2Point;
+        com.influxdb.client.write.Point point = new com.influxdb.client.write.Point(measurement);
+        for (int i = 0; i < tagCount; i++) {
+            point.addTag(tagKeys[i], tagValues[i]);
+        }
+        for (int i = 0; i < fieldCount; i++) {
+            Object value = fieldValues[i];
+            if (value instanceof Boolean bool) {
+                point.addField(fieldKeys[i], bool.booleanValue());
+            } else if (value instanceof Number number) {
+                point.addField(fieldKeys[i], number);
+            } else if (value instanceof String string) {
+                point.addField(fieldKeys[i], string);
+            } else {
+                point.addFields(Collections.singletonMap(fieldKeys[i], value));
+            }
+        }
+        if (precision != null) {
+            point.time(time, toV1v2Precision(precision));
+        }
+        return point;
     }
 
+    /**
+     * Converts this point to a point of the InfluxDB 3.x client. A new point is created on every call.
+     */
     public com.influxdb.v3.client.Point getV3Point() {
-        return v3Point;
+        com.influxdb.v3.client.Point point = new com.influxdb.v3.client.Point(measurement);
+        for (int i = 0; i < tagCount; i++) {
+            point.setTag(tagKeys[i], tagValues[i]);
+        }
+        for (int i = 0; i < fieldCount; i++) {
+            point.setField(fieldKeys[i], fieldValues[i]);
+        }
+        if (precision != null) {
+            point.setTimestamp(time, toV3Precision(precision));
+        }
+        return point;
+    }
+
+    int getTagCount() {
+        return tagCount;
+    }
+
+    String getTagKey(int index) {
+        return tagKeys[index];
+    }
+
+    String getTagValue(int index) {
+        return tagValues[index];
+    }
+
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    String getFieldKey(int index) {
+        return fieldKeys[index];
+    }
+
+    Object getFieldValue(int index) {
+        return fieldValues[index];
+    }
+
+    boolean hasTime() {
+        return precision != null;
+    }
+
+    long getTimeNanos() {
+        return precision == null ? 0 : precision.toNanos(time);
     }
 
     public AbstractPoint addField(String field, boolean value) {
-        this.v1v2Point.addField(field, value);
-        this.v3Point.setField(field, value);
-        return this;
+        return putField(field, value);
     }
 
     public AbstractPoint addField(String field, int value) {
-        this.v1v2Point.addField(field, value);
-        this.v3Point.setField(field, value);
-        return this;
+        return putField(field, (long) value);
     }
 
     public AbstractPoint addField(String field, long value) {
-        this.v1v2Point.addField(field, value);
-        this.v3Point.setField(field, value);
-        return this;
+        return putField(field, value);
     }
 
     public AbstractPoint addField(String field, double value) {
-        this.v1v2Point.addField(field, value);
-        this.v3Point.setField(field, value);
-        return this;
+        return putField(field, value);
     }
 
     public AbstractPoint addField(String field, Number value) {
-        this.v1v2Point.addField(field, value);
-        this.v3Point.setField(field, value);
-        return this;
+        return putField(field, value);
     }
 
     public AbstractPoint addField(String field, String value) {
-        this.v1v2Point.addField(field, value);
-        this.v3Point.setField(field, value);
-        return this;
+        return putField(field, value);
     }
 
     public AbstractPoint addFields(Map<String, Object> fields) {
-        this.v1v2Point.addFields(fields);
-        this.v3Point.setFields(fields);
+        fields.forEach(this::putField);
         return this;
     }
 
     public AbstractPoint addTag(String name, String value) {
-        this.v1v2Point.addTag(name, value);
-        this.v3Point.setTag(name, value);
+        Objects.requireNonNull(name, "tag name");
+        int index = Arrays.binarySearch(tagKeys, 0, tagCount, name);
+        if (index >= 0) {
+            tagValues[index] = value;
+            return this;
+        }
+        int insertAt = -index - 1;
+        if (tagCount == tagKeys.length) {
+            tagKeys = Arrays.copyOf(tagKeys, tagCount * 2);
+            tagValues = Arrays.copyOf(tagValues, tagCount * 2);
+        }
+        System.arraycopy(tagKeys, insertAt, tagKeys, insertAt + 1, tagCount - insertAt);
+        System.arraycopy(tagValues, insertAt, tagValues, insertAt + 1, tagCount - insertAt);
+        tagKeys[insertAt] = name;
+        tagValues[insertAt] = value;
+        tagCount++;
         return this;
     }
 
     public AbstractPoint addTags(Map<String, String> tags) {
-        this.v1v2Point.addTags(tags);
-        this.v3Point.setTags(tags);
+        tags.forEach(this::addTag);
         return this;
     }
 
     public AbstractPoint time(long time, com.influxdb.v3.client.write.WritePrecision precision) {
-        com.influxdb.client.domain.WritePrecision v1v2WritePrecision =
-                com.influxdb.client.domain.WritePrecision.valueOf(precision.name());
-        this.v1v2Point.time(time, v1v2WritePrecision);
-        this.v3Point.setTimestamp(time, precision);
-        return this;
+        return time(time, toTimeUnit(precision.name()));
     }
 
     public AbstractPoint time(long time, com.influxdb.client.domain.WritePrecision precision) {
-        com.influxdb.v3.client.write.WritePrecision v3WritePrecision =
-                com.influxdb.v3.client.write.WritePrecision.valueOf(precision.name());
-        this.v1v2Point.time(time, precision);
-        this.v3Point.setTimestamp(time, v3WritePrecision);
+        return time(time, toTimeUnit(precision.name()));
+    }
+
+    private AbstractPoint time(long time, TimeUnit precision) {
+        this.time = time;
+        this.precision = precision;
+        return this;
+    }
+
+    private AbstractPoint putField(String field, Object value) {
+        if (field == null || field.isEmpty()) {
+            throw new IllegalArgumentException("Expecting a non-empty string for field name");
+        }
+        int index = Arrays.binarySearch(fieldKeys, 0, fieldCount, field);
+        if (index >= 0) {
+            fieldValues[index] = value;
+            return this;
+        }
+        int insertAt = -index - 1;
+        if (fieldCount == fieldKeys.length) {
+            fieldKeys = Arrays.copyOf(fieldKeys, fieldCount * 2);
+            fieldValues = Arrays.copyOf(fieldValues, fieldCount * 2);
+        }
+        System.arraycopy(fieldKeys, insertAt, fieldKeys, insertAt + 1, fieldCount - insertAt);
+        System.arraycopy(fieldValues, insertAt, fieldValues, insertAt + 1, fieldCount - insertAt);
+        fieldKeys[insertAt] = field;
+        fieldValues[insertAt] = value;
+        fieldCount++;
         return this;
     }
+
+    private static TimeUnit toTimeUnit(String writePrecision) {
+        return switch (writePrecision) {
+            case "S" -> TimeUnit.SECONDS;
+            case "MS" -> TimeUnit.MILLISECONDS;
+            case "US" -> TimeUnit.MICROSECONDS;
+            case "NS" -> TimeUnit.NANOSECONDS;
+            default -> throw new IllegalArgumentException("Unsupported write precision: " + writePrecision);
+        };
+    }
+
+    private static com.influxdb.client.domain.WritePrecision toV1v2Precision(TimeUnit precision) {
+        return switch (precision) {
+            case SECONDS -> com.influxdb.client.domain.WritePrecision.S;
+            case MILLISECONDS -> com.influxdb.client.domain.WritePrecision.MS;
+            case MICROSECONDS -> com.influxdb.client.domain.WritePrecision.US;
+            default -> com.influxdb.client.domain.WritePrecision.NS;
+        };
+    }
+
+    private static com.influxdb.v3.client.write.WritePrecision toV3Precision(TimeUnit precision) {
+        return switch (precision) {
+            case SECONDS -> com.influxdb.v3.client.write.WritePrecision.S;
+            case MILLISECONDS -> com.influxdb.v3.client.write.WritePrecision.MS;
+            case MICROSECONDS -> com.influxdb.v3.client.write.WritePrecision.US;
+            default -> com.influxdb.v3.client.write.WritePrecision.NS;
+        };
+    }
 }
@@ -0,0 +1,42 @@
+package jenkinsci.plugins.influxdb.models;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A request body backed by an okio {@link Buffer}. The buffer is left untouched when the body is written, so that the
+ * request can be retried, and its segments are shared with the connection instead of being copied.
+ */
+class BufferRequestBody extends RequestBody {
+
+    private final Buffer body;
+    private final MediaType contentType;
+
+    BufferRequestBody(@Nonnull Buffer body, @Nullable MediaType contentType) {
+        this.body = body;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return body.size();
+    }
+
+    @Override
+    public void writeTo(@Nonnull BufferedSink sink) {
+        // OkHttp writes the body again when it retries a failed connection or follows a redirect, so the buffer
+        // must not be consumed. Copying shares its segments with the sink instead of copying the bytes.
+        body.copyTo(sink.getBuffer(), 0, body.size());
+        sink.emitCompleteSegments();
+    }
+}
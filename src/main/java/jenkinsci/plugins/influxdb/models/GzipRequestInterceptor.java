@@ -0,0 +1,56 @@
+package jenkinsci.plugins.influxdb.models;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * Compresses the body of write requests with gzip once it reaches a minimum size.
+ * <p>
+ * Requests to other endpoints, such as ping or version queries, and bodies which are already encoded are left
+ * untouched. Bodies of unknown size are always compressed.
+ */
+class GzipRequestInterceptor implements Interceptor {
+
+    private final long thresholdBytes;
+
+    GzipRequestInterceptor(long thresholdBytes) {
+        this.thresholdBytes = Math.max(0, thresholdBytes);
+    }
+
+    @Nonnull
+    @Override
+    public Response intercept(@Nonnull Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null || !isWrite(request)) {
+            return chain.proceed(request);
+        }
+        long length = body.contentLength();
+        if (length >= 0 && length < thresholdBytes) {
+            return chain.proceed(request);
+        }
+
+        Buffer compressed = new Buffer();
+        try (BufferedSink gzip = Okio.buffer(new GzipSink(compressed))) {
+            body.writeTo(gzip);
+        }
+        return chain.proceed(request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), new BufferRequestBody(compressed, body.contentType()))
+                .build());
+    }
+
+    private static boolean isWrite(Request request) {
+        String path = request.url().encodedPath();
+        return "POST".equals(request.method()) && (path.endsWith("/write") || path.endsWith("/write_lp"));
+    }
+}
@@ -0,0 +1,354 @@
+package jenkinsci.plugins.influxdb.models;
+
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import hudson.Extension;
+import hudson.Util;
+import hudson.init.Terminator;
+import hudson.model.PeriodicWork;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Keeps connected {@link InfluxDBClientWrapper} instances alive between publications, so that the connection
+ * handshake with a target is only done once instead of on every build.
+ * <p>
+ * Clients are keyed by the connection settings of a target and a fingerprint of the secrets they were created with, so
+ * that builds resolving different secrets for the same credentials id, such as from folder-scoped credentials, each
+ * keep their own client. A client is closed when it was not used for {@link #IDLE_TIMEOUT_MILLIS}, which also closes
+ * the client of a rotated secret, and all clients are closed when the targets are reconfigured. A client which is
+ * closed while in use is closed once it is released.
+ * <p>
+ * The API version detected for a server and kind of credentials is remembered for {@link #API_VERSION_TTL_MILLIS}, so
+ * that clients created later skip probing the server. A client which fails to connect with a remembered version probes
+ * the server again. Targets with an explicit {@link Target#getApiVersion() API version} are never probed.
+ */
+public final class InfluxDBClientRegistry {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(InfluxDBClientRegistry.class.getName());
+
+    /**
+     * Time after which an unused client is closed.
+     */
+    static final long IDLE_TIMEOUT_MILLIS = SystemProperties.getLong(
+            InfluxDBClientRegistry.class.getName() + ".idleTimeoutMillis", TimeUnit.MINUTES.toMillis(10));
+
+    /**
+     * Time for which a detected API version is trusted. Within it, new clients for a server are created for that
+     * version directly instead of probing the server again.
+     */
+    static final long API_VERSION_TTL_MILLIS = SystemProperties.getLong(
+            InfluxDBClientRegistry.class.getName() + ".apiVersionTtlMillis", TimeUnit.HOURS.toMillis(1));
+
+    private static final InfluxDBClientRegistry INSTANCE = new InfluxDBClientRegistry();
+
+    private final Map<ClientKey, Entry> entries = new HashMap<>();
+    private final Map<String, DetectedApiVersion> detectedApiVersions = new ConcurrentHashMap<>();
+
+    InfluxDBClientRegistry() {
+    }
+
+    public static InfluxDBClientRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a connected client for the given target, connecting only if no client is cached for it yet.
+     * The returned lease must be closed once the client is no longer used.
+     */
+    public Lease acquire(@Nonnull Target target,
+                         @Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
+                         @Nullable StringCredentials tokenCredentials) {
+        ClientKey key = ClientKey.of(target, fingerprint(basicAuthCredentials, tokenCredentials));
+        List<InfluxDBClientWrapper> toClose = new ArrayList<>();
+        Entry entry;
+        synchronized (this) {
+            evictIdle(System.currentTimeMillis(), toClose);
+            entry = entries.get(key);
+            if (entry == null) {
+                logger.fine("Creating client for target '" + target.getDescription() + "'");
+                entry = new Entry(key);
+                entries.put(key, entry);
+            }
+            entry.leases++;
+        }
+        closeAll(toClose);
+
+        try {
+            return new Lease(entry, connect(entry, target, basicAuthCredentials, tokenCredentials));
+        } catch (RuntimeException e) {
+            release(entry, true);
+            throw e;
+        }
+    }
+
+    private InfluxDBClientWrapper connect(Entry entry, Target target,
+                                          @Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
+                                          @Nullable StringCredentials tokenCredentials) {
+        synchronized (entry) {
+            if (entry.client == null) {
+                String apiVersion = target.getApiVersion();
+                entry.apiVersionKey = apiVersionKey(target, basicAuthCredentials, tokenCredentials);
+                if (apiVersion == null) {
+                    DetectedApiVersion detected = detectedApiVersions.get(entry.apiVersionKey);
+                    if (detected != null && System.currentTimeMillis() - detected.detectedAt() < API_VERSION_TTL_MILLIS) {
+                        try {
+                            entry.client = createClient(target, basicAuthCredentials, tokenCredentials,
+                                    detected.version());
+                            entry.usingDetectedApiVersion = true;
+                            return entry.client;
+                        } catch (RuntimeException e) {
+                            // The server may have changed since its version was detected, probe it again
+                            logger.fine("Connecting to target '" + target.getDescription() + "' as API "
+                                    + detected.version() + " failed, detecting its version again: " + e.getMessage());
+                            detectedApiVersions.remove(entry.apiVersionKey, detected);
+                        }
+                    }
+                }
+                entry.client = createClient(target, basicAuthCredentials, tokenCredentials, apiVersion);
+                if (apiVersion == null) {
+                    detectedApiVersions.put(entry.apiVersionKey,
+                            new DetectedApiVersion(entry.client.getConnectedApiVersion(), System.currentTimeMillis()));
+                    entry.usingDetectedApiVersion = true;
+                }
+            }
+            return entry.client;
+        }
+    }
+
+    private static InfluxDBClientWrapper createClient(Target target,
+                                                      @Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
+                                                      @Nullable StringCredentials tokenCredentials,
+                                                      @Nullable String apiVersion) {
+        return new InfluxDBClientWrapper(
+                target.getUrl(),
+                target.getOrganization(),
+                target.getDatabase(),
+                target.getRetentionPolicy(),
+                basicAuthCredentials,
+                tokenCredentials,
+                target.isUsingJenkinsProxy(),
+                apiVersion,
+                target.getEffectiveCompressionThreshold()
+        );
+    }
+
+    /**
+     * @return the API version detected for the given target and credentials, or null if it is not known or expired
+     */
+    @Nullable
+    public String getDetectedApiVersion(@Nonnull Target target,
+                                        @Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
+                                        @Nullable StringCredentials tokenCredentials) {
+        DetectedApiVersion detected = detectedApiVersions.get(
+                apiVersionKey(target, basicAuthCredentials, tokenCredentials));
+        if (detected == null || System.currentTimeMillis() - detected.detectedAt() >= API_VERSION_TTL_MILLIS) {
+            return null;
+        }
+        return detected.version();
+    }
+
+    /**
+     * Servers are told apart by their URL and organization. The kind of credentials is part of the key too, as a
+     * server may accept only some of them for an API version, such as a token for v3 but basic auth only for v1.
+     */
+    private static String apiVersionKey(Target target,
+                                        @Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
+                                        @Nullable StringCredentials tokenCredentials) {
+        String credentialsKind = tokenCredentials != null ? "token" : basicAuthCredentials != null ? "basic" : "none";
+        return target.getUrl() + "\n" + Util.fixNull(target.getOrganization()).trim() + "\n" + credentialsKind;
+    }
+
+    /**
+     * Closes all cached clients and forgets all detected API versions.
+     * Clients which are in use are closed once they are released.
+     */
+    public void invalidateAll() {
+        List<InfluxDBClientWrapper> toClose = new ArrayList<>();
+        synchronized (this) {
+            detectedApiVersions.clear();
+            for (Entry entry : new ArrayList<>(entries.values())) {
+                retire(entry.key, entry, toClose);
+            }
+        }
+        closeAll(toClose);
+    }
+
+    /**
+     * Closes all clients which were not used for {@link #IDLE_TIMEOUT_MILLIS}.
+     */
+    public void evictIdle() {
+        List<InfluxDBClientWrapper> toClose = new ArrayList<>();
+        synchronized (this) {
+            evictIdle(System.currentTimeMillis(), toClose);
+        }
+        closeAll(toClose);
+    }
+
+    /**
+     * @return the number of cached clients
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evictIdle(long now, List<InfluxDBClientWrapper> toClose) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.leases == 0 && now - entry.lastUsed > IDLE_TIMEOUT_MILLIS) {
+                iterator.remove();
+                entry.retired = true;
+                if (entry.client != null) {
+                    toClose.add(entry.client);
+                }
+            }
+        }
+    }
+
+    private void retire(ClientKey key, Entry entry, List<InfluxDBClientWrapper> toClose) {
+        entries.remove(key, entry);
+        entry.retired = true;
+        if (entry.leases == 0 && entry.client != null) {
+            toClose.add(entry.client);
+        }
+    }
+
+    private void release(Entry entry, boolean invalidate) {
+        List<InfluxDBClientWrapper> toClose = new ArrayList<>();
+        synchronized (this) {
+            entry.leases--;
+            entry.lastUsed = System.currentTimeMillis();
+            if (invalidate && entry.usingDetectedApiVersion) {
+                // The server may have changed, detect its version again
+                detectedApiVersions.remove(entry.apiVersionKey);
+            }
+            if (invalidate || entry.retired) {
+                retire(entry.key, entry, toClose);
+            }
+        }
+        closeAll(toClose);
+    }
+
+    private static void closeAll(List<InfluxDBClientWrapper> clients) {
+        for (InfluxDBClientWrapper client : clients) {
+            client.close();
+        }
+    }
+
+    /**
+     * Digest of the secrets a client was created with, so that a rotated secret can be detected without keeping it.
+     */
+    public static String fingerprint(@Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
+                                      @Nullable StringCredentials tokenCredentials) {
+        StringBuilder secrets = new StringBuilder();
+        if (basicAuthCredentials != null) {
+            secrets.append(basicAuthCredentials.getUsername()).append('\0')
+                    .append(basicAuthCredentials.getPassword().getPlainText());
+        }
+        secrets.append('\0');
+        if (tokenCredentials != null) {
+            secrets.append(tokenCredentials.getSecret().getPlainText());
+        }
+        return Util.getDigestOf(secrets.toString());
+    }
+
+    @Terminator
+    public static void shutdown() {
+        INSTANCE.invalidateAll();
+    }
+
+    /**
+     * Use of a cached client until {@link #close()} is called.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final Entry entry;
+        private final InfluxDBClientWrapper client;
+        private boolean invalidated;
+        private boolean closed;
+
+        private Lease(Entry entry, InfluxDBClientWrapper client) {
+            this.entry = entry;
+            this.client = client;
+        }
+
+        public InfluxDBClientWrapper getClient() {
+            return client;
+        }
+
+        /**
+         * Marks the client as broken, so that it is closed on release and the next publication reconnects.
+         */
+        public void invalidate() {
+            invalidated = true;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(entry, invalidated);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final ClientKey key;
+        private volatile InfluxDBClientWrapper client;
+        private int leases;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean retired;
+        private String apiVersionKey;
+        private boolean usingDetectedApiVersion;
+
+        private Entry(ClientKey key) {
+            this.key = key;
+        }
+    }
+
+    private record ClientKey(String url, String organization, String database, String retentionPolicy,
+                             String credentialsId, boolean usingJenkinsProxy, String apiVersion,
+                             Integer compressionThreshold, String fingerprint) {
+
+        private static ClientKey of(Target target, String fingerprint) {
+            return new ClientKey(target.getUrl(), target.getOrganization(), target.getDatabase(),
+                    target.getRetentionPolicy(), target.getCredentialsId(), target.isUsingJenkinsProxy(),
+                    target.getApiVersion(), target.getEffectiveCompressionThreshold(), fingerprint);
+        }
+    }
+
+    private record DetectedApiVersion(String version, long detectedAt) {
+    }
+
+    /**
+     * Closes idle clients even when no builds are publishing.
+     */
+    @Extension
+    public static class IdleClientEviction extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        @Override
+        protected void doRun() {
+            INSTANCE.evictIdle();
+        }
+    }
+}
@@ -3,12 +3,16 @@ package jenkinsci.plugins.influxdb.models;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.influxdb.client.InfluxDBClientFactory;
 import com.influxdb.client.InfluxDBClientOptions;
+import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.exceptions.InfluxException;
 import com.influxdb.v3.client.config.ClientConfig;
 import hudson.ProxyConfiguration;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import okhttp3.Credentials;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
+import okio.Buffer;
 import org.jenkinsci.plugins.plaincredentials.StringCredentials;
 import org.springframework.security.access.AccessDeniedException;
 
@@ -31,6 +35,13 @@ public class InfluxDBClientWrapper {
      */
     private static final OkHttpClient httpClient = new OkHttpClient();
 
+    /**
+     * Whether points are encoded to line protocol by the {@link LineProtocolEncoder} and posted to the server
+     * directly, instead of being converted to points of the InfluxDB clients. On by default; the property is only
+     * meant as an escape hatch for servers which do not accept the direct writes.
+     */
+    static final boolean DIRECT_WRITE = SystemProperties.getBoolean(InfluxDBClientWrapper.class.getName() + ".directWrite", true);
+
     /**
      * InfluxDB v1.X/v2.X client
      */
@@ -46,6 +57,20 @@ public class InfluxDBClientWrapper {
      */
     private String connectedApiVersion;
 
+    /**
+     * Minimum size in bytes of write requests which are compressed with gzip, or null if they are not compressed
+     */
+    private final Integer gzipThreshold;
+
+    /**
+     * Posts encoded line protocol to the server directly, if enabled and supported for the connected API version
+     */
+    private LineProtocolWriter directWriter;
+
+    public static final String API_V1 = "v1";
+    public static final String API_V2 = "v2";
+    public static final String API_V3 = "v3";
+
     public InfluxDBClientWrapper(
             @Nonnull String url,
             @Nullable String organization,
@@ -55,17 +80,82 @@ public class InfluxDBClientWrapper {
             @Nullable StringCredentials tokenCredentials,
             boolean usingJenkinsProxy
     ) {
+        this(url, organization, database, retentionPolicy, basicAuthCredentials, tokenCredentials, usingJenkinsProxy, null);
+    }
+
+    /**
+     * @param apiVersion API version ("v1", "v2" or "v3") of the server if it is already known. The client is then
+     *                   created for this version directly, without probing the server. If null or blank, the
+     *                   version is detected.
+     */
+    public InfluxDBClientWrapper(
+            @Nonnull String url,
+            @Nullable String organization,
+            @Nonnull String database,
+            @Nullable String retentionPolicy,
+            @Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
+            @Nullable StringCredentials tokenCredentials,
+            boolean usingJenkinsProxy,
+            @Nullable String apiVersion
+    ) {
+        this(url, organization, database, retentionPolicy, basicAuthCredentials, tokenCredentials, usingJenkinsProxy, apiVersion, null);
+    }
+
+    /**
+     * @param gzipThreshold minimum size in bytes of write requests which are compressed with gzip, or null if write
+     *                      requests are not compressed. For InfluxDB v3.X, null keeps the default of the client.
+     */
+    public InfluxDBClientWrapper(
+            @Nonnull String url,
+            @Nullable String organization,
+            @Nonnull String database,
+            @Nullable String retentionPolicy,
+            @Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
+            @Nullable StringCredentials tokenCredentials,
+            boolean usingJenkinsProxy,
+            @Nullable String apiVersion,
+            @Nullable Integer gzipThreshold
+    ) {
+        this.gzipThreshold = gzipThreshold;
+        connect(url, organization, database, retentionPolicy, basicAuthCredentials, tokenCredentials, usingJenkinsProxy, apiVersion);
+        if (DIRECT_WRITE) {
+            this.directWriter = createDirectWriter(url, organization, database, retentionPolicy, basicAuthCredentials, tokenCredentials, usingJenkinsProxy);
+        }
+    }
+
+    private void connect(
+            String url,
+            String organization,
+            String database,
+            String retentionPolicy,
+            @Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
+            @Nullable StringCredentials tokenCredentials,
+            boolean usingJenkinsProxy,
+            @Nullable String apiVersion
+    ) {
+        if (apiVersion != null && !apiVersion.trim().isEmpty()) {
+            boolean connected = switch (apiVersion.trim()) {
+                case API_V1 -> tryConnectV1(url, database, retentionPolicy, basicAuthCredentials, false);
+                case API_V2 -> tryConnectV2(url, organization, database, basicAuthCredentials, tokenCredentials, usingJenkinsProxy, false);
+                case API_V3 -> tryConnectV3(url, database, tokenCredentials, false);
+                default -> throw new IllegalArgumentException("Unknown InfluxDB API version '" + apiVersion + "'");
+            };
+            if (connected) {
+                return;
+            }
+            throw new RuntimeException("InfluxDB connection using API " + apiVersion + " failed. Please check your connection parameters.");
+        }
         // InfluxDB v2.X
         if (organization != null && !organization.trim().isEmpty()) {
-            if (tryConnectV2(url, organization, database, basicAuthCredentials, tokenCredentials, usingJenkinsProxy)) {
+            if (tryConnectV2(url, organization, database, basicAuthCredentials, tokenCredentials, usingJenkinsProxy, true)) {
                 return;
             }
         }
         // InfluxDB v3.X/v1.X
         else {
-            if (tryConnectV3(url, database, tokenCredentials)) {
+            if (tryConnectV3(url, database, tokenCredentials, true)) {
                 return;
-            } else if (tryConnectV1(url, database, retentionPolicy, basicAuthCredentials)) {
+            } else if (tryConnectV1(url, database, retentionPolicy, basicAuthCredentials, true)) {
                 return;
             }
         }
@@ -78,7 +168,8 @@ public class InfluxDBClientWrapper {
             String bucket,
             @Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
             @Nullable StringCredentials tokenCredentials,
-            boolean usingJenkinsProxy
+            boolean usingJenkinsProxy,
+            boolean probe
     ) {
         logger.fine("Attempting connection to InfluxDB v2.X API at " + url);
         boolean success = false;
@@ -96,9 +187,9 @@ public class InfluxDBClientWrapper {
                 options.authenticateToken(tokenCredentials.getSecret().getPlainText().toCharArray());
             }
             this.v1v2client = InfluxDBClientFactory.create(options.build());
-            if (this.v1v2client.ping() && (this.getAPIVersion().startsWith("v2") || isMaybeValidVersion(this.getAPIVersion()))) {
+            if (!probe || this.v1v2client.ping() && (this.getAPIVersion().startsWith("v2") || isMaybeValidVersion(this.getAPIVersion()))) {
                 logger.fine("Connection success");
-                this.connectedApiVersion = "v2";
+                this.connectedApiVersion = API_V2;
                 success = true;
             } else {
                 this.v1v2client.close();
@@ -117,22 +208,25 @@ public class InfluxDBClientWrapper {
     private boolean tryConnectV3(
             String url,
             String database,
-            @Nullable StringCredentials tokenCredentials
+            @Nullable StringCredentials tokenCredentials,
+            boolean probe
     ) {
         logger.fine("Attempting connection to InfluxDB v3.X API at " + url);
         boolean success = false;
         try {
             if (tokenCredentials != null) {
                 logger.fine("Attempting token authentication");
-                com.influxdb.v3.client.config.ClientConfig config = new ClientConfig.Builder()
+                ClientConfig.Builder config = new ClientConfig.Builder()
                         .host(url)
                         .token(tokenCredentials.getSecret().getPlainText().toCharArray())
-                        .database(database)
-                        .build();
-                this.v3client = com.influxdb.v3.client.InfluxDBClient.getInstance(config);
-                if (this.getAPIVersion().startsWith("3") || isMaybeValidVersion(this.getAPIVersion())) {
+                        .database(database);
+                if (gzipThreshold != null) {
+                    config.gzipThreshold(gzipThreshold);
+                }
+                this.v3client = com.influxdb.v3.client.InfluxDBClient.getInstance(config.build());
+                if (!probe || this.getAPIVersion().startsWith("3") || isMaybeValidVersion(this.getAPIVersion())) {
                     logger.fine("Connection success");
-                    this.connectedApiVersion = "v3";
+                    this.connectedApiVersion = API_V3;
                     success = true;
                 } else {
                     logger.fine("Connection failed");
@@ -152,27 +246,25 @@ public class InfluxDBClientWrapper {
         return success;
     }
 
-    private boolean tryConnectV1(String url, String database, String retentionPolicy, @Nullable StandardUsernamePasswordCredentials credentials) {
+    private boolean tryConnectV1(String url, String database, String retentionPolicy, @Nullable StandardUsernamePasswordCredentials credentials, boolean probe) {
         logger.fine("Attempting connection to InfluxDB v1.X API at " + url);
         boolean success = false;
         try {
             if (credentials != null) {
                 logger.fine("Attempting username/password authentication");
-                this.v1v2client = InfluxDBClientFactory.createV1(url, credentials.getUsername(), credentials.getPassword().getPlainText().toCharArray(), database, retentionPolicy);
+                this.v1v2client = createV1Client(url, credentials.getUsername(), credentials.getPassword().getPlainText(), database, retentionPolicy);
             } else {
                 logger.fine("Attempting connection without credentials");
-                this.v1v2client = InfluxDBClientFactory.createV1(url, "", "".toCharArray(), database, retentionPolicy);
+                this.v1v2client = createV1Client(url, "", "", database, retentionPolicy);
             }
-            String apiVersion = this.getAPIVersion();
-            // InfluxDB v1.11 returns v1.X instead of 1.X
-            if (this.v1v2client.ping() && (apiVersion.startsWith("1") || apiVersion.startsWith("v1") || isMaybeValidVersion(apiVersion))) {
+            if (!probe || isV1Server()) {
                 logger.fine("Connection success");
-                this.connectedApiVersion = "v1";
+                this.connectedApiVersion = API_V1;
                 success = true;
             } else {
                 logger.fine("Connection failed");
             }
-        } catch (InfluxException | AccessDeniedException e) {
+        } catch (InfluxException | AccessDeniedException | MalformedURLException e) {
             logConnectionFailure(e, "v1");
         } finally {
             if (!success) {
@@ -182,8 +274,84 @@ public class InfluxDBClientWrapper {
         return success;
     }
 
+    /**
+     * Creates a writer for the write endpoint of the connected API version, or returns null if the connection
+     * needs authentication only the InfluxDB clients support, i.e. username and password on InfluxDB v2.X.
+     */
+    @Nullable
+    private LineProtocolWriter createDirectWriter(
+            String url,
+            String organization,
+            String database,
+            String retentionPolicy,
+            @Nullable StandardUsernamePasswordCredentials basicAuthCredentials,
+            @Nullable StringCredentials tokenCredentials,
+            boolean usingJenkinsProxy
+    ) {
+        HttpUrl baseUrl = HttpUrl.parse(url);
+        if (baseUrl == null) {
+            return null;
+        }
+        HttpUrl.Builder writeUrl = baseUrl.newBuilder();
+        String authorization;
+        switch (connectedApiVersion) {
+            case API_V1 -> {
+                writeUrl.addPathSegment("write").addQueryParameter("db", database);
+                if (retentionPolicy != null && !retentionPolicy.trim().isEmpty()) {
+                    writeUrl.addQueryParameter("rp", retentionPolicy);
+                }
+                authorization = basicAuthCredentials == null ? null
+                        : Credentials.basic(basicAuthCredentials.getUsername(), basicAuthCredentials.getPassword().getPlainText());
+            }
+            case API_V2 -> {
+                if (basicAuthCredentials != null || tokenCredentials == null) {
+                    return null;
+                }
+                writeUrl.addPathSegments("api/v2/write").addQueryParameter("org", organization).addQueryParameter("bucket", database);
+                authorization = "Token " + tokenCredentials.getSecret().getPlainText();
+            }
+            case API_V3 -> {
+                writeUrl.addPathSegments("api/v2/write").addQueryParameter("bucket", database);
+                authorization = tokenCredentials == null ? null : "Token " + tokenCredentials.getSecret().getPlainText();
+            }
+            default -> {
+                return null;
+            }
+        }
+        writeUrl.addQueryParameter("precision", "ns");
+        // Only the v2.X client is created with the Jenkins proxy
+        OkHttpClient client = createHttpClient(baseUrl.url(), usingJenkinsProxy && API_V2.equals(connectedApiVersion)).build();
+        logger.fine("Writing line protocol directly to " + writeUrl.build().redact());
+        return new LineProtocolWriter(client, writeUrl.build(), authorization);
+    }
+
+    private com.influxdb.client.InfluxDBClient createV1Client(String url, String username, String password, String database, String retentionPolicy)
+            throws MalformedURLException {
+        if (gzipThreshold == null) {
+            return InfluxDBClientFactory.createV1(url, username, password.toCharArray(), database, retentionPolicy);
+        }
+        // Same options as InfluxDBClientFactory.createV1, but with an HTTP client which compresses write requests
+        InfluxDBClientOptions options = InfluxDBClientOptions.builder()
+                .url(url)
+                .org("-")
+                .authenticateToken((username + ":" + password).toCharArray())
+                .bucket(database + "/" + (retentionPolicy == null ? "" : retentionPolicy))
+                .okHttpClient(createHttpClient(new URL(url), false))
+                .build();
+        return InfluxDBClientFactory.create(options);
+    }
+
+    private boolean isV1Server() {
+        String apiVersion = this.getAPIVersion();
+        // InfluxDB v1.11 returns v1.X instead of 1.X
+        return this.v1v2client.ping() && (apiVersion.startsWith("1") || apiVersion.startsWith("v1") || isMaybeValidVersion(apiVersion));
+    }
+
     private OkHttpClient.Builder createHttpClient(URL url, boolean useProxy) {
         OkHttpClient.Builder builder = httpClient.newBuilder();
+        if (gzipThreshold != null) {
+            builder.addInterceptor(new GzipRequestInterceptor(gzipThreshold));
+        }
         Jenkins jenkins = Jenkins.getInstanceOrNull();
         ProxyConfiguration proxyConfig = jenkins == null ? null : jenkins.proxy;
         if (useProxy && proxyConfig != null) {
@@ -272,7 +440,17 @@ public class InfluxDBClientWrapper {
     }
 
     public void writePoints(List<AbstractPoint> pointsToWrite) {
-        if (this.v3client != null) {
+        if (this.directWriter != null) {
+            Buffer body = new Buffer();
+            try {
+                if (LineProtocolEncoder.encode(pointsToWrite, body) > 0) {
+                    this.directWriter.write(body);
+                }
+            } finally {
+                // Returns the segments to the pool
+                body.clear();
+            }
+        } else if (this.v3client != null) {
             List<com.influxdb.v3.client.Point> v3Points = pointsToWrite.stream()
                     .map(AbstractPoint::getV3Point)
                     .collect(Collectors.toList());
@@ -288,6 +466,30 @@ public class InfluxDBClientWrapper {
         }
     }
 
+    /**
+     * Writes records which are already serialized to line protocol with nanosecond precision.
+     *
+     * @param records The line protocol records to write
+     */
+    public void writeRecords(List<String> records) {
+        if (this.directWriter != null) {
+            Buffer body = new Buffer();
+            try {
+                if (LineProtocolEncoder.encodeRecords(records, body) > 0) {
+                    this.directWriter.write(body);
+                }
+            } finally {
+                body.clear();
+            }
+        } else if (this.v3client != null) {
+            this.v3client.writeRecords(records);
+        } else if (this.v1v2client != null) {
+            this.v1v2client.getWriteApiBlocking().writeRecords(WritePrecision.NS, records);
+        } else {
+            throw new RuntimeException("InfluxDB client is not initialized.");
+        }
+    }
+
     public void close() {
         this.closeAndResetAllClients();
     }
@@ -0,0 +1,200 @@
+package jenkinsci.plugins.influxdb.models;
+
+import okio.Buffer;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Encodes points to InfluxDB line protocol with nanosecond timestamps.
+ * <p>
+ * Points are written straight into an okio {@link Buffer}, whose segments are pooled and can be handed to an HTTP
+ * request body without copying. The output matches {@code toLineProtocol()} of the points of the InfluxDB clients:
+ * tags with empty values and fields with null, NaN or infinite values are left out, and a point without any field is
+ * not written at all.
+ */
+public final class LineProtocolEncoder {
+
+    /**
+     * Formats floating point values the same way as the InfluxDB clients, i.e. without exponent or grouping.
+     */
+    private static final ThreadLocal<NumberFormat> NUMBER_FORMAT = ThreadLocal.withInitial(() -> {
+        NumberFormat format = NumberFormat.getInstance(Locale.ENGLISH);
+        format.setMaximumFractionDigits(340);
+        format.setMinimumFractionDigits(1);
+        format.setGroupingUsed(false);
+        return format;
+    });
+
+    /**
+     * Whole numbers below this magnitude are formatted without {@link NumberFormat}.
+     */
+    private static final double MAX_EXACT_WHOLE_NUMBER = 1e15;
+
+    private LineProtocolEncoder() {
+    }
+
+    /**
+     * Encodes the given points, one line each.
+     *
+     * @return the number of lines written
+     */
+    public static int encode(List<AbstractPoint> points, Buffer sink) {
+        int lines = 0;
+        for (AbstractPoint point : points) {
+            if (encode(point, sink)) {
+                sink.writeByte('\n');
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Encodes the given records which are already serialized to line protocol, one line each.
+     *
+     * @return the number of lines written
+     */
+    public static int encodeRecords(List<String> records, Buffer sink) {
+        int lines = 0;
+        for (String record : records) {
+            if (record != null && !record.isEmpty()) {
+                sink.writeUtf8(record).writeByte('\n');
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Encodes a single point without a trailing newline.
+     *
+     * @return false if the point has no field with a value and nothing was written
+     */
+    public static boolean encode(AbstractPoint point, Buffer sink) {
+        if (!hasDefinedField(point)) {
+            return false;
+        }
+        writeEscaped(sink, point.getName(), false);
+
+        for (int i = 0; i < point.getTagCount(); i++) {
+            String key = point.getTagKey(i);
+            String value = point.getTagValue(i);
+            if (key.isEmpty() || value == null || value.isEmpty()) {
+                continue;
+            }
+            sink.writeByte(',');
+            writeEscaped(sink, key, true);
+            sink.writeByte('=');
+            writeEscaped(sink, value, true);
+        }
+
+        boolean first = true;
+        for (int i = 0; i < point.getFieldCount(); i++) {
+            Object value = point.getFieldValue(i);
+            if (isNotDefined(value)) {
+                continue;
+            }
+            sink.writeByte(first ? ' ' : ',');
+            first = false;
+            writeEscaped(sink, point.getFieldKey(i), true);
+            sink.writeByte('=');
+            writeFieldValue(sink, value);
+        }
+
+        if (point.hasTime()) {
+            sink.writeByte(' ');
+            sink.writeDecimalLong(point.getTimeNanos());
+        }
+        return true;
+    }
+
+    /**
+     * @return the point as line protocol, or an empty string if it has no field with a value
+     */
+    public static String toLineProtocol(AbstractPoint point) {
+        Buffer buffer = new Buffer();
+        encode(point, buffer);
+        return buffer.readUtf8();
+    }
+
+    private static boolean hasDefinedField(AbstractPoint point) {
+        for (int i = 0; i < point.getFieldCount(); i++) {
+            if (!isNotDefined(point.getFieldValue(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNotDefined(Object value) {
+        return value == null
+                || value instanceof Double d && (d.isNaN() || d.isInfinite())
+                || value instanceof Float f && (f.isNaN() || f.isInfinite());
+    }
+
+    private static void writeFieldValue(Buffer sink, Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (number != 0 && number == Math.rint(number) && Math.abs(number) < MAX_EXACT_WHOLE_NUMBER) {
+                sink.writeDecimalLong((long) number).writeUtf8(".0");
+            } else {
+                sink.writeUtf8(NUMBER_FORMAT.get().format(value));
+            }
+        } else if (value instanceof BigDecimal) {
+            sink.writeUtf8(NUMBER_FORMAT.get().format(value));
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            sink.writeDecimalLong(((Number) value).longValue()).writeByte('i');
+        } else if (value instanceof Number) {
+            sink.writeUtf8(value.toString()).writeByte('i');
+        } else if (value instanceof String string) {
+            sink.writeByte('"');
+            writeQuoted(sink, string);
+            sink.writeByte('"');
+        } else {
+            sink.writeUtf8(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Writes a measurement, tag key, tag value or field key, escaping line breaks, tabs, spaces, commas and
+     * optionally equal signs.
+     */
+    private static void writeEscaped(Buffer sink, String text, boolean escapeEqual) {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String escaped = switch (c) {
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                case ' ' -> "\\ ";
+                case ',' -> "\\,";
+                case '=' -> escapeEqual ? "\\=" : null;
+                default -> null;
+            };
+            if (escaped != null) {
+                sink.writeUtf8(text, start, i).writeUtf8(escaped);
+                start = i + 1;
+            }
+        }
+        sink.writeUtf8(text, start, text.length());
+    }
+
+    /**
+     * Writes a string field value, escaping backslashes and double quotes.
+     */
+    private static void writeQuoted(Buffer sink, String text) {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' || c == '"') {
+                sink.writeUtf8(text, start, i).writeByte('\\');
+                start = i;
+            }
+        }
+        sink.writeUtf8(text, start, text.length());
+    }
+}
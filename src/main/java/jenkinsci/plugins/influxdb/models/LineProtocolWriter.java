@@ -0,0 +1,77 @@
+package jenkinsci.plugins.influxdb.models;
+
+import com.influxdb.exceptions.InfluxException;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Posts line protocol encoded by the {@link LineProtocolEncoder} to the write endpoint of a server, without going
+ * through the point and string representations of the InfluxDB clients.
+ */
+class LineProtocolWriter {
+
+    private static final MediaType LINE_PROTOCOL = MediaType.get("text/plain; charset=utf-8");
+
+    private final OkHttpClient httpClient;
+    private final HttpUrl writeUrl;
+    private final String authorization;
+
+    LineProtocolWriter(@Nonnull OkHttpClient httpClient, @Nonnull HttpUrl writeUrl, @Nullable String authorization) {
+        this.httpClient = httpClient;
+        this.writeUrl = writeUrl;
+        this.authorization = authorization;
+    }
+
+    HttpUrl getWriteUrl() {
+        return writeUrl;
+    }
+
+    /**
+     * Posts the given buffer as request body. The buffer is left untouched, so that the request can be retried.
+     */
+    void write(Buffer body) {
+        Request.Builder request = new Request.Builder()
+                .url(writeUrl)
+                .post(new BufferRequestBody(body, LINE_PROTOCOL));
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        try (Response response = httpClient.newCall(request.build()).execute()) {
+            if (!response.isSuccessful()) {
+                ResponseBody responseBody = response.body();
+                String message = responseBody != null ? responseBody.string() : "";
+                throw new WriteFailedException("Write to " + writeUrl.redact() + " failed with HTTP " + response.code() + ": " + message,
+                        response.code());
+            }
+        } catch (IOException e) {
+            throw new InfluxException(e);
+        }
+    }
+
+    /**
+     * A write which was answered with an HTTP error status.
+     */
+    static class WriteFailedException extends InfluxException {
+
+        private final int status;
+
+        WriteFailedException(String message, int status) {
+            super(message);
+            this.status = status;
+        }
+
+        @Override
+        public int status() {
+            return status;
+        }
+    }
+}
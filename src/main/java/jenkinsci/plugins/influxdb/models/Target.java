@@ -7,6 +7,7 @@ import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
 import hudson.Extension;
+import hudson.Util;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
 import hudson.model.Item;
@@ -18,13 +19,18 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.jenkinsci.plugins.plaincredentials.StringCredentials;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.verb.POST;
 
+import javax.annotation.CheckForNull;
 import java.util.List;
 
 public class Target extends AbstractDescribableImpl<Target> implements java.io.Serializable {
 
+    public static final String COMPRESSION_GZIP = "gzip";
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
     private String description;
     private String url;
     private String credentialsId;
@@ -36,6 +42,9 @@ public class Target extends AbstractDescribableImpl<Target> implements java.io.S
     private boolean usingJenkinsProxy;
     private boolean globalListener;
     private String globalListenerFilter;
+    private String apiVersion;
+    private String compression;
+    private Integer compressionThreshold;
 
     public Target() {
         //nop
@@ -146,6 +155,54 @@ public class Target extends AbstractDescribableImpl<Target> implements java.io.S
         this.globalListenerFilter = globalListenerFilter;
     }
 
+    /**
+     * @return the configured API version ("v1", "v2" or "v3"), or null if it is detected automatically
+     */
+    public String getApiVersion() {
+        return apiVersion;
+    }
+
+    @DataBoundSetter
+    public void setApiVersion(String apiVersion) {
+        this.apiVersion = Util.fixEmptyAndTrim(apiVersion);
+    }
+
+    /**
+     * @return the compression of write requests ("gzip"), or null if they are not compressed
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    @DataBoundSetter
+    public void setCompression(String compression) {
+        this.compression = Util.fixEmptyAndTrim(compression);
+    }
+
+    /**
+     * @return the minimum size in bytes of compressed write requests, or null for the default
+     */
+    public Integer getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    @DataBoundSetter
+    public void setCompressionThreshold(Integer compressionThreshold) {
+        this.compressionThreshold = compressionThreshold == null || compressionThreshold < 0 ? null : compressionThreshold;
+    }
+
+    /**
+     * @return the minimum size in bytes of write requests which are compressed with gzip, or null if write requests
+     * are not compressed
+     */
+    @CheckForNull
+    public Integer getEffectiveCompressionThreshold() {
+        if (!COMPRESSION_GZIP.equals(compression)) {
+            return null;
+        }
+        return compressionThreshold != null ? compressionThreshold : DEFAULT_COMPRESSION_THRESHOLD;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
@@ -207,6 +264,29 @@ public class Target extends AbstractDescribableImpl<Target> implements java.io.S
                     .includeCurrentValue(credentialsId);
         }
 
+        public ListBoxModel doFillApiVersionItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("Detect automatically", "");
+            items.add("InfluxDB 1.x", InfluxDBClientWrapper.API_V1);
+            items.add("InfluxDB 2.x", InfluxDBClientWrapper.API_V2);
+            items.add("InfluxDB 3.x", InfluxDBClientWrapper.API_V3);
+            return items;
+        }
+
+        public ListBoxModel doFillCompressionItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("None", "");
+            items.add("gzip", COMPRESSION_GZIP);
+            return items;
+        }
+
+        public FormValidation doCheckCompressionThreshold(@QueryParameter String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
         public FormValidation doCheckDescription(@QueryParameter String value) {
             return FormValidation.validateRequired(value);
         }
@@ -224,6 +304,7 @@ public class Target extends AbstractDescribableImpl<Target> implements java.io.S
                                                  @QueryParameter String organization, @QueryParameter String database,
                                                  @QueryParameter String retentionPolicy,
                                                  @QueryParameter boolean usingJenkinsProxy,
+                                                 @QueryParameter String apiVersion,
                                                  @AncestorInPath Item context) {
 
             InfluxDBClientWrapper client = null;
@@ -240,7 +321,8 @@ public class Target extends AbstractDescribableImpl<Target> implements java.io.S
                         retentionPolicy,
                         basicAuthCredentials,
                         tokenCredentials,
-                        usingJenkinsProxy
+                        usingJenkinsProxy,
+                        apiVersion
                 );
                 String connectedApi = client.getConnectedApiVersion();
                 String serverVersion = client.getAPIVersion();
@@ -0,0 +1,219 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import hudson.init.Terminator;
+import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.SystemProperties;
+import jenkinsci.plugins.influxdb.InfluxDbPublicationConfig;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import jenkinsci.plugins.influxdb.models.Target;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streams points of running builds to their targets in the background, without ever blocking the build.
+ * <p>
+ * Offered points are buffered and written once per {@value #FLUSH_INTERVAL_MILLIS} ms, at most {@code
+ * maxPointsPerSecond} points at a time, merged into one write per build and target. The buffer holds up to
+ * {@value #BUFFERED_SECONDS} seconds worth of points; points offered while it is full are dropped.
+ * <p>
+ * Writes never run on the flushing thread, so that a slow target does not hold up the others. Points for a target
+ * which already has {@link #MAX_IN_FLIGHT_PER_TARGET} writes in flight are dropped as well.
+ */
+public class LivePointStreamer {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(LivePointStreamer.class.getName());
+
+    static final long FLUSH_INTERVAL_MILLIS = 1000;
+    static final int BUFFERED_SECONDS = 60;
+
+    /**
+     * Number of writes per target which may be in flight at the same time.
+     */
+    static final int MAX_IN_FLIGHT_PER_TARGET = Math.max(1, SystemProperties.getInteger(
+            LivePointStreamer.class.getName() + ".maxInFlightPerTarget", 2));
+
+    private static LivePointStreamer instance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<LivePoint> buffer = new ArrayDeque<>();
+    private final AtomicLong droppedCount = new AtomicLong();
+    // by target description
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService writers = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDbLivePointStreamer.writer"));
+    private long reportedDroppedCount;
+    private ScheduledExecutorService flusher;
+
+    private volatile int maxPointsPerSecond;
+
+    public LivePointStreamer(int maxPointsPerSecond) {
+        reconfigure(maxPointsPerSecond);
+    }
+
+    /**
+     * Returns the controller-wide streamer, starting it with the current {@link InfluxDbPublicationConfig} if needed.
+     */
+    public static synchronized LivePointStreamer get() {
+        if (instance == null) {
+            instance = new LivePointStreamer(InfluxDbPublicationConfig.getInstance().getLiveMaxPointsPerSecond());
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * @return the controller-wide streamer, or null if it was not started yet
+     */
+    @CheckForNull
+    public static synchronized LivePointStreamer getIfStarted() {
+        return instance;
+    }
+
+    @Terminator
+    public static void shutdown() {
+        LivePointStreamer streamer = getIfStarted();
+        if (streamer != null) {
+            streamer.flusher.shutdownNow();
+            streamer.flush();
+            streamer.writers.shutdown();
+        }
+    }
+
+    private void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(
+                new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDbLivePointStreamer"));
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void reconfigure(int maxPointsPerSecond) {
+        this.maxPointsPerSecond = Math.max(1, maxPointsPerSecond);
+    }
+
+    /**
+     * Buffers a point of a running build to be written to the given targets.
+     *
+     * @return false if the point was dropped, because the buffer is full
+     */
+    public boolean offer(Run<?, ?> build, List<Target> targets, AbstractPoint point) {
+        lock.lock();
+        try {
+            if (buffer.size() >= (long) maxPointsPerSecond * BUFFERED_SECONDS) {
+                droppedCount.incrementAndGet();
+                return false;
+            }
+            buffer.add(new LivePoint(build, targets, point));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of points dropped because the buffer was full or their target had too many writes in flight
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Starts the writes of up to {@code maxPointsPerSecond} buffered points.
+     */
+    void flush() {
+        Map<Run<?, ?>, List<LivePoint>> byBuild = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            for (int i = 0; i < maxPointsPerSecond && !buffer.isEmpty(); i++) {
+                LivePoint livePoint = buffer.poll();
+                byBuild.computeIfAbsent(livePoint.build, b -> new ArrayList<>()).add(livePoint);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (Map.Entry<Run<?, ?>, List<LivePoint>> entry : byBuild.entrySet()) {
+            Map<Target, List<AbstractPoint>> byTarget = new LinkedHashMap<>();
+            for (LivePoint livePoint : entry.getValue()) {
+                for (Target target : livePoint.targets) {
+                    byTarget.computeIfAbsent(target, t -> new ArrayList<>()).add(livePoint.point);
+                }
+            }
+            for (Map.Entry<Target, List<AbstractPoint>> points : byTarget.entrySet()) {
+                Target target = points.getKey();
+                AtomicInteger targetInFlight = inFlight.computeIfAbsent(target.getDescription(), d -> new AtomicInteger());
+                if (targetInFlight.incrementAndGet() > MAX_IN_FLIGHT_PER_TARGET) {
+                    targetInFlight.decrementAndGet();
+                    droppedCount.addAndGet(points.getValue().size());
+                    continue;
+                }
+                write(createTask(target, entry.getKey(), points.getValue())).whenComplete((ignored, e) -> {
+                    targetInFlight.decrementAndGet();
+                    if (e != null) {
+                        logger.log(Level.WARNING, "Could not stream points of " + entry.getKey() + " to target '"
+                                + target.getDescription() + "'", e);
+                    }
+                });
+            }
+        }
+
+        long dropped = droppedCount.get();
+        if (dropped > reportedDroppedCount) {
+            logger.warning("Dropped " + (dropped - reportedDroppedCount) + " live point(s), more points were streamed than "
+                    + maxPointsPerSecond + " per second or could be written to their targets");
+            reportedDroppedCount = dropped;
+        }
+    }
+
+    protected PublicationTask createTask(Target target, Run<?, ?> build, List<AbstractPoint> points) {
+        return PublicationTask.forBuild(target, build, points);
+    }
+
+    /**
+     * Writes a task the way publications at the end of a build are written, but never on the calling thread.
+     *
+     * @return a future which completes once the task was written, or handed over to the publication queue
+     */
+    protected CompletableFuture<?> write(PublicationTask task) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (InfluxDbPublicationConfig.getInstance().isAsyncPublication()) {
+                    PublicationQueue.get().submit(task);
+                } else if (WriteBatcher.isEnabled()) {
+                    WriteBatcher.await(WriteBatcher.get().submit(task));
+                } else {
+                    task.write();
+                }
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new CompletionException(e);
+            }
+        }, writers);
+    }
+
+    private record LivePoint(Run<?, ?> build, List<Target> targets, AbstractPoint point) {
+    }
+}
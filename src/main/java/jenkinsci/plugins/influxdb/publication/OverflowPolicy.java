@@ -0,0 +1,21 @@
+package jenkinsci.plugins.influxdb.publication;
+
+/**
+ * What the {@link PublicationQueue} does with a new batch when it is already full.
+ */
+public enum OverflowPolicy {
+
+    BLOCK("Block the publishing build until there is room in the queue"),
+    DROP_OLDEST("Drop the oldest queued batch"),
+    SPILL_TO_DISK("Spill the batch to disk and publish it once the queue has drained");
+
+    private final String displayName;
+
+    OverflowPolicy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
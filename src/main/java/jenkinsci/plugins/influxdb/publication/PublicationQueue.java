@@ -0,0 +1,429 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkinsci.plugins.influxdb.InfluxDbPublicationConfig;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller-wide bounded queue which writes point batches to their targets in the background,
+ * so that a slow or unreachable InfluxDB does not hold up the builds publishing to it.
+ * <p>
+ * Batches which are spilled to disk are appended to the {@link WriteAheadSpool}, whose {@link WriteAheadSpool.Replayer}
+ * writes them to their targets.
+ * <p>
+ * If writes are coalesced, workers hand batches over to the {@link WriteBatcher} without waiting for them to be written.
+ * Such batches still count against the capacity, the depth and the lag of the queue until they were written.
+ */
+public class PublicationQueue {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(PublicationQueue.class.getName());
+
+    /**
+     * How long to wait for queued batches to be written when Jenkins shuts down, before spilling them to disk.
+     */
+    private static final long SHUTDOWN_DRAIN_TIMEOUT_MILLIS = 10_000;
+
+    private static PublicationQueue instance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Deque<PublicationTask> tasks = new ArrayDeque<>();
+    // handed over to the WriteBatcher, but not written yet
+    private final Set<PublicationTask> inBatcher = Collections.newSetFromMap(new IdentityHashMap<>());
+    // of all tasks which were accepted, until they were written or failed
+    private final Map<PublicationTask, CompletableFuture<Void>> completions = new IdentityHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDbPublicationQueue"));
+    private final WriteAheadSpool spool;
+
+    private volatile int capacity;
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile long spillMaxSizeBytes;
+    private int desiredWorkers;
+    private int activeWorkers;
+    private int busyWorkers;
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private volatile long lastWriteLagMillis;
+
+    /**
+     * @param spillMaxSizeBytes size cap of the spool when spilling batches to it
+     */
+    public PublicationQueue(WriteAheadSpool spool, int capacity, int workers, OverflowPolicy overflowPolicy,
+                            long spillMaxSizeBytes) {
+        this.spool = spool;
+        reconfigure(capacity, workers, overflowPolicy, spillMaxSizeBytes);
+    }
+
+    /**
+     * Returns the controller-wide queue, starting it with the current {@link InfluxDbPublicationConfig} if needed.
+     */
+    public static synchronized PublicationQueue get() {
+        if (instance == null) {
+            InfluxDbPublicationConfig config = InfluxDbPublicationConfig.getInstance();
+            instance = new PublicationQueue(
+                    WriteAheadSpool.get(),
+                    config.getQueueCapacity(),
+                    config.getQueueWorkers(),
+                    config.getOverflowPolicy(),
+                    config.getSpoolMaxSizeBytes());
+        }
+        return instance;
+    }
+
+    /**
+     * @return the controller-wide queue, or null if it was not started yet
+     */
+    @CheckForNull
+    public static synchronized PublicationQueue getIfStarted() {
+        return instance;
+    }
+
+    @Terminator
+    public static void shutdown() {
+        PublicationQueue queue = getIfStarted();
+        if (queue != null) {
+            queue.stop(SHUTDOWN_DRAIN_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * Applies new settings. Additional workers are started right away, surplus workers stop once they are idle.
+     */
+    public void reconfigure(int capacity, int workers, OverflowPolicy overflowPolicy, long spillMaxSizeBytes) {
+        lock.lock();
+        try {
+            this.capacity = Math.max(1, capacity);
+            this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.BLOCK;
+            this.spillMaxSizeBytes = spillMaxSizeBytes;
+            this.desiredWorkers = Math.max(1, workers);
+            while (activeWorkers < desiredWorkers) {
+                activeWorkers++;
+                executor.execute(this::runWorker);
+            }
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a task to the queue. If the queue is full, the configured {@link OverflowPolicy} applies.
+     *
+     * @return a future which completes once the task was written, and fails if it could not be written, was dropped
+     * or was spilled to disk
+     * @throws InterruptedException if the policy is {@link OverflowPolicy#BLOCK} and the caller was interrupted while waiting
+     * @throws IOException          if the policy is {@link OverflowPolicy#SPILL_TO_DISK} and the task could not be spilled
+     */
+    public CompletableFuture<Void> submit(PublicationTask task) throws InterruptedException, IOException {
+        lock.lock();
+        try {
+            while (tasks.size() + inBatcher.size() >= capacity) {
+                OverflowPolicy policy = overflowPolicy;
+                if (policy == OverflowPolicy.DROP_OLDEST && !tasks.isEmpty()) {
+                    PublicationTask dropped = tasks.pollFirst();
+                    droppedCount.incrementAndGet();
+                    String message = String.format("Publication queue is full, dropping %d point(s) for target '%s'",
+                            dropped.size(), dropped.getTarget().getDescription());
+                    logger.warning(message);
+                    completions.remove(dropped).completeExceptionally(new IllegalStateException(message));
+                } else if (policy == OverflowPolicy.SPILL_TO_DISK) {
+                    break;
+                } else {
+                    notFull.await();
+                }
+            }
+            if (tasks.size() + inBatcher.size() < capacity) {
+                CompletableFuture<Void> completion = new CompletableFuture<>();
+                completions.put(task, completion);
+                tasks.addLast(task);
+                notEmpty.signal();
+                return completion;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        spill(task);
+        spilledCount.incrementAndGet();
+        String message = String.format("Publication queue is full, spilled %d point(s) for target '%s' to disk",
+                task.size(), task.getTarget().getDescription());
+        logger.fine(message);
+        return CompletableFuture.failedFuture(new IllegalStateException(message));
+    }
+
+    /**
+     * @return the number of batches waiting in memory, including those waiting to be written together
+     */
+    public int getDepth() {
+        lock.lock();
+        try {
+            return tasks.size() + inBatcher.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of spool segments waiting on disk, including segments of failed writes if spooling is enabled
+     */
+    public int getSpilledDepth() {
+        return spool.getSegmentCount();
+    }
+
+    /**
+     * @return how long the oldest batch in memory has been waiting, in milliseconds
+     */
+    public long getLagMillis() {
+        lock.lock();
+        try {
+            long oldest = Long.MAX_VALUE;
+            PublicationTask first = tasks.peekFirst();
+            if (first != null) {
+                oldest = first.getCreatedAt();
+            }
+            for (PublicationTask task : inBatcher) {
+                oldest = Math.min(oldest, task.getCreatedAt());
+            }
+            return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the time between submission and completion of the most recently written batch, in milliseconds
+     */
+    public long getLastWriteLagMillis() {
+        return lastWriteLagMillis;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    /**
+     * Stops accepting work once the queue is drained or the timeout expired, spilling what is left to disk. Batches
+     * which are still waiting in the {@link WriteBatcher} are spilled as well; should they be written after all, the
+     * replayed points overwrite themselves.
+     */
+    void stop(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        List<PublicationTask> remaining;
+        lock.lock();
+        try {
+            while ((!tasks.isEmpty() || busyWorkers > 0 || !inBatcher.isEmpty()) && System.currentTimeMillis() < deadline) {
+                notFull.await(100, TimeUnit.MILLISECONDS);
+            }
+            desiredWorkers = 0;
+            notEmpty.signalAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            remaining = new ArrayList<>(inBatcher);
+            inBatcher.clear();
+            lock.unlock();
+        }
+        executor.shutdown();
+
+        PublicationTask queued;
+        while ((queued = pollRemaining()) != null) {
+            remaining.add(queued);
+        }
+        for (PublicationTask task : remaining) {
+            try {
+                spill(task);
+                resolve(task, new IllegalStateException("Spilled " + task.size() + " point(s) for target '"
+                        + task.getTarget().getDescription() + "' to disk on shutdown"));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not spill " + task.size() + " point(s) for target '"
+                        + task.getTarget().getDescription() + "', they are lost", e);
+                resolve(task, e);
+            }
+        }
+    }
+
+    private void spill(PublicationTask task) throws IOException {
+        spool.append(task.getTarget(), task.getJobFullName(), task.toLineProtocol(), spillMaxSizeBytes);
+    }
+
+    private PublicationTask pollRemaining() {
+        lock.lock();
+        try {
+            return tasks.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWorker() {
+        try {
+            PublicationTask task;
+            while ((task = take()) != null) {
+                process(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the next task, or null once this worker is no longer needed
+     */
+    private PublicationTask take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (tasks.isEmpty()) {
+                if (retireIfSurplus()) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            if (retireIfSurplus()) {
+                return null;
+            }
+            busyWorkers++;
+            notFull.signal();
+            return tasks.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean retireIfSurplus() {
+        if (activeWorkers > desiredWorkers) {
+            activeWorkers--;
+            return true;
+        }
+        return false;
+    }
+
+    private void process(PublicationTask task) {
+        try {
+            if (WriteBatcher.isEnabled()) {
+                // Hand over without waiting, so that tasks taken by this worker can be merged with each other
+                handOver(task);
+                WriteBatcher.get().submit(task).whenComplete((result, e) -> {
+                    release(task);
+                    completed(task, e);
+                });
+            } else {
+                task.write();
+                completed(task, null);
+            }
+        } catch (Exception e) {
+            release(task);
+            completed(task, e);
+        } finally {
+            finishTask();
+        }
+    }
+
+    private void handOver(PublicationTask task) {
+        lock.lock();
+        try {
+            inBatcher.add(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(PublicationTask task) {
+        lock.lock();
+        try {
+            if (inBatcher.remove(task)) {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void completed(PublicationTask task, Throwable failure) {
+        if (failure == null) {
+            writtenCount.incrementAndGet();
+            lastWriteLagMillis = System.currentTimeMillis() - task.getCreatedAt();
+        } else {
+            failedCount.incrementAndGet();
+            logger.log(Level.WARNING, "Could not report to InfluxDB target '" + task.getTarget().getDescription()
+                    + "'. Ignoring Exception.", failure);
+        }
+        resolve(task, failure);
+    }
+
+    /**
+     * Completes the future returned when the task was submitted.
+     */
+    private void resolve(PublicationTask task, @CheckForNull Throwable failure) {
+        CompletableFuture<Void> completion;
+        lock.lock();
+        try {
+            completion = completions.remove(task);
+        } finally {
+            lock.unlock();
+        }
+        if (completion == null) {
+            return;
+        }
+        if (failure == null) {
+            completion.complete(null);
+        } else {
+            completion.completeExceptionally(failure);
+        }
+    }
+
+    private void finishTask() {
+        lock.lock();
+        try {
+            busyWorkers--;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import hudson.Extension;
+import jenkins.metrics.api.MetricProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Exposes the state of the {@link PublicationQueue} through the Metrics plugin.
+ */
+@Extension
+public class PublicationQueueMetrics extends MetricProvider {
+
+    private static final String PREFIX = "influxdb.publication.queue.";
+
+    private final MetricSet metricSet = () -> {
+        Map<String, Metric> metrics = new HashMap<>();
+        metrics.put(PREFIX + "depth", gauge(PublicationQueue::getDepth));
+        metrics.put(PREFIX + "capacity", gauge(PublicationQueue::getCapacity));
+        metrics.put(PREFIX + "spilled.depth", gauge(PublicationQueue::getSpilledDepth));
+        metrics.put(PREFIX + "lag", gauge(PublicationQueue::getLagMillis));
+        metrics.put(PREFIX + "write.lag", gauge(PublicationQueue::getLastWriteLagMillis));
+        metrics.put(PREFIX + "written", gauge(PublicationQueue::getWrittenCount));
+        metrics.put(PREFIX + "failed", gauge(PublicationQueue::getFailedCount));
+        metrics.put(PREFIX + "dropped", gauge(PublicationQueue::getDroppedCount));
+        metrics.put(PREFIX + "spilled", gauge(PublicationQueue::getSpilledCount));
+        return metrics;
+    };
+
+    private static Gauge<Long> gauge(ToLongFunction<PublicationQueue> value) {
+        return () -> {
+            PublicationQueue queue = PublicationQueue.getIfStarted();
+            return queue != null ? value.applyAsLong(queue) : 0L;
+        };
+    }
+
+    @Override
+    public MetricSet getMetricSet() {
+        return metricSet;
+    }
+}
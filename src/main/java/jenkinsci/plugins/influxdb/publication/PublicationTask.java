@@ -0,0 +1,272 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.influxdb.exceptions.InfluxException;
+import com.influxdb.v3.client.InfluxDBApiHttpException;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.InfluxDbGlobalConfig;
+import jenkinsci.plugins.influxdb.InfluxDbPublicationConfig;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import jenkinsci.plugins.influxdb.models.InfluxDBClientRegistry;
+import jenkinsci.plugins.influxdb.models.LineProtocolEncoder;
+import jenkinsci.plugins.influxdb.models.Target;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * A batch of points bound for a single target, together with the credentials needed to write it.
+ * <p>
+ * Credentials are resolved against the build when the task is created, so that the task can be written
+ * later from a thread that has no build context.
+ */
+public class PublicationTask {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(PublicationTask.class.getName());
+
+    private final Target target;
+    private final String runId;
+    private final StandardUsernamePasswordCredentials basicAuthCredentials;
+    private final StringCredentials tokenCredentials;
+    private final List<AbstractPoint> points;
+    private final List<String> records;
+    private final long createdAt;
+
+    protected PublicationTask(@Nonnull Target target,
+                              @CheckForNull String runId,
+                              @CheckForNull StandardUsernamePasswordCredentials basicAuthCredentials,
+                              @CheckForNull StringCredentials tokenCredentials,
+                              @CheckForNull List<AbstractPoint> points,
+                              @CheckForNull List<String> records) {
+        this.target = target;
+        this.runId = runId;
+        this.basicAuthCredentials = basicAuthCredentials;
+        this.tokenCredentials = tokenCredentials;
+        this.points = points;
+        this.records = records;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Creates a task for points collected from a build, resolving the target's credentials in the context of that build.
+     */
+    public static PublicationTask forBuild(@Nonnull Target target, @Nonnull Run<?, ?> build, @Nonnull List<AbstractPoint> points) {
+        StandardUsernamePasswordCredentials basicAuthCredentials = CredentialsProvider.findCredentialById(
+                target.getCredentialsId(),
+                StandardUsernamePasswordCredentials.class,
+                build
+        );
+        StringCredentials tokenCredentials = CredentialsProvider.findCredentialById(
+                target.getCredentialsId(),
+                StringCredentials.class,
+                build
+        );
+        return new PublicationTask(target, build.getExternalizableId(), basicAuthCredentials, tokenCredentials, points, null);
+    }
+
+    /**
+     * Recreates a task from line protocol records which were spooled to disk, resolving the target's credentials in
+     * the context of the job whose build spooled them.
+     *
+     * @param jobFullName full name of the job, or null to resolve the credentials globally
+     * @return the task, or null if the target it was bound for no longer exists
+     */
+    @CheckForNull
+    static PublicationTask restoreForJob(@Nonnull String targetDescription, @CheckForNull String jobFullName, @Nonnull List<String> records) {
+        Target target = findTarget(targetDescription, records);
+        if (target == null) {
+            return null;
+        }
+        Item job = findJob(jobFullName);
+        StandardUsernamePasswordCredentials basicAuthCredentials = Target.DescriptorImpl.getUsernamePasswordCredentials(
+                target.getCredentialsId(), target.getUrl(), job);
+        StringCredentials tokenCredentials = Target.DescriptorImpl.getTokenCredentials(
+                target.getUrl(), target.getCredentialsId(), job);
+        return new PublicationTask(target, null, basicAuthCredentials, tokenCredentials, null, records);
+    }
+
+    @CheckForNull
+    private static Target findTarget(String targetDescription, List<String> records) {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return null;
+        }
+        Target target = InfluxDbGlobalConfig.getInstance().getTargets().stream()
+                .filter(t -> targetDescription.equals(t.getDescription()))
+                .findFirst()
+                .orElse(null);
+        if (target == null) {
+            logger.warning("Discarding " + records.size() + " spilled record(s), target '" + targetDescription + "' no longer exists");
+        }
+        return target;
+    }
+
+    @CheckForNull
+    private static Item findJob(@CheckForNull String jobFullName) {
+        if (jobFullName == null) {
+            return null;
+        }
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            return Jenkins.get().getItemByFullName(jobFullName, Item.class);
+        }
+    }
+
+    @CheckForNull
+    private static String jobFullNameOf(@CheckForNull String runId) {
+        int separator = runId == null ? -1 : runId.lastIndexOf('#');
+        return separator < 0 ? null : runId.substring(0, separator);
+    }
+
+    public Target getTarget() {
+        return target;
+    }
+
+    @CheckForNull
+    public String getRunId() {
+        return runId;
+    }
+
+    /**
+     * @return the full name of the job whose build created this task, or null if it is not known
+     */
+    @CheckForNull
+    public String getJobFullName() {
+        return jobFullNameOf(runId);
+    }
+
+    /**
+     * @return true if the target uses credentials, but none of them could be resolved for this task
+     */
+    boolean isMissingCredentials() {
+        return StringUtils.isNotBlank(target.getCredentialsId()) && basicAuthCredentials == null && tokenCredentials == null;
+    }
+
+    /**
+     * @return the time in milliseconds at which this task was created
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * @return a key which is equal for tasks that can be written together, because they are bound for the same
+     * target with the same credentials
+     */
+    String getBatchKey() {
+        return target.getDescription() + "\n" + InfluxDBClientRegistry.fingerprint(basicAuthCredentials, tokenCredentials);
+    }
+
+    /**
+     * @return a task for the given records, bound for the same target with the same credentials as this task. It keeps
+     * the build of this task, so that its credentials can be resolved again if the records are spooled.
+     */
+    PublicationTask withRecords(List<String> records) {
+        return new PublicationTask(target, runId, basicAuthCredentials, tokenCredentials, null, records);
+    }
+
+    /**
+     * @return the number of points or records in this task
+     */
+    public int size() {
+        return points != null ? points.size() : records.size();
+    }
+
+    /**
+     * @return the contents of this task as line protocol records
+     */
+    public List<String> toLineProtocol() {
+        if (records != null) {
+            return records;
+        }
+        return points.stream()
+                .map(LineProtocolEncoder::toLineProtocol)
+                .filter(line -> !line.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Writes this task to its target. If that fails, the failure is {@link #isRetryable retryable} and spooling is
+     * enabled, the points are spooled to disk to be written later by the {@link WriteAheadSpool.Replayer} before the
+     * exception is rethrown.
+     */
+    public void write() {
+        try {
+            send();
+        } catch (RuntimeException e) {
+            if (isRetryable(e)) {
+                spool();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return false if the target rejected the write with a client error, such as malformed line protocol, a field
+     * type conflict or an unknown database, which would be rejected again when retried. Timeouts and rate limiting
+     * (HTTP 408 and 429), server errors and connection failures are retryable.
+     */
+    static boolean isRetryable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            int status = 0;
+            if (cause instanceof InfluxException influxException) {
+                status = influxException.status();
+            } else if (cause instanceof InfluxDBApiHttpException httpException) {
+                status = httpException.statusCode();
+            }
+            if (status != 0) {
+                return status < 400 || status >= 500 || status == 408 || status == 429;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes this task to its target without spooling it on failure.
+     */
+    void send() {
+        try (InfluxDBClientRegistry.Lease lease = InfluxDBClientRegistry.getInstance().acquire(target, basicAuthCredentials, tokenCredentials)) {
+            try {
+                if (points != null) {
+                    lease.getClient().writePoints(points);
+                } else {
+                    lease.getClient().writeRecords(records);
+                }
+            } catch (RuntimeException e) {
+                // The connection may be broken, reconnect on the next publication
+                lease.invalidate();
+                throw e;
+            }
+        }
+    }
+
+    private void spool() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return;
+        }
+        InfluxDbPublicationConfig config = InfluxDbPublicationConfig.getInstance();
+        if (!config.isSpoolEnabled()) {
+            return;
+        }
+        try {
+            WriteAheadSpool.get().append(target, getJobFullName(), toLineProtocol(), config.getSpoolMaxSizeBytes());
+            logger.warning(String.format("Could not write %d point(s) to target '%s', spooled them for a later retry",
+                    size(), target.getDescription()));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not spool " + size() + " point(s) for target '" + target.getDescription() + "'", e);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkinsci.plugins.influxdb.InfluxDbPublicationConfig;
+import jenkinsci.plugins.influxdb.models.Target;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Durable store for batches which could not be written to their target, or were spilled by the
+ * {@link PublicationQueue} because it was full.
+ * <p>
+ * Every target has its own directory of append-only line protocol segments per job, so that the credentials of the
+ * target can be resolved in the context of that job when the segments are replayed. New records are appended to the newest
+ * segment until it reaches {@link #SEGMENT_SIZE_BYTES}, then a new segment is started. The {@link Replayer} writes
+ * segments back to their target oldest first and deletes them once they were written. A target which is still
+ * unavailable is retried with exponential backoff, a segment which the target rejects is discarded.
+ */
+public class WriteAheadSpool {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(WriteAheadSpool.class.getName());
+
+    /**
+     * Size after which a new segment is started.
+     */
+    static final long SEGMENT_SIZE_BYTES = SystemProperties.getLong(
+            WriteAheadSpool.class.getName() + ".segmentSizeBytes", 4L * 1024 * 1024);
+
+    static final long INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static final String SEGMENT_SUFFIX = ".lp";
+    private static final String TARGET_FILE = "target";
+    private static final String JOB_FILE = "job";
+
+    private static WriteAheadSpool instance;
+
+    private final File directory;
+    private final long segmentSizeBytes;
+    private final Map<String, TargetSpool> spools = new ConcurrentHashMap<>();
+
+    public WriteAheadSpool(File directory, long segmentSizeBytes) {
+        this.directory = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+    }
+
+    public static synchronized WriteAheadSpool get() {
+        if (instance == null) {
+            instance = new WriteAheadSpool(getSpoolDirectory(), SEGMENT_SIZE_BYTES);
+        }
+        return instance;
+    }
+
+    static File getSpoolDirectory() {
+        return new File(Jenkins.get().getRootDir(), "influxdb-plugin/spool");
+    }
+
+    /**
+     * Appends records which could not be written to the given target, and drops the oldest segments
+     * if the spool grew beyond its size cap.
+     *
+     * @param jobFullName full name of the job whose build wrote the records, or null if it is not known
+     */
+    public void append(Target target, @CheckForNull String jobFullName, List<String> records, long maxSizeBytes) throws IOException {
+        spoolFor(target.getDescription(), jobFullName).append(records);
+        enforceSizeCap(maxSizeBytes);
+    }
+
+    /**
+     * Writes spooled records back to every target which is due for a retry.
+     *
+     * @param maxAgeMillis segments older than this are discarded instead of written
+     */
+    public void replay(long maxAgeMillis) {
+        for (TargetSpool spool : listSpools()) {
+            spool.replay(maxAgeMillis);
+        }
+    }
+
+    /**
+     * @return the total size of all spooled segments in bytes
+     */
+    public long getSizeBytes() {
+        long size = 0;
+        for (TargetSpool spool : listSpools()) {
+            for (File segment : spool.listSegments()) {
+                size += segment.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of spooled segments of all targets
+     */
+    public int getSegmentCount() {
+        int count = 0;
+        for (TargetSpool spool : listSpools()) {
+            count += spool.listSegments().length;
+        }
+        return count;
+    }
+
+    /**
+     * Deletes the oldest segments of all targets until the spool is no larger than the given size.
+     */
+    void enforceSizeCap(long maxSizeBytes) {
+        List<File> segments = new ArrayList<>();
+        long size = 0;
+        for (TargetSpool spool : listSpools()) {
+            for (File segment : spool.listSegments()) {
+                segments.add(segment);
+                size += segment.length();
+            }
+        }
+        if (size <= maxSizeBytes) {
+            return;
+        }
+        segments.sort(Comparator.comparingLong(File::lastModified));
+        for (File segment : segments) {
+            if (size <= maxSizeBytes) {
+                break;
+            }
+            long length = segment.length();
+            logger.warning("InfluxDB spool exceeds " + maxSizeBytes + " bytes, discarding " + segment);
+            if (segment.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    TargetSpool spoolFor(String targetDescription, @CheckForNull String jobFullName) throws IOException {
+        String name = Util.getDigestOf(targetDescription + "\n" + Util.fixNull(jobFullName));
+        TargetSpool spool = spools.get(name);
+        if (spool == null) {
+            File targetDirectory = new File(directory, name);
+            Files.createDirectories(targetDirectory.toPath());
+            Files.writeString(new File(targetDirectory, TARGET_FILE).toPath(), targetDescription, StandardCharsets.UTF_8);
+            if (jobFullName != null) {
+                Files.writeString(new File(targetDirectory, JOB_FILE).toPath(), jobFullName, StandardCharsets.UTF_8);
+            }
+            spool = spools.computeIfAbsent(name, n -> new TargetSpool(targetDirectory, targetDescription, jobFullName));
+        }
+        return spool;
+    }
+
+    private List<TargetSpool> listSpools() {
+        File[] directories = directory.listFiles(File::isDirectory);
+        if (directories == null) {
+            return List.of();
+        }
+        List<TargetSpool> result = new ArrayList<>();
+        for (File targetDirectory : directories) {
+            TargetSpool spool = spools.get(targetDirectory.getName());
+            if (spool == null) {
+                try {
+                    String description = Files.readString(new File(targetDirectory, TARGET_FILE).toPath(), StandardCharsets.UTF_8);
+                    File jobFile = new File(targetDirectory, JOB_FILE);
+                    String jobFullName = jobFile.isFile() ? Files.readString(jobFile.toPath(), StandardCharsets.UTF_8) : null;
+                    spool = spools.computeIfAbsent(targetDirectory.getName(), n -> new TargetSpool(targetDirectory, description, jobFullName));
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Ignoring InfluxDB spool directory " + targetDirectory + " without target", e);
+                    continue;
+                }
+            }
+            result.add(spool);
+        }
+        return result;
+    }
+
+    /**
+     * Segments of a single target and job.
+     */
+    class TargetSpool {
+
+        private final File directory;
+        private final String targetDescription;
+        private final String jobFullName;
+        private long activeSegment;
+        private long backoffMillis;
+        private long nextAttempt;
+
+        TargetSpool(File directory, String targetDescription, @CheckForNull String jobFullName) {
+            this.directory = directory;
+            this.targetDescription = targetDescription;
+            this.jobFullName = jobFullName;
+            // never append to a segment of an earlier start, its last record may have been cut off by a crash
+            File[] segments = listSegments();
+            this.activeSegment = segments.length == 0 ? 0 : sequenceOf(segments[segments.length - 1]) + 1;
+        }
+
+        synchronized void append(List<String> records) throws IOException {
+            File segment = segmentFile(activeSegment);
+            if (segment.length() >= segmentSizeBytes) {
+                segment = segmentFile(++activeSegment);
+            }
+            StringBuilder content = new StringBuilder();
+            for (String record : records) {
+                content.append(record).append('\n');
+            }
+            try (FileOutputStream out = new FileOutputStream(segment, true)) {
+                out.write(content.toString().getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+        }
+
+        /**
+         * Removes the oldest segment from appends, so that it can be replayed without racing with them.
+         *
+         * @return the oldest segment, or null if there is none
+         */
+        @CheckForNull
+        synchronized File sealOldest(long maxAgeMillis) {
+            long expiredBefore = System.currentTimeMillis() - maxAgeMillis;
+            for (File segment : listSegments()) {
+                if (segment.lastModified() < expiredBefore) {
+                    logger.warning("Discarding InfluxDB spool segment " + segment + " for target '" + targetDescription
+                            + "', it is older than " + maxAgeMillis + " ms");
+                    deleteSegment(segment);
+                    continue;
+                }
+                if (sequenceOf(segment) == activeSegment) {
+                    activeSegment++;
+                }
+                return segment;
+            }
+            return null;
+        }
+
+        void replay(long maxAgeMillis) {
+            long now = System.currentTimeMillis();
+            if (now < nextAttempt) {
+                return;
+            }
+            File segment;
+            while ((segment = sealOldest(maxAgeMillis)) != null) {
+                List<String> records;
+                try {
+                    records = readSegment(segment);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Discarding unreadable InfluxDB spool segment " + segment, e);
+                    deleteSegment(segment);
+                    continue;
+                }
+                if (records.isEmpty()) {
+                    deleteSegment(segment);
+                    continue;
+                }
+                PublicationTask task = PublicationTask.restoreForJob(targetDescription, jobFullName, records);
+                if (task == null) {
+                    deleteSegment(segment);
+                    continue;
+                }
+                if (task.isMissingCredentials()) {
+                    // the credentials may be restored, the segment is discarded once it exceeds the age cap
+                    backOff();
+                    logger.warning("Could not resolve the credentials of InfluxDB target '" + targetDescription
+                            + "' for job '" + jobFullName + "', keeping spooled points for a retry in " + backoffMillis + " ms");
+                    return;
+                }
+                try {
+                    task.send();
+                } catch (RuntimeException e) {
+                    if (!PublicationTask.isRetryable(e)) {
+                        // retrying would fail again and hold back all later segments of the target
+                        logger.log(Level.WARNING, "InfluxDB target '" + targetDescription + "' rejected the "
+                                + records.size() + " record(s) of spool segment " + segment + ", discarding them", e);
+                        deleteSegment(segment);
+                        continue;
+                    }
+                    backOff();
+                    logger.log(Level.INFO, "Could not replay spooled points to InfluxDB target '" + targetDescription
+                            + "', retrying in " + backoffMillis + " ms", e);
+                    return;
+                }
+                logger.fine("Replayed " + records.size() + " spooled record(s) to target '" + targetDescription + "'");
+                deleteSegment(segment);
+                backoffMillis = 0;
+                nextAttempt = 0;
+            }
+        }
+
+        private void backOff() {
+            backoffMillis = backoffMillis == 0 ? INITIAL_BACKOFF_MILLIS : Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            nextAttempt = System.currentTimeMillis() + backoffMillis;
+        }
+
+        File[] listSegments() {
+            File[] segments = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+            if (segments == null) {
+                return new File[0];
+            }
+            Arrays.sort(segments);
+            return segments;
+        }
+
+        private File segmentFile(long sequence) {
+            return new File(directory, String.format("%019d%s", sequence, SEGMENT_SUFFIX));
+        }
+
+        private long sequenceOf(File segment) {
+            String name = segment.getName();
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        }
+
+        private void deleteSegment(File segment) {
+            try {
+                Files.deleteIfExists(segment.toPath());
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not delete InfluxDB spool segment " + segment, e);
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a segment. A last record without line terminator was cut off while it was appended
+     * and is skipped.
+     */
+    static List<String> readSegment(File segment) throws IOException {
+        String content = Files.readString(segment.toPath(), StandardCharsets.UTF_8);
+        int end = content.lastIndexOf('\n');
+        List<String> records = new ArrayList<>();
+        if (end < 0) {
+            return records;
+        }
+        for (String line : content.substring(0, end).split("\n")) {
+            if (!line.isEmpty()) {
+                records.add(line);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Writes spooled records back to their targets.
+     */
+    @Extension
+    public static class Replayer extends AsyncPeriodicWork {
+
+        public Replayer() {
+            super("InfluxDB spool replay");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return INITIAL_BACKOFF_MILLIS;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            if (!getSpoolDirectory().isDirectory()) {
+                return;
+            }
+            WriteAheadSpool.get().replay(InfluxDbPublicationConfig.getInstance().getSpoolMaxAgeMillis());
+        }
+
+        @Override
+        protected Level getNormalLoggingLevel() {
+            return Level.FINEST;
+        }
+    }
+}
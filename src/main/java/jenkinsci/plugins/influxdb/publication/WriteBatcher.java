@@ -0,0 +1,270 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.InfluxDbPublicationConfig;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Merges the points of concurrent publications bound for the same target into a single write request.
+ * <p>
+ * Submitted tasks are buffered per target until the buffer holds {@code maxPoints} points or {@code maxBytes} bytes of
+ * line protocol, or until {@code lingerMillis} passed since the first task was buffered. The buffer is then written in
+ * the background and the futures of all merged tasks complete with its result. Callers are blocked while more than
+ * {@code maxBufferedPoints} points wait to be written.
+ */
+public class WriteBatcher {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(WriteBatcher.class.getName());
+
+    private static WriteBatcher instance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Map<String, Batch> batches = new HashMap<>();
+    private final ScheduledExecutorService lingerTimer = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDbWriteBatcher.linger"));
+    private final ExecutorService writers = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDbWriteBatcher.writer"));
+
+    private volatile int maxPoints;
+    private volatile long maxBytes;
+    private volatile long lingerMillis;
+    private volatile int maxBufferedPoints;
+    private int bufferedPoints;
+
+    public WriteBatcher(int maxPoints, long maxBytes, long lingerMillis, int maxBufferedPoints) {
+        reconfigure(maxPoints, maxBytes, lingerMillis, maxBufferedPoints);
+    }
+
+    /**
+     * Returns the controller-wide batcher, starting it with the current {@link InfluxDbPublicationConfig} if needed.
+     */
+    public static synchronized WriteBatcher get() {
+        if (instance == null) {
+            InfluxDbPublicationConfig config = InfluxDbPublicationConfig.getInstance();
+            instance = new WriteBatcher(
+                    config.getCoalesceMaxPoints(),
+                    config.getCoalesceMaxBytes(),
+                    config.getCoalesceLingerMillis(),
+                    config.getCoalesceMaxBufferedPoints());
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if publications should be written through the controller-wide batcher
+     */
+    public static boolean isEnabled() {
+        return Jenkins.getInstanceOrNull() != null && InfluxDbPublicationConfig.getInstance().isCoalesceWrites();
+    }
+
+    /**
+     * Waits for a submitted task to be written, rethrowing the exception it failed with.
+     */
+    public static void await(CompletableFuture<Void> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * @return the controller-wide batcher, or null if it was not started yet
+     */
+    @CheckForNull
+    public static synchronized WriteBatcher getIfStarted() {
+        return instance;
+    }
+
+    @Terminator
+    public static void shutdown() {
+        WriteBatcher batcher = getIfStarted();
+        if (batcher != null) {
+            batcher.flushAll();
+            batcher.lingerTimer.shutdownNow();
+            batcher.writers.shutdown();
+        }
+    }
+
+    public void reconfigure(int maxPoints, long maxBytes, long lingerMillis, int maxBufferedPoints) {
+        lock.lock();
+        try {
+            this.maxPoints = Math.max(1, maxPoints);
+            this.maxBytes = Math.max(1, maxBytes);
+            this.lingerMillis = Math.max(0, lingerMillis);
+            this.maxBufferedPoints = Math.max(1, maxBufferedPoints);
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Buffers the given task to be written together with other tasks bound for the same target.
+     *
+     * @return a future which completes once the points of the task were written, or failed to be written
+     * @throws InterruptedException if the caller was interrupted while waiting for room in the buffer
+     */
+    public CompletableFuture<Void> submit(PublicationTask task) throws InterruptedException {
+        List<String> records = task.toLineProtocol();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (records.isEmpty()) {
+            future.complete(null);
+            return future;
+        }
+        long bytes = 0;
+        for (String record : records) {
+            bytes += record.length() + 1;
+        }
+
+        Batch full = null;
+        lock.lock();
+        try {
+            // A task larger than the whole buffer is let through once the buffer is empty
+            while (bufferedPoints > 0 && bufferedPoints + records.size() > maxBufferedPoints) {
+                notFull.await();
+            }
+            bufferedPoints += records.size();
+
+            String key = task.getBatchKey();
+            Batch batch = batches.get(key);
+            if (batch == null) {
+                batch = new Batch(key, task);
+                batches.put(key, batch);
+                Batch lingering = batch;
+                lingerTimer.schedule(() -> flush(lingering), lingerMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.add(records, bytes, future);
+            if (batch.records.size() >= maxPoints || batch.bytes >= maxBytes) {
+                batches.remove(key);
+                full = batch;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (full != null) {
+            Batch batch = full;
+            writers.execute(() -> writeBatch(batch));
+        }
+        return future;
+    }
+
+    /**
+     * @return the number of points waiting to be written
+     */
+    public int getBufferedPoints() {
+        lock.lock();
+        try {
+            return bufferedPoints;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes all buffered batches right away, on the calling thread.
+     */
+    void flushAll() {
+        List<Batch> pending;
+        lock.lock();
+        try {
+            pending = new ArrayList<>(batches.values());
+            batches.clear();
+        } finally {
+            lock.unlock();
+        }
+        pending.forEach(this::writeBatch);
+    }
+
+    private void flush(Batch batch) {
+        lock.lock();
+        try {
+            if (!batches.remove(batch.key, batch)) {
+                // Already flushed because it was full
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        writers.execute(() -> writeBatch(batch));
+    }
+
+    private void writeBatch(Batch batch) {
+        RuntimeException failure = null;
+        try {
+            write(batch.template.withRecords(batch.records));
+            logger.fine(String.format("Wrote %d point(s) of %d publication(s) to target '%s'",
+                    batch.records.size(), batch.futures.size(), batch.template.getTarget().getDescription()));
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            lock.lock();
+            try {
+                bufferedPoints -= batch.records.size();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        for (CompletableFuture<Void> future : batch.futures) {
+            if (failure == null) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Writes a merged batch to its target.
+     */
+    protected void write(PublicationTask batch) {
+        batch.write();
+    }
+
+    private static final class Batch {
+
+        private final String key;
+        private final PublicationTask template;
+        private final List<String> records = new ArrayList<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private long bytes;
+
+        private Batch(String key, PublicationTask template) {
+            this.key = key;
+            this.template = template;
+        }
+
+        private void add(List<String> records, long bytes, CompletableFuture<Void> future) {
+            this.records.addAll(records);
+            this.bytes += bytes;
+            this.futures.add(future);
+        }
+    }
+}
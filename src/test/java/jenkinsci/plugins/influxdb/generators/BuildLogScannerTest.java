@@ -0,0 +1,242 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.console.ConsoleNote;
+import hudson.model.Run;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildLogScannerTest {
+
+    @Test
+    void readsLogOnceForAllExtractors() throws IOException {
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Mockito.when(build.getLogReader()).thenReturn(new StringReader(
+                "Started by user admin\nRunning on agent-1 in /tmp\nProject key: my-project\nFinished: SUCCESS\n"));
+
+        RecordingExtractor agent = new RecordingExtractor(List.of("Running on "), false);
+        RecordingExtractor sonar = new RecordingExtractor(List.of("Project key: ", "Finished: "), false);
+        BuildLogScanner scanner = new BuildLogScanner(build);
+        scanner.register(agent);
+        scanner.register(sonar);
+
+        scanner.scan();
+        scanner.scan();
+
+        Mockito.verify(build, Mockito.times(1)).getLogReader();
+        assertEquals(List.of("Running on agent-1 in /tmp"), agent.lines);
+        assertEquals(List.of("Project key: my-project", "Finished: SUCCESS"), sonar.lines);
+    }
+
+    @Test
+    void passesLineWithSeveralMarkersOnce() throws IOException {
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Mockito.when(build.getLogReader()).thenReturn(new StringReader("alpha beta\n"));
+
+        RecordingExtractor extractor = new RecordingExtractor(List.of("alpha", "beta"), false);
+        BuildLogScanner scanner = new BuildLogScanner(build);
+        scanner.register(extractor);
+        scanner.scan();
+
+        assertEquals(List.of("alpha beta"), extractor.lines);
+    }
+
+    @Test
+    void passesLineToAllExtractorsOfSharedOrOverlappingMarkers() throws IOException {
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Mockito.when(build.getLogReader()).thenReturn(new StringReader("ANALYSIS SUCCESSFUL, you can find\n"));
+
+        RecordingExtractor first = new RecordingExtractor(List.of("ANALYSIS"), false);
+        RecordingExtractor shared = new RecordingExtractor(List.of("ANALYSIS"), false);
+        RecordingExtractor longer = new RecordingExtractor(List.of("ANALYSIS SUCCESSFUL"), false);
+        BuildLogScanner scanner = new BuildLogScanner(build);
+        scanner.register(first);
+        scanner.register(shared);
+        scanner.register(longer);
+        scanner.scan();
+
+        assertEquals(List.of("ANALYSIS SUCCESSFUL, you can find"), first.lines);
+        assertEquals(List.of("ANALYSIS SUCCESSFUL, you can find"), shared.lines);
+        assertEquals(List.of("ANALYSIS SUCCESSFUL, you can find"), longer.lines);
+    }
+
+    @Test
+    void stopsOnceAllExtractorsWithMarkersAreDone() throws IOException {
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Mockito.when(build.getLogReader()).thenReturn(new StringReader("marker 1\nmarker 2\n"));
+
+        RecordingExtractor extractor = new RecordingExtractor(List.of("marker"), true);
+        RecordingExtractor withoutMarkers = new RecordingExtractor(List.of(), false);
+        BuildLogScanner scanner = new BuildLogScanner(build);
+        scanner.register(extractor);
+        scanner.register(withoutMarkers);
+        scanner.scan();
+
+        assertEquals(List.of("marker 1"), extractor.lines);
+        assertTrue(withoutMarkers.lines.isEmpty());
+    }
+
+    @Test
+    void stopsOnceAllExtractorsAreDone() throws IOException {
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Mockito.when(build.getLogReader()).thenReturn(new StringReader("marker 1\nmarker 2\nmarker 3\n"));
+
+        RecordingExtractor extractor = new RecordingExtractor(List.of("marker"), true);
+        BuildLogScanner scanner = new BuildLogScanner(build);
+        scanner.register(extractor);
+        scanner.scan();
+
+        assertEquals(List.of("marker 1"), extractor.lines);
+    }
+
+    @Test
+    void doesNotReadLogWithoutExtractors() throws IOException {
+        Run<?, ?> build = Mockito.mock(Run.class);
+
+        new BuildLogScanner(build).scan();
+
+        Mockito.verify(build, Mockito.never()).getLogReader();
+    }
+
+    @Test
+    void readsLogFileBackwardsForReverseExtractors(@TempDir Path directory) throws IOException {
+        // more than one block, with an annotated line and windows line endings
+        StringBuilder log = new StringBuilder("marker first\r\n");
+        while (log.length() < 2 * BuildLogScanner.BLOCK_SIZE) {
+            log.append("filler line\r\n");
+        }
+        log.append("marker ").append(ConsoleNote.PREAMBLE_STR).append("ha:AAAA").append(ConsoleNote.POSTAMBLE_STR)
+                .append("link\r\nmarker last\r\n");
+        Run<?, ?> build = mockLogFile(directory, log.toString());
+
+        RecordingReverseExtractor extractor = new RecordingReverseExtractor(List.of("marker"), -1);
+        BuildLogScanner scanner = new BuildLogScanner(build);
+        scanner.register(extractor);
+        scanner.scan();
+
+        assertEquals(List.of("marker last", "marker link", "marker first"), extractor.lines);
+        assertFalse(extractor.reset);
+        Mockito.verify(build, Mockito.never()).getLogReader();
+    }
+
+    @Test
+    void stopsReadingBackwardsOnceReverseExtractorsAreDone(@TempDir Path directory) throws IOException {
+        Run<?, ?> build = mockLogFile(directory, "marker 1\nmarker 2\nmarker 3\n");
+
+        RecordingReverseExtractor extractor = new RecordingReverseExtractor(List.of("marker"), 2);
+        BuildLogScanner scanner = new BuildLogScanner(build);
+        scanner.register(extractor);
+        scanner.scan();
+
+        assertEquals(List.of("marker 3", "marker 2"), extractor.lines);
+    }
+
+    @Test
+    void hasNoResultOnceByteBudgetIsUsedUp(@TempDir Path directory) throws IOException {
+        Run<?, ?> build = mockLogFile(directory, "marker 1\nmarker 2\nmarker 3\n");
+
+        RecordingReverseExtractor extractor = new RecordingReverseExtractor(List.of("marker"), 5);
+        BuildLogScanner scanner = new BuildLogScanner(build, 10, false);
+        scanner.register(extractor);
+        scanner.scan();
+
+        assertTrue(extractor.reset);
+        assertTrue(extractor.lines.isEmpty());
+        Mockito.verify(build, Mockito.never()).getLogReader();
+    }
+
+    @Test
+    void readsFromBeginningOnceByteBudgetIsUsedUpWithFallback(@TempDir Path directory) throws IOException {
+        String log = "marker 1\nmarker 2\nmarker 3\n";
+        Run<?, ?> build = mockLogFile(directory, log);
+        Mockito.when(build.getLogReader()).thenReturn(new StringReader(log));
+
+        RecordingReverseExtractor extractor = new RecordingReverseExtractor(List.of("marker"), 5);
+        BuildLogScanner scanner = new BuildLogScanner(build, 10, true);
+        scanner.register(extractor);
+        scanner.scan();
+
+        assertTrue(extractor.reset);
+        assertEquals(List.of("marker 1", "marker 2", "marker 3"), extractor.lines);
+    }
+
+    private static Run<?, ?> mockLogFile(Path directory, String content) throws IOException {
+        Path logFile = directory.resolve("log");
+        Files.writeString(logFile, content, StandardCharsets.UTF_8);
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Mockito.when(build.getLogFile()).thenReturn(logFile.toFile());
+        Mockito.when(build.getCharset()).thenReturn(StandardCharsets.UTF_8);
+        return build;
+    }
+
+    private static final class RecordingReverseExtractor implements BuildLogScanner.ReverseExtractor {
+
+        private final List<String> markers;
+        private final int doneAfterLines;
+        private final List<String> lines = new ArrayList<>();
+        private boolean reset;
+
+        private RecordingReverseExtractor(List<String> markers, int doneAfterLines) {
+            this.markers = markers;
+            this.doneAfterLines = doneAfterLines;
+        }
+
+        @Override
+        public List<String> getMarkers() {
+            return markers;
+        }
+
+        @Override
+        public boolean accept(String line) {
+            lines.add(line);
+            return false;
+        }
+
+        @Override
+        public boolean acceptFromEnd(String line) {
+            lines.add(line);
+            return lines.size() == doneAfterLines;
+        }
+
+        @Override
+        public void reset() {
+            lines.clear();
+            reset = true;
+        }
+    }
+
+    private static final class RecordingExtractor implements BuildLogScanner.Extractor {
+
+        private final List<String> markers;
+        private final boolean doneAfterFirstLine;
+        private final List<String> lines = new ArrayList<>();
+
+        private RecordingExtractor(List<String> markers, boolean doneAfterFirstLine) {
+            this.markers = markers;
+            this.doneAfterFirstLine = doneAfterFirstLine;
+        }
+
+        @Override
+        public List<String> getMarkers() {
+            return markers;
+        }
+
+        @Override
+        public boolean accept(String line) {
+            lines.add(line);
+            return doneAfterFirstLine;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Run;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.actions.WorkspaceAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static jenkinsci.plugins.influxdb.generators.PointGeneratorBaseTest.mockEnd;
+import static jenkinsci.plugins.influxdb.generators.PointGeneratorBaseTest.mockStart;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlowGraphIndexTest {
+
+    private WorkflowRun build;
+    private List<FlowNode> heads;
+
+    @BeforeEach
+    void before() {
+        build = Mockito.mock(WorkflowRun.class);
+        FlowExecutionOwner owner = Mockito.mock(FlowExecutionOwner.class);
+        FlowExecution execution = Mockito.mock(FlowExecution.class);
+        heads = new ArrayList<>();
+        Mockito.when(build.asFlowExecutionOwner()).thenReturn(owner);
+        Mockito.when(owner.getOrNull()).thenReturn(execution);
+        Mockito.when(execution.getCurrentHeads()).thenAnswer(invocation -> new ArrayList<>(heads));
+    }
+
+    @Test
+    void indexesStagesAndParallelBranches() {
+        BlockStartNode stage = mockStart("3", null, 1000L);
+        Mockito.when(stage.getAction(LabelAction.class)).thenReturn(new LabelAction("Build"));
+        BlockStartNode branch = mockStart("5", "4", 1500L);
+        ThreadNameAction threadNameAction = Mockito.mock(ThreadNameAction.class);
+        Mockito.when(threadNameAction.getThreadName()).thenReturn("linux");
+        Mockito.when(branch.getAction(ThreadNameAction.class)).thenReturn(threadNameAction);
+        BlockStartNode parallel = mockStart("4", "3", 1400L);
+        heads.addAll(List.of(mockEnd("9", stage, 4000L), branch, parallel, stage));
+
+        List<FlowGraphIndex.Block> blocks = FlowGraphIndex.of(build).getBlocks();
+
+        assertEquals(2, blocks.size());
+        assertEquals("Build", blocks.get(0).getName());
+        assertFalse(blocks.get(0).isParallelBranch());
+        assertEquals(1000L, blocks.get(0).getStartMillis());
+        assertEquals(4000L, blocks.get(0).getEndMillis());
+        assertNull(blocks.get(0).getParentId());
+        assertEquals("linux", blocks.get(1).getName());
+        assertTrue(blocks.get(1).isParallelBranch());
+        assertEquals(-1L, blocks.get(1).getEndMillis());
+        assertEquals("3", blocks.get(1).getParentId());
+    }
+
+    @Test
+    void reusesIndexUntilHeadsChange() {
+        FlowNode node = mockNode("2");
+        WorkspaceAction workspaceAction = Mockito.mock(WorkspaceAction.class);
+        Mockito.when(workspaceAction.getNode()).thenReturn("agent-1");
+        Mockito.when(workspaceAction.getLabels()).thenReturn(Set.of());
+        Mockito.when(node.getAction(WorkspaceAction.class)).thenReturn(workspaceAction);
+        heads.add(node);
+
+        FlowGraphIndex index = FlowGraphIndex.of(build);
+        assertSame(index, FlowGraphIndex.of(build));
+        assertEquals(List.of(new FlowGraphIndex.Agent("agent-1", "")), index.getAgents());
+        Mockito.verify(node, Mockito.times(1)).getAction(WorkspaceAction.class);
+
+        heads.add(mockNode("3"));
+        assertEquals(1, FlowGraphIndex.of(build).getAgents().size());
+        Mockito.verify(node, Mockito.times(2)).getAction(WorkspaceAction.class);
+    }
+
+    @Test
+    void isEmptyForOtherBuilds() {
+        assertTrue(FlowGraphIndex.of(Mockito.mock(Run.class)).getBlocks().isEmpty());
+    }
+
+    private static FlowNode mockNode(String id) {
+        FlowNode node = Mockito.mock(FlowNode.class);
+        Mockito.when(node.getId()).thenReturn(id);
+        return node;
+    }
+}
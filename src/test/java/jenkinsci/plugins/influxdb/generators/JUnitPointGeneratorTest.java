@@ -13,12 +13,15 @@ import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
 import org.apache.commons.lang.StringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -140,4 +143,219 @@ class JUnitPointGeneratorTest extends PointGeneratorBaseTest {
         assertTrue(allLineProtocolsContain(points[0], "test_status_ordinal=0"));
         assertTrue(allLineProtocolsContain(points[0], "test_duration=10.0"));
     }
+
+    @Test
+    void points_are_generated_in_chunks() {
+        CaseResult.Status status = Mockito.mock(CaseResult.Status.class);
+        SuiteResult suiteResult = Mockito.mock(SuiteResult.class);
+        Mockito.when(caseResult.getStatus()).thenReturn(status);
+        Mockito.when(caseResult.getSuiteResult()).thenReturn(suiteResult);
+        List<CaseResult> failedTests = Collections.nCopies(2, caseResult);
+        List<CaseResult> passedTests = Collections.nCopies(JUnitPointGenerator.CHUNK_SIZE, caseResult);
+        AbstractTestResultAction testResultAction = Mockito.mock(AbstractTestResultAction.class);
+        Mockito.when(testResultAction.getFailedTests()).thenReturn(failedTests);
+        Mockito.when(testResultAction.getSkippedTests()).thenReturn(Collections.emptyList());
+        Mockito.when(testResultAction.getPassedTests()).thenReturn(passedTests);
+        Mockito.when(build.getAction(AbstractTestResultAction.class)).thenReturn(testResultAction);
+
+        JUnitPointGenerator generator = new JUnitPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, new EnvVars());
+        List<Integer> chunkSizes = new ArrayList<>();
+        generator.generate(chunk -> chunkSizes.add(chunk.size()));
+
+        assertEquals(List.of(JUnitPointGenerator.CHUNK_SIZE, 2), chunkSizes);
+    }
+
+    @Test
+    void class_aggregation_rolls_up_cases_and_keeps_failed_or_slow_ones() {
+        CaseResult failed = mockCase("ClassA", "my_suite", CaseResult.Status.FAILED, 1.0f);
+        CaseResult fast = mockCase("ClassA", "my_suite", CaseResult.Status.PASSED, 2.0f);
+        CaseResult slow = mockCase("ClassB", "my_suite", CaseResult.Status.PASSED, 30.0f);
+        CaseResult skipped = mockCase("ClassA", "my_suite", CaseResult.Status.SKIPPED, 0.0f);
+        mockTestResults(List.of(failed), List.of(skipped), List.of(fast, slow));
+
+        EnvVars envVars = new EnvVars();
+        envVars.put(JUnitPointGenerator.AGGREGATION_ENV, "class");
+        envVars.put(JUnitPointGenerator.SLOW_THRESHOLD_ENV, "10");
+        JUnitPointGenerator generator = new JUnitPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, envVars);
+        AbstractPoint[] points = generator.generate();
+
+        assertEquals(4, points.length);
+        assertTrue(allLineProtocolsStartWith(points[0], "junit_data"));
+        assertTrue(allLineProtocolsContain(points[0], "test_class_full_name=\"ClassA\""));
+        assertTrue(allLineProtocolsStartWith(points[1], "junit_data"));
+        assertTrue(allLineProtocolsContain(points[1], "test_class_full_name=\"ClassB\""));
+
+        assertTrue(allLineProtocolsStartWith(points[2], "junit_aggregate_data"));
+        assertTrue(allLineProtocolsContain(points[2], "aggregation_level=\"class\""));
+        assertTrue(allLineProtocolsContain(points[2], "group_name=\"ClassA\""));
+        assertTrue(allLineProtocolsContain(points[2], "test_count=3i"));
+        assertTrue(allLineProtocolsContain(points[2], "test_passed_count=1i"));
+        assertTrue(allLineProtocolsContain(points[2], "test_failed_count=1i"));
+        assertTrue(allLineProtocolsContain(points[2], "test_skipped_count=1i"));
+        assertTrue(allLineProtocolsContain(points[2], "test_duration_sum=3.0"));
+        assertTrue(allLineProtocolsContain(points[2], "test_duration_min=0.0"));
+        assertTrue(allLineProtocolsContain(points[2], "test_duration_max=2.0"));
+        assertTrue(allLineProtocolsContain(points[2], "test_duration_p50=1.0"));
+        assertTrue(allLineProtocolsContain(points[2], "test_duration_p95=2.0"));
+
+        assertTrue(allLineProtocolsContain(points[3], "group_name=\"ClassB\""));
+        assertTrue(allLineProtocolsContain(points[3], "test_count=1i"));
+    }
+
+    @Test
+    void suite_aggregation_without_individual_cases() {
+        CaseResult first = mockCase("ClassA", "suite_1", CaseResult.Status.FAILED, 1.0f);
+        CaseResult second = mockCase("ClassB", "suite_1", CaseResult.Status.PASSED, 2.0f);
+        CaseResult third = mockCase("ClassC", "suite_2", CaseResult.Status.PASSED, 3.0f);
+        mockTestResults(List.of(first), Collections.emptyList(), List.of(second, third));
+
+        EnvVars envVars = new EnvVars();
+        envVars.put(JUnitPointGenerator.AGGREGATION_ENV, "SUITE");
+        envVars.put(JUnitPointGenerator.CASES_ENV, "none");
+        JUnitPointGenerator generator = new JUnitPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, envVars);
+        AbstractPoint[] points = generator.generate();
+
+        assertEquals(2, points.length);
+        assertTrue(allLineProtocolsContain(points[0], "group_name=\"suite_1\""));
+        assertTrue(allLineProtocolsContain(points[0], "test_count=2i"));
+        assertTrue(allLineProtocolsContain(points[1], "group_name=\"suite_2\""));
+        assertTrue(allLineProtocolsContain(points[1], "test_count=1i"));
+    }
+
+    @Test
+    void unknown_aggregation_falls_back_to_cases() {
+        CaseResult passed = mockCase("ClassA", "my_suite", CaseResult.Status.PASSED, 1.0f);
+        mockTestResults(Collections.emptyList(), Collections.emptyList(), List.of(passed));
+        Mockito.when(listener.getLogger()).thenReturn(Mockito.mock(PrintStream.class));
+
+        EnvVars envVars = new EnvVars();
+        envVars.put(JUnitPointGenerator.AGGREGATION_ENV, "module");
+        JUnitPointGenerator generator = new JUnitPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, envVars);
+        AbstractPoint[] points = generator.generate();
+
+        assertEquals(1, points.length);
+        assertTrue(allLineProtocolsStartWith(points[0], "junit_data"));
+    }
+
+    @Test
+    void delta_mode_publishes_changed_tests_and_summary() {
+        JUnitFingerprintAction.Builder previous = new JUnitFingerprintAction.Builder();
+        previous.add(JUnitFingerprintAction.key("ClassA.unchanged"), JUnitFingerprintAction.value(CaseResult.Status.PASSED, 1.0f));
+        previous.add(JUnitFingerprintAction.key("ClassA.broken"), JUnitFingerprintAction.value(CaseResult.Status.PASSED, 1.0f));
+        previous.add(JUnitFingerprintAction.key("ClassA.slower"), JUnitFingerprintAction.value(CaseResult.Status.PASSED, 1.0f));
+        previous.add(JUnitFingerprintAction.key("ClassA.removed"), JUnitFingerprintAction.value(CaseResult.Status.PASSED, 1.0f));
+        Run previousBuild = Mockito.mock(Run.class);
+        Mockito.when(previousBuild.getAction(JUnitFingerprintAction.class)).thenReturn(previous.build());
+        Mockito.when(build.getPreviousBuild()).thenReturn(previousBuild);
+
+        CaseResult unchanged = mockCase("ClassA", "my_suite", CaseResult.Status.PASSED, 1.1f);
+        CaseResult broken = mockCase("ClassA", "my_suite", CaseResult.Status.REGRESSION, 1.0f);
+        CaseResult slower = mockCase("ClassA", "my_suite", CaseResult.Status.PASSED, 5.0f);
+        CaseResult added = mockCase("ClassA", "my_suite", CaseResult.Status.PASSED, 1.0f);
+        Mockito.when(unchanged.getFullName()).thenReturn("ClassA.unchanged");
+        Mockito.when(broken.getFullName()).thenReturn("ClassA.broken");
+        Mockito.when(slower.getFullName()).thenReturn("ClassA.slower");
+        Mockito.when(added.getFullName()).thenReturn("ClassA.added");
+        mockTestResults(List.of(broken), Collections.emptyList(), List.of(unchanged, slower, added));
+
+        EnvVars envVars = new EnvVars();
+        envVars.put(JUnitPointGenerator.DELTA_ENV, "true");
+        JUnitPointGenerator generator = new JUnitPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, envVars);
+        AbstractPoint[] points = generator.generate();
+
+        assertEquals(4, points.length);
+        assertTrue(allLineProtocolsContain(points[0], "test_status=\"REGRESSION\""));
+        assertTrue(allLineProtocolsContain(points[1], "test_duration=5.0"));
+        assertTrue(allLineProtocolsContain(points[2], "test_duration=1.0"));
+        assertTrue(allLineProtocolsStartWith(points[3], "junit_delta_data"));
+        assertTrue(allLineProtocolsContain(points[3], "baseline_found=true"));
+        assertTrue(allLineProtocolsContain(points[3], "test_count=4i"));
+        assertTrue(allLineProtocolsContain(points[3], "test_new_count=1i"));
+        assertTrue(allLineProtocolsContain(points[3], "test_status_changed_count=1i"));
+        assertTrue(allLineProtocolsContain(points[3], "test_duration_changed_count=1i"));
+        assertTrue(allLineProtocolsContain(points[3], "test_unchanged_count=1i"));
+        assertTrue(allLineProtocolsContain(points[3], "test_removed_count=1i"));
+
+        Mockito.verify(build, Mockito.never()).addOrReplaceAction(Mockito.any());
+        generator.attachFingerprint();
+        ArgumentCaptor<JUnitFingerprintAction> fingerprint = ArgumentCaptor.forClass(JUnitFingerprintAction.class);
+        Mockito.verify(build).addOrReplaceAction(fingerprint.capture());
+        assertEquals(4, fingerprint.getValue().size());
+        assertEquals(JUnitFingerprintAction.value(CaseResult.Status.PASSED, 1.0f),
+                fingerprint.getValue().lookup(JUnitFingerprintAction.key("ClassA.unchanged")));
+        assertEquals(JUnitFingerprintAction.NOT_FOUND, fingerprint.getValue().lookup(JUnitFingerprintAction.key("ClassA.removed")));
+    }
+
+    @Test
+    void delta_mode_records_only_published_tests() {
+        JUnitFingerprintAction.Builder previous = new JUnitFingerprintAction.Builder();
+        previous.add(JUnitFingerprintAction.key("ClassA.slower"), JUnitFingerprintAction.value(CaseResult.Status.PASSED, 1.0f));
+        Run previousBuild = Mockito.mock(Run.class);
+        Mockito.when(previousBuild.getAction(JUnitFingerprintAction.class)).thenReturn(previous.build());
+        Mockito.when(build.getPreviousBuild()).thenReturn(previousBuild);
+
+        CaseResult slower = mockCase("ClassA", "my_suite", CaseResult.Status.PASSED, 5.0f);
+        CaseResult added = mockCase("ClassA", "my_suite", CaseResult.Status.PASSED, 1.0f);
+        CaseResult failed = mockCase("ClassA", "my_suite", CaseResult.Status.FAILED, 1.0f);
+        Mockito.when(slower.getFullName()).thenReturn("ClassA.slower");
+        Mockito.when(added.getFullName()).thenReturn("ClassA.added");
+        Mockito.when(failed.getFullName()).thenReturn("ClassA.failed");
+        mockTestResults(List.of(failed), Collections.emptyList(), List.of(slower, added));
+
+        EnvVars envVars = new EnvVars();
+        envVars.put(JUnitPointGenerator.DELTA_ENV, "true");
+        envVars.put(JUnitPointGenerator.CASES_ENV, "failed_or_slow");
+        JUnitPointGenerator generator = new JUnitPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, envVars);
+        AbstractPoint[] points = generator.generate();
+        generator.attachFingerprint();
+
+        assertEquals(2, points.length);
+        assertTrue(allLineProtocolsContain(points[0], "test_status=\"FAILED\""));
+        ArgumentCaptor<JUnitFingerprintAction> fingerprint = ArgumentCaptor.forClass(JUnitFingerprintAction.class);
+        Mockito.verify(build).addOrReplaceAction(fingerprint.capture());
+        assertEquals(2, fingerprint.getValue().size());
+        assertEquals(JUnitFingerprintAction.value(CaseResult.Status.PASSED, 1.0f),
+                fingerprint.getValue().lookup(JUnitFingerprintAction.key("ClassA.slower")));
+        assertEquals(JUnitFingerprintAction.NOT_FOUND, fingerprint.getValue().lookup(JUnitFingerprintAction.key("ClassA.added")));
+        assertEquals(JUnitFingerprintAction.value(CaseResult.Status.FAILED, 1.0f),
+                fingerprint.getValue().lookup(JUnitFingerprintAction.key("ClassA.failed")));
+    }
+
+    @Test
+    void delta_mode_without_baseline_publishes_all_tests() {
+        CaseResult passed = mockCase("ClassA", "my_suite", CaseResult.Status.PASSED, 1.0f);
+        Mockito.when(passed.getFullName()).thenReturn("ClassA.passed");
+        mockTestResults(Collections.emptyList(), Collections.emptyList(), List.of(passed));
+
+        EnvVars envVars = new EnvVars();
+        envVars.put(JUnitPointGenerator.DELTA_ENV, "true");
+        JUnitPointGenerator generator = new JUnitPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, envVars);
+        AbstractPoint[] points = generator.generate();
+
+        assertEquals(2, points.length);
+        assertTrue(allLineProtocolsStartWith(points[0], "junit_data"));
+        assertTrue(allLineProtocolsContain(points[1], "baseline_found=false"));
+        assertTrue(allLineProtocolsContain(points[1], "test_new_count=1i"));
+    }
+
+    private CaseResult mockCase(String className, String suiteName, CaseResult.Status status, float duration) {
+        CaseResult result = Mockito.mock(CaseResult.class);
+        SuiteResult suiteResult = Mockito.mock(SuiteResult.class);
+        Mockito.when(suiteResult.getName()).thenReturn(suiteName);
+        Mockito.when(result.getSuiteResult()).thenReturn(suiteResult);
+        Mockito.when(result.getClassName()).thenReturn(className);
+        Mockito.when(result.getName()).thenReturn("my_test");
+        Mockito.when(result.getStatus()).thenReturn(status);
+        Mockito.when(result.isFailed()).thenReturn(status == CaseResult.Status.FAILED || status == CaseResult.Status.REGRESSION);
+        Mockito.when(result.getDuration()).thenReturn(duration);
+        return result;
+    }
+
+    private void mockTestResults(List<CaseResult> failed, List<CaseResult> skipped, List<CaseResult> passed) {
+        AbstractTestResultAction testResultAction = Mockito.mock(AbstractTestResultAction.class);
+        Mockito.when(testResultAction.getFailedTests()).thenReturn(failed);
+        Mockito.when(testResultAction.getSkippedTests()).thenReturn(skipped);
+        Mockito.when(testResultAction.getPassedTests()).thenReturn(passed);
+        Mockito.when(build.getAction(AbstractTestResultAction.class)).thenReturn(testResultAction);
+    }
 }
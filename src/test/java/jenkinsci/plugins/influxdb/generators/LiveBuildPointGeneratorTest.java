@@ -0,0 +1,96 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.plugins.workflow.actions.ErrorAction;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiveBuildPointGeneratorTest extends PointGeneratorBaseTest {
+
+    private static final String CUSTOM_PREFIX = "test_prefix";
+    private static final String JOB_NAME = "job_name";
+
+    private Run<?, ?> build;
+    private TaskListener listener;
+    private ProjectNameRenderer measurementRenderer;
+    private long currTime;
+
+    @BeforeEach
+    void before() {
+        listener = Mockito.mock(TaskListener.class);
+        currTime = System.currentTimeMillis();
+        measurementRenderer = new ProjectNameRenderer(CUSTOM_PREFIX, null);
+        Job<?, ?> job = Mockito.mock(Job.class);
+        Mockito.when(job.getName()).thenReturn(JOB_NAME);
+        Mockito.when(job.getRelativeNameFrom(Mockito.nullable(Jenkins.class))).thenReturn("folder/" + JOB_NAME);
+
+        build = Mockito.mock(Run.class);
+        Mockito.doReturn(job).when(build).getParent();
+        Mockito.when(build.getStartTimeInMillis()).thenReturn(currTime - 5000);
+    }
+
+    @Test
+    void generatesHeartbeat() {
+        LiveBuildPointGenerator generator = new LiveBuildPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, CUSTOM_PREFIX, 3, 7);
+        AbstractPoint[] points = generator.generate();
+
+        assertEquals(1, points.length);
+        assertTrue(allLineProtocolsStartWith(points[0], "live_build_data"));
+        assertTrue(allLineProtocolsContain(points[0], "running_stages=3i"));
+        assertTrue(allLineProtocolsContain(points[0], "completed_stages=7i"));
+    }
+
+    @Test
+    void generatesStageStartAndEndEvents() {
+        BlockStartNode branch = Mockito.mock(BlockStartNode.class);
+        Mockito.when(branch.getId()).thenReturn("5");
+        ThreadNameAction threadNameAction = Mockito.mock(ThreadNameAction.class);
+        Mockito.when(threadNameAction.getThreadName()).thenReturn("linux");
+        Mockito.when(branch.getAction(ThreadNameAction.class)).thenReturn(threadNameAction);
+        mockTiming(branch, 1000L);
+        BlockEndNode<?> branchEnd = mockEnd("6", branch, 3500L);
+        ErrorAction errorAction = Mockito.mock(ErrorAction.class);
+        Mockito.when(errorAction.getError()).thenReturn(new IllegalStateException("failed"));
+        Mockito.when(branchEnd.getPersistentAction(ErrorAction.class)).thenReturn(errorAction);
+
+        LiveBuildPointGenerator generator = new LiveBuildPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, CUSTOM_PREFIX, 0, 0);
+        AbstractPoint start = generator.generateStageStart(branch);
+        AbstractPoint end = generator.generateStageEnd(branchEnd);
+
+        assertTrue(allLineProtocolsStartWith(start, "stage_event_data"));
+        assertTrue(allLineProtocolsContain(start, "stage_name=\"linux\""));
+        assertTrue(allLineProtocolsContain(start, "event=\"start\""));
+        assertTrue(allLineProtocolsContain(start, "parallel_branch=true"));
+        assertTrue(allLineProtocolsContain(start, "status=\"RUNNING\""));
+        assertTrue(allLineProtocolsContain(end, "event=\"end\""));
+        assertTrue(allLineProtocolsContain(end, "duration=2500i"));
+        assertTrue(allLineProtocolsContain(end, "status=\"" + Result.FAILURE + "\""));
+    }
+
+    @Test
+    void ignoresBlocksOtherThanStages() {
+        BlockStartNode node = Mockito.mock(BlockStartNode.class);
+        Mockito.when(node.getAction(LabelAction.class)).thenReturn(null);
+
+        LiveBuildPointGenerator generator = new LiveBuildPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, CUSTOM_PREFIX, 0, 0);
+
+        assertNull(generator.generateStageStart(node));
+        assertNull(generator.generateStageEnd(mockEnd("6", node, 0L)));
+    }
+}
@@ -0,0 +1,167 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Run;
+import hudson.util.StreamTaskListener;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelPointCollectorTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+    private final StreamTaskListener listener = new StreamTaskListener(log, StandardCharsets.UTF_8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void pointsAreMergedInOrderOfGenerators() {
+        ParallelPointCollector collector = new ParallelPointCollector(listener, executor, 10_000);
+        collector.add("slow", () -> new FixedGenerator(true, 200, "slow"));
+        collector.add("fast", () -> new FixedGenerator(true, 0, "fast"));
+        collector.addFromPlugin("medium", () -> new FixedGenerator(true, 100, "medium"));
+
+        List<String> names = collector.collect().stream().map(AbstractPoint::getName).collect(Collectors.toList());
+
+        assertEquals(List.of("slow", "fast", "medium"), names);
+    }
+
+    @Test
+    void generatorsWithoutReportAreSkipped() {
+        ParallelPointCollector collector = new ParallelPointCollector(listener, executor, 10_000);
+        collector.add("base", () -> new FixedGenerator(false, 0, "base"));
+        collector.addFromPlugin("plugin", () -> new FixedGenerator(false, 0, "plugin"));
+        collector.addFromPlugin("missing", () -> {
+            throw new NoClassDefFoundError("missing");
+        });
+
+        List<String> names = collector.collect().stream().map(AbstractPoint::getName).collect(Collectors.toList());
+
+        assertEquals(List.of("base"), names);
+    }
+
+    @Test
+    void slowGeneratorTimesOut() {
+        ParallelPointCollector collector = new ParallelPointCollector(listener, executor, 100);
+        collector.add("hanging", () -> new FixedGenerator(true, 60_000, "hanging"));
+        collector.add("fast", () -> new FixedGenerator(true, 0, "fast"));
+
+        List<String> names = collector.collect().stream().map(AbstractPoint::getName).collect(Collectors.toList());
+
+        assertEquals(List.of("fast"), names);
+        assertTrue(log.toString(StandardCharsets.UTF_8).contains("hanging data collection timed out"));
+    }
+
+    @Test
+    void queuedGeneratorTimesOut() {
+        ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        try {
+            ParallelPointCollector collector = new ParallelPointCollector(listener, singleThread, 100);
+            collector.add("hanging", () -> new FixedGenerator(true, 60_000, "hanging"));
+            collector.add("queued", () -> new FixedGenerator(true, 60_000, "queued"));
+
+            long start = System.currentTimeMillis();
+            assertTrue(collector.collect().isEmpty());
+
+            assertTrue(System.currentTimeMillis() - start < 10_000);
+            assertTrue(log.toString(StandardCharsets.UTF_8).contains("queued data collection timed out"));
+        } finally {
+            singleThread.shutdownNow();
+        }
+    }
+
+    @Test
+    void failingGeneratorIsIgnored() {
+        ParallelPointCollector collector = new ParallelPointCollector(listener, executor, 10_000);
+        collector.add("failing", () -> {
+            throw new IllegalStateException("broken");
+        });
+        collector.add("fast", () -> new FixedGenerator(true, 0, "fast"));
+
+        List<String> names = collector.collect().stream().map(AbstractPoint::getName).collect(Collectors.toList());
+
+        assertEquals(List.of("fast"), names);
+        assertTrue(log.toString(StandardCharsets.UTF_8).contains("Failed to collect data"));
+    }
+
+    @Test
+    void streamingGeneratorsPassChunksToConsumer() {
+        ParallelPointCollector collector = new ParallelPointCollector(listener, executor, 10_000);
+        collector.addStreamingFromPlugin("stream", () -> new FixedGenerator(true, 0, "stream"));
+        collector.addStreamingFromPlugin("no report", () -> new FixedGenerator(false, 0, "no report"));
+        collector.addStreamingFromPlugin("failing", () -> {
+            throw new IllegalStateException("broken");
+        });
+
+        List<String> names = new ArrayList<>();
+        assertTrue(collector.collect().isEmpty());
+        collector.stream(chunk -> chunk.forEach(point -> names.add(point.getName())));
+
+        assertEquals(List.of("stream"), names);
+        assertTrue(log.toString(StandardCharsets.UTF_8).contains("Failed to collect data"));
+    }
+
+    @Test
+    void consumerFailureIsRethrown() {
+        ParallelPointCollector collector = new ParallelPointCollector(listener, executor, 10_000);
+        collector.addStreamingFromPlugin("stream", () -> new FixedGenerator(true, 0, "stream"));
+
+        assertThrows(IllegalStateException.class, () -> collector.stream(chunk -> {
+            throw new IllegalStateException("write failed");
+        }));
+    }
+
+    private static class FixedGenerator implements PointGenerator {
+
+        private final boolean hasReport;
+        private final long delayMillis;
+        private final String measurement;
+
+        FixedGenerator(boolean hasReport, long delayMillis, String measurement) {
+            this.hasReport = hasReport;
+            this.delayMillis = delayMillis;
+            this.measurement = measurement;
+        }
+
+        @Override
+        public boolean hasReport() {
+            return hasReport;
+        }
+
+        @Override
+        public AbstractPoint[] generate() {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new AbstractPoint[0];
+            }
+            return new AbstractPoint[]{new AbstractPoint(measurement).addTag("tag", "value").addField("value", 1)};
+        }
+
+        @Override
+        public AbstractPoint buildPoint(String name, String customPrefix, Run<?, ?> build, long timeStamp) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AbstractPoint buildPoint(String name, String customPrefix, Run<?, ?> build) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.EnvVars;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.plugins.workflow.actions.ErrorAction;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.actions.WorkspaceAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.steps.FlowInterruptedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineStagePointGeneratorTest extends PointGeneratorBaseTest {
+
+    private static final String CUSTOM_PREFIX = "test_prefix";
+    private static final String JOB_NAME = "job_name";
+
+    private WorkflowRun build;
+    private TaskListener listener;
+    private ProjectNameRenderer measurementRenderer;
+    private List<FlowNode> heads;
+    private EnvVars env;
+    private long currTime;
+
+    @BeforeEach
+    void before() {
+        listener = Mockito.mock(TaskListener.class);
+        currTime = System.currentTimeMillis();
+        measurementRenderer = new ProjectNameRenderer(CUSTOM_PREFIX, null);
+        Job<?, ?> job = Mockito.mock(Job.class);
+        Mockito.when(job.getName()).thenReturn(JOB_NAME);
+        Mockito.when(job.getRelativeNameFrom(Mockito.nullable(Jenkins.class))).thenReturn("folder/" + JOB_NAME);
+
+        build = Mockito.mock(WorkflowRun.class);
+        Mockito.doReturn(job).when(build).getParent();
+        Mockito.when(build.getStartTimeInMillis()).thenReturn(500L);
+        FlowExecutionOwner owner = Mockito.mock(FlowExecutionOwner.class);
+        FlowExecution execution = Mockito.mock(FlowExecution.class);
+        heads = new ArrayList<>();
+        Mockito.when(build.asFlowExecutionOwner()).thenReturn(owner);
+        Mockito.when(owner.getOrNull()).thenReturn(execution);
+        Mockito.when(execution.getCurrentHeads()).thenAnswer(invocation -> new ArrayList<>(heads));
+
+        env = new EnvVars();
+        env.put("LOG_PIPELINE_STAGES", "true");
+    }
+
+    @Test
+    void hasReportOnlyIfEnabledAndThereAreStages() {
+        assertFalse(new PipelineStagePointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, CUSTOM_PREFIX, env).hasReport());
+
+        BlockStartNode stage = mockStart("3", null, 1000L);
+        Mockito.when(stage.getAction(LabelAction.class)).thenReturn(new LabelAction("Build"));
+        heads.add(stage);
+
+        assertTrue(new PipelineStagePointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, CUSTOM_PREFIX, env).hasReport());
+        assertFalse(new PipelineStagePointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, CUSTOM_PREFIX, new EnvVars()).hasReport());
+    }
+
+    @Test
+    void generatesPointPerStageAndParallelBranch() {
+        BlockStartNode agent = mockStart("2", null, 600L);
+        WorkspaceAction workspaceAction = Mockito.mock(WorkspaceAction.class);
+        Mockito.when(workspaceAction.getNode()).thenReturn("agent-1");
+        Mockito.when(workspaceAction.getLabels()).thenReturn(Set.of());
+        Mockito.when(agent.getAction(WorkspaceAction.class)).thenReturn(workspaceAction);
+        BlockStartNode stage = mockStart("3", "2", 1000L);
+        Mockito.when(stage.getAction(LabelAction.class)).thenReturn(new LabelAction("Build"));
+        BlockEndNode<?> stageEnd = mockEnd("9", stage, 4000L);
+        ErrorAction errorAction = Mockito.mock(ErrorAction.class);
+        Mockito.when(errorAction.getError()).thenReturn(new FlowInterruptedException(Result.ABORTED));
+        Mockito.when(stageEnd.getPersistentAction(ErrorAction.class)).thenReturn(errorAction);
+        BlockStartNode branch = mockStart("5", "3", 1500L);
+        ThreadNameAction threadNameAction = Mockito.mock(ThreadNameAction.class);
+        Mockito.when(threadNameAction.getThreadName()).thenReturn("linux");
+        Mockito.when(branch.getAction(ThreadNameAction.class)).thenReturn(threadNameAction);
+        heads.addAll(List.of(stageEnd, branch, stage, agent));
+
+        PipelineStagePointGenerator generator = new PipelineStagePointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, CUSTOM_PREFIX, env);
+        AbstractPoint[] points = generator.generate();
+
+        assertEquals(2, points.length);
+        assertTrue(allLineProtocolsStartWith(points[0], "stage_data"));
+        assertTrue(allLineProtocolsContain(points[0], "stage_name=\"Build\""));
+        assertTrue(allLineProtocolsContain(points[0], "start_offset=500i"));
+        assertTrue(allLineProtocolsContain(points[0], "duration=3000i"));
+        assertTrue(allLineProtocolsContain(points[0], "status=\"ABORTED\""));
+        assertTrue(allLineProtocolsContain(points[0], "agent_name=\"agent-1\""));
+        assertTrue(allLineProtocolsContain(points[0], "parallel_branch=false"));
+        assertTrue(allLineProtocolsContain(points[1], "stage_name=\"linux\""));
+        assertTrue(allLineProtocolsContain(points[1], "parent_stage_id=\"3\""));
+        assertTrue(allLineProtocolsContain(points[1], "status=\"RUNNING\""));
+        assertTrue(allLineProtocolsContain(points[1], "agent_name=\"agent-1\""));
+        assertTrue(allLineProtocolsContain(points[1], "parallel_branch=true"));
+    }
+}
@@ -1,6 +1,11 @@
 package jenkinsci.plugins.influxdb.generators;
 
 import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.mockito.Mockito;
 
 import java.lang.reflect.Field;
 import java.util.Map;
@@ -137,4 +142,50 @@ public class PointGeneratorBaseTest {
     public static boolean allLineProtocolsStartWith(AbstractPoint point, String match) {
         return point.getV1v2Point().toLineProtocol().startsWith(match) && point.getV3Point().toLineProtocol().startsWith(match);
     }
+
+    /**
+     * Mocks the node starting a block of a pipeline.
+     *
+     * @param id          The id of the node.
+     * @param enclosingId The id of the node starting the enclosing block.
+     * @param startMillis The time at which the block started.
+     * @return The mocked node.
+     */
+    public static BlockStartNode mockStart(String id, String enclosingId, long startMillis) {
+        BlockStartNode node = Mockito.mock(BlockStartNode.class);
+        Mockito.when(node.getId()).thenReturn(id);
+        Mockito.when(node.getEnclosingId()).thenReturn(enclosingId);
+        mockTiming(node, startMillis);
+        return node;
+    }
+
+    /**
+     * Mocks the node ending a block of a pipeline.
+     *
+     * @param id        The id of the node.
+     * @param start     The node starting the block.
+     * @param endMillis The time at which the block ended.
+     * @return The mocked node.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static BlockEndNode<?> mockEnd(String id, BlockStartNode start, long endMillis) {
+        BlockEndNode node = Mockito.mock(BlockEndNode.class);
+        Mockito.when(node.getId()).thenReturn(id);
+        Mockito.when(node.getStartNode()).thenReturn(start);
+        mockTiming(node, endMillis);
+        return node;
+    }
+
+    /**
+     * Mocks the timing action of a node of a pipeline.
+     *
+     * @param node   The mocked node.
+     * @param millis The time at which the node started.
+     */
+    public static void mockTiming(FlowNode node, long millis) {
+        TimingAction timingAction = Mockito.mock(TimingAction.class);
+        Mockito.when(timingAction.getStartTime()).thenReturn(millis);
+        Mockito.when(node.getAction(TimingAction.class)).thenReturn(timingAction);
+        Mockito.when(node.getPersistentAction(TimingAction.class)).thenReturn(timingAction);
+    }
 }
@@ -0,0 +1,106 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.EnvVars;
+import hudson.model.Job;
+import hudson.model.Run;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReportLocatorTest {
+
+    @TempDir
+    private Path workspace;
+
+    @Test
+    void findsSingleReport() throws IOException {
+        Path report = createFile("module/target/sonar/report-task.txt");
+        createFile("module/target/classes/Main.class");
+
+        ReportLocator locator = new ReportLocator(null, List.of(), 10, List.of());
+
+        assertEquals(report, locator.findSingle(workspace, "report-task.txt"));
+        assertEquals(report, locator.findSingle(workspace, "sonar/report-task.txt"));
+    }
+
+    @Test
+    void findsNoSingleReportIfThereAreSeveral() throws IOException {
+        createFile("a/target/sonar/report-task.txt");
+        Path second = createFile("b/target/sonar/report-task.txt");
+
+        ReportLocator locator = new ReportLocator(null, List.of(), 10, List.of());
+
+        assertNull(locator.findSingle(workspace, "report-task.txt"));
+        assertNotNull(locator.findFirst(workspace, "report-task.txt"));
+        assertEquals(second, new ReportLocator(null, List.of("b"), 10, List.of()).findSingle(workspace, "report-task.txt"));
+    }
+
+    @Test
+    void skipsExcludedDirectories() throws IOException {
+        createFile("node_modules/pkg/report-task.txt");
+        createFile("frontend/node_modules/pkg/report-task.txt");
+        Path report = createFile("target/sonar/report-task.txt");
+
+        ReportLocator locator = new ReportLocator(null, List.of(), 10, List.of("node_modules"));
+
+        assertEquals(report, locator.findSingle(workspace, "report-task.txt"));
+    }
+
+    @Test
+    void stopsAtMaximumDepth() throws IOException {
+        createFile("a/b/c/report-task.txt");
+
+        assertNull(new ReportLocator(null, List.of(), 3, List.of()).findSingle(workspace, "report-task.txt"));
+        assertEquals(workspace.resolve("a/b/c/report-task.txt"),
+                new ReportLocator(null, List.of(), 4, List.of()).findSingle(workspace, "report-task.txt"));
+    }
+
+    @Test
+    void checksRememberedPathFirst() throws IOException {
+        Path report = createFile("a/target/sonar/report-task.txt");
+        ReportLocator locator = new ReportLocator("folder/job-" + workspace.hashCode(), List.of(), 10, List.of());
+        assertEquals(report, locator.findSingle(workspace, "report-task.txt"));
+
+        // the remembered report is trusted to be the only one, without searching for others
+        Path other = createFile("b/target/sonar/report-task.txt");
+        assertEquals(report, locator.findFirst(workspace, "report-task.txt"));
+        assertEquals(report, locator.findSingle(workspace, "report-task.txt"));
+
+        // the remembered report is gone
+        Files.delete(report);
+        assertEquals(other, locator.findSingle(workspace, "report-task.txt"));
+        Files.move(other, report);
+        assertEquals(report, locator.findSingle(workspace, "report-task.txt"));
+    }
+
+    @Test
+    void isConfiguredByEnvVars() throws IOException {
+        createFile("skipped/report-task.txt");
+        Path report = createFile("reports/deep/report-task.txt");
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Job job = Mockito.mock(Job.class);
+        Mockito.when(build.getParent()).thenReturn(job);
+
+        EnvVars env = new EnvVars();
+        env.put("REPORT_SEARCH_ROOTS", "reports, missing");
+        env.put("REPORT_SEARCH_MAX_DEPTH", "2");
+        env.put("REPORT_SEARCH_EXCLUDES", "skipped");
+
+        assertEquals(report, ReportLocator.forBuild(build, env).findSingle(workspace, "report-task.txt"));
+    }
+
+    private Path createFile(String relativePath) throws IOException {
+        Path file = workspace.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        return Files.createFile(file);
+    }
+}
@@ -0,0 +1,139 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.robot.RobotBuildAction;
+import hudson.plugins.robot.model.RobotCaseResult;
+import hudson.plugins.robot.model.RobotResult;
+import hudson.plugins.robot.model.RobotSuiteResult;
+import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.apache.commons.lang.StringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RobotFrameworkPointGeneratorTest extends PointGeneratorBaseTest {
+
+    private static final String JOB_NAME = "master";
+    private static final int BUILD_NUMBER = 11;
+    private static final String CUSTOM_PREFIX = "test_prefix";
+
+    private Run<?, ?> build;
+    private TaskListener listener;
+    private ProjectNameRenderer measurementRenderer;
+    private RobotResult result;
+
+    private long currTime;
+
+    @BeforeEach
+    void before() {
+        build = Mockito.mock(Run.class);
+        Job job = Mockito.mock(Job.class);
+        listener = Mockito.mock(TaskListener.class);
+        measurementRenderer = new ProjectNameRenderer(CUSTOM_PREFIX, null);
+        RobotBuildAction buildAction = Mockito.mock(RobotBuildAction.class);
+        result = Mockito.mock(RobotResult.class);
+
+        Mockito.when(build.getNumber()).thenReturn(BUILD_NUMBER);
+        Mockito.doReturn(job).when(build).getParent();
+        Mockito.when(job.getName()).thenReturn(JOB_NAME);
+        Mockito.when(job.getRelativeNameFrom(Mockito.nullable(Jenkins.class))).thenReturn("folder/" + JOB_NAME);
+        Mockito.when(build.getAction(RobotBuildAction.class)).thenReturn(buildAction);
+        Mockito.when(buildAction.getResult()).thenReturn(result);
+
+        currTime = System.currentTimeMillis();
+    }
+
+    @Test
+    void generateSkipsDuplicateCases() {
+        RobotSuiteResult login = mockSuite("Login");
+        RobotSuiteResult logout = mockSuite("Logout");
+        mockCases(login, mockCase(login, "Valid user", 10L), mockCase(login, "Valid user", 10L),
+                mockCase(login, "Valid user", 12L), mockCase(login, "Invalid user", 10L));
+        mockCases(logout, mockCase(logout, "Valid user", 10L));
+        Mockito.when(result.getAllSuites()).thenReturn(List.of(login, logout));
+
+        RobotFrameworkPointGenerator generator = new RobotFrameworkPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, CUSTOM_PREFIX);
+        AbstractPoint[] points = generator.generate();
+
+        assertEquals(4, countPoints(points, "testcase_point"));
+        assertEquals(2, countPoints(points, "suite_result"));
+    }
+
+    @Test
+    void generateKeepsDistinctCasesOfLargeSuite() {
+        RobotSuiteResult suite = mockSuite("Large");
+        List<RobotCaseResult> cases = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            cases.add(mockCase(suite, "Case " + i, 10L));
+        }
+        cases.add(mockCase(suite, "Case 0", 10L));
+        Mockito.when(suite.getAllCases()).thenReturn(cases);
+        Mockito.when(result.getAllSuites()).thenReturn(List.of(suite));
+
+        RobotFrameworkPointGenerator generator = new RobotFrameworkPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, CUSTOM_PREFIX);
+
+        assertEquals(10_000, countPoints(generator.generate(), "testcase_point"));
+    }
+
+    @Test
+    void generateAggregatesTagsOfAllSuites() throws Exception {
+        List<RobotSuiteResult> suites = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            RobotSuiteResult suite = mockSuite("Suite " + i);
+            RobotCaseResult own = mockCase(suite, "Case " + i, 10L);
+            Mockito.when(own.getDuplicateSafeName()).thenReturn("Case_" + i);
+            Mockito.when(own.getTags()).thenReturn(List.of("smoke", "ui"));
+            RobotCaseResult shared = mockCase(suite, "Shared", 5L);
+            Mockito.when(shared.getDuplicateSafeName()).thenReturn("Shared");
+            Mockito.when(shared.getTags()).thenReturn(List.of("smoke", "smoke"));
+            mockCases(suite, own, shared);
+            suites.add(suite);
+        }
+        Mockito.when(result.getAllSuites()).thenReturn(suites);
+
+        RobotFrameworkPointGenerator generator = new RobotFrameworkPointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, CUSTOM_PREFIX);
+        List<AbstractPoint> tagPoints = Arrays.stream(generator.generate())
+                .filter(point -> point.getName().equals("tag_point"))
+                .toList();
+
+        assertEquals(2, tagPoints.size());
+        // a case counts for a tag only once, even if it is in several suites
+        assertEquals("smoke", getPointFields(tagPoints.get(0)).get("rf_tag_name"));
+        assertEquals(1005L, ((Number) getPointFields(tagPoints.get(0)).get("rf_duration")).longValue());
+        assertEquals("ui", getPointFields(tagPoints.get(1)).get("rf_tag_name"));
+        assertEquals(1000L, ((Number) getPointFields(tagPoints.get(1)).get("rf_duration")).longValue());
+    }
+
+    private static RobotSuiteResult mockSuite(String name) {
+        RobotSuiteResult suite = Mockito.mock(RobotSuiteResult.class);
+        Mockito.when(suite.getName()).thenReturn(name);
+        return suite;
+    }
+
+    private static void mockCases(RobotSuiteResult suite, RobotCaseResult... cases) {
+        Mockito.when(suite.getAllCases()).thenReturn(Arrays.asList(cases));
+    }
+
+    private static RobotCaseResult mockCase(RobotSuiteResult suite, String name, long duration) {
+        RobotCaseResult caseResult = Mockito.mock(RobotCaseResult.class);
+        Mockito.when(caseResult.getName()).thenReturn(name);
+        Mockito.when(caseResult.getParent()).thenReturn(suite);
+        Mockito.when(caseResult.getDuration()).thenReturn(duration);
+        Mockito.when(caseResult.getTags()).thenReturn(List.of());
+        return caseResult;
+    }
+
+    private static long countPoints(AbstractPoint[] points, String name) {
+        return Arrays.stream(points).filter(point -> point.getName().equals(name)).count();
+    }
+}
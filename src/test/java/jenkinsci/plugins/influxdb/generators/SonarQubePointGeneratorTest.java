@@ -1,9 +1,11 @@
 package jenkinsci.plugins.influxdb.generators;
 
 import hudson.EnvVars;
+import hudson.FilePath;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
 import org.apache.commons.lang.StringUtils;
 import org.junit.jupiter.api.BeforeAll;
@@ -18,9 +20,12 @@ import java.io.FileReader;
 import java.io.PrintStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -235,6 +240,20 @@ public class SonarQubePointGeneratorTest {
         assertEquals(url + "/api/ce/task?id=" + id, generator.getSonarBuildTaskIdUrl());
     }
 
+    @Test
+    void hasReportFindsCorrectInformationInWorkspace() {
+        EnvVars envVars = new EnvVars();
+        envVars.put("SONARQUBE_BUILD_REPORT_NAME", "report-task.txt");
+
+        SonarQubePointGenerator generator = new SonarQubePointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, envVars);
+        generator.setWorkspace(new FilePath(resourceDirectory));
+        boolean hasReport = generator.hasReport();
+
+        assertTrue(hasReport);
+        assertEquals("InfluxDBPlugin", generator.getProjectKey());
+        assertEquals("123EXAMPLE", generator.getSonarBuildTaskId());
+    }
+
     @Test
     void hasReportFindsCorrectInformationFromReportFile() {
         EnvVars envVars = new EnvVars();
@@ -253,6 +272,26 @@ public class SonarQubePointGeneratorTest {
         assertEquals(url + "/api/ce/task?id=" + id, generator.getSonarBuildTaskIdUrl());
     }
 
+    @Test
+    void hasReportFindsCorrectInformationFromEndOfBuildLogFile() {
+        File directory = new File(resourceDirectory, "sonarqube");
+        Mockito.when(build.getLogFile()).thenReturn(new File(directory, "build-log.txt"));
+        Mockito.when(build.getCharset()).thenReturn(StandardCharsets.UTF_8);
+        EnvVars envVars = new EnvVars();
+        envVars.put("WORKSPACE", "mikki hiiri");
+
+        SonarQubePointGenerator generator = new SonarQubePointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, envVars);
+        boolean hasReport = generator.hasReport();
+
+        String id = "321EXAMPLE";
+        String url = "http://sonarqube:9001";
+        assertTrue(hasReport);
+        assertEquals("InfluxDBPlugin-log", generator.getProjectKey());
+        assertEquals(url, generator.getSonarBuildURL());
+        assertEquals(id, generator.getSonarBuildTaskId());
+        assertEquals(url + "/api/ce/task?id=" + id, generator.getSonarBuildTaskIdUrl());
+    }
+
     @Test
     void hasReportFindsCorrectInformationFromBuildLogs() throws Exception {
         File directory = new File(resourceDirectory, "sonarqube");
@@ -297,7 +336,7 @@ public class SonarQubePointGeneratorTest {
         sonarMetricsUrlField.setAccessible(true);
         String sonarMetricsUrl = (String) sonarMetricsUrlField.get(generator);
 
-        assertEquals("http://custom.sonar.url/api/issues/search?ps=1&componentKeys=null&resolved=false&severities=", sonarIssuesUrl);
+        assertEquals("http://custom.sonar.url/api/issues/search?ps=1&componentKeys=null&resolved=false", sonarIssuesUrl);
         assertEquals("http://custom.sonar.url/api/measures/component?componentKey=null&component=null", sonarMetricsUrl);
     }
 
@@ -322,7 +361,7 @@ public class SonarQubePointGeneratorTest {
         sonarMetricsUrlField.setAccessible(true);
         String sonarMetricsUrl = (String) sonarMetricsUrlField.get(generator);
 
-        assertEquals("http://default.sonar.url/api/issues/search?ps=1&componentKeys=null&resolved=false&severities=", sonarIssuesUrl);
+        assertEquals("http://default.sonar.url/api/issues/search?ps=1&componentKeys=null&resolved=false", sonarIssuesUrl);
         assertEquals("http://default.sonar.url/api/measures/component?componentKey=null&component=null", sonarMetricsUrl);
     }
 
@@ -350,7 +389,7 @@ public class SonarQubePointGeneratorTest {
         sonarMetricsUrlField.setAccessible(true);
         String sonarMetricsUrl = (String) sonarMetricsUrlField.get(generator);
 
-        assertEquals("http://default.sonar.url/api/issues/search?ps=1&branch=feature-branch&componentKeys=null&resolved=false&severities=", sonarIssuesUrl);
+        assertEquals("http://default.sonar.url/api/issues/search?ps=1&branch=feature-branch&componentKeys=null&resolved=false", sonarIssuesUrl);
         assertEquals("http://default.sonar.url/api/measures/component?componentKey=null&component=null&branch=feature-branch", sonarMetricsUrl);
     }
 
@@ -389,6 +428,112 @@ public class SonarQubePointGeneratorTest {
         Mockito.verify(logger).println("[InfluxDB Plugin] WARNING: No SonarQube auth token found in environment variable SONAR_AUTH_TOKEN. Depending on access rights, this might result in a HTTP/401.");
     }
 
+    @Test
+    void generateFetchesMeasuresAndIssuesInOneRequestEach() throws Exception {
+        Mockito.when(listener.getLogger()).thenReturn(Mockito.mock(PrintStream.class));
+        SonarQubePointGenerator generator = Mockito.spy(new SonarQubePointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, new EnvVars()));
+        setField(generator, "projectKey", "my-project");
+        setField(generator, "sonarBuildURL", sonarUrl);
+
+        String measures = "{\"component\":{\"key\":\"my-project\",\"measures\":["
+                + "{\"metric\":\"ncloc\",\"value\":\"1234\"},"
+                + "{\"metric\":\"coverage\",\"value\":\"87.5\"},"
+                + "{\"metric\":\"alert_status\",\"value\":\"OK\"}]}}";
+        String issues = "{\"total\":7,\"facets\":[{\"property\":\"severities\",\"values\":["
+                + "{\"val\":\"CRITICAL\",\"count\":2},{\"val\":\"MAJOR\",\"count\":5}]}]}";
+        Mockito.doReturn(measures).when(generator).getResult(Mockito.contains("/api/measures/component"));
+        Mockito.doReturn(issues).when(generator).getResult(Mockito.contains("/api/issues/search"));
+
+        AbstractPoint[] points = generator.generate();
+
+        assertNull(generator.getDeferredPoints());
+        Mockito.verify(generator).getResult(Mockito.contains("metricKeys=ncloc,code_smells,"));
+        Mockito.verify(generator).getResult(Mockito.endsWith("&resolved=false&facets=severities"));
+        Mockito.verify(generator, Mockito.times(2)).getResult(any(String.class));
+        assertTrue(PointGeneratorBaseTest.allLineProtocolsContain(points[0], "lines_of_code=1234"));
+        assertTrue(PointGeneratorBaseTest.allLineProtocolsContain(points[0], "coverage=87.5"));
+        assertTrue(PointGeneratorBaseTest.allLineProtocolsContain(points[0], "alert_status=\"OK\""));
+        assertTrue(PointGeneratorBaseTest.allLineProtocolsContain(points[0], "critical_issues=2i"));
+        assertTrue(PointGeneratorBaseTest.allLineProtocolsContain(points[0], "major_issues=5i"));
+        assertTrue(PointGeneratorBaseTest.allLineProtocolsContain(points[0], "blocker_issues=0i"));
+    }
+
+    @Test
+    void generateFallsBackToOneIssuesRequestPerSeverity() throws Exception {
+        Mockito.when(listener.getLogger()).thenReturn(Mockito.mock(PrintStream.class));
+        SonarQubePointGenerator generator = Mockito.spy(new SonarQubePointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, new EnvVars()));
+        setField(generator, "projectKey", "my-project");
+        setField(generator, "sonarBuildURL", sonarUrl);
+
+        Mockito.doReturn("{\"component\":{\"measures\":[]}}").when(generator).getResult(Mockito.contains("/api/measures/component"));
+        Mockito.doReturn("{\"total\":3}").when(generator).getResult(Mockito.contains("/api/issues/search"));
+
+        AbstractPoint[] points = generator.generate();
+
+        Mockito.verify(generator, Mockito.times(7)).getResult(any(String.class));
+        assertTrue(PointGeneratorBaseTest.allLineProtocolsContain(points[0], "info_issues=3i"));
+    }
+
+    @Test
+    void generateDefersPointUntilAnalysisTaskHasCompleted() throws Exception {
+        Mockito.when(listener.getLogger()).thenReturn(Mockito.mock(PrintStream.class));
+        SonarQubePointGenerator generator = Mockito.spy(new SonarQubePointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, new EnvVars()));
+        setField(generator, "projectKey", "my-project");
+        setField(generator, "sonarBuildURL", sonarUrl);
+        setField(generator, "sonarBuildTaskId", "AX0vnvr4");
+        setField(generator, "sonarBuildTaskIdUrl", sonarUrl + "/api/ce/task?id=AX0vnvr4");
+
+        Mockito.doReturn("{\"task\":{\"status\":\"IN_PROGRESS\"}}", "{\"task\":{\"status\":\"SUCCESS\"}}")
+                .when(generator).getResult(Mockito.contains("/api/ce/task"));
+        Mockito.doReturn("{\"component\":{\"measures\":[{\"metric\":\"ncloc\",\"value\":\"1234\"}]}}")
+                .when(generator).getResult(Mockito.contains("/api/measures/component"));
+        Mockito.doReturn("{\"total\":0,\"facets\":[{\"property\":\"severities\",\"values\":[]}]}")
+                .when(generator).getResult(Mockito.contains("/api/issues/search"));
+
+        AbstractPoint[] points = generator.generate();
+
+        assertEquals(0, points.length);
+        List<AbstractPoint> deferred = generator.getDeferredPoints().get(30, TimeUnit.SECONDS);
+        Mockito.verify(generator, Mockito.times(2)).getResult(Mockito.contains("/api/ce/task"));
+        assertEquals(1, deferred.size());
+        assertTrue(PointGeneratorBaseTest.allLineProtocolsContain(deferred.get(0), "lines_of_code=1234"));
+    }
+
+    @Test
+    void generateSharesResponsesOfCompletedAnalysisBetweenBuilds() throws Exception {
+        Mockito.when(listener.getLogger()).thenReturn(Mockito.mock(PrintStream.class));
+        SonarQubePointGenerator first = mockCompletedAnalysis("AX0shared");
+        SonarQubePointGenerator second = mockCompletedAnalysis("AX0shared");
+
+        first.generate();
+        AbstractPoint[] points = second.generate();
+
+        Mockito.verify(first, Mockito.times(3)).getResult(any(String.class));
+        Mockito.verify(second, Mockito.times(1)).getResult(any(String.class));
+        assertTrue(PointGeneratorBaseTest.allLineProtocolsContain(points[0], "lines_of_code=42"));
+    }
+
+    private SonarQubePointGenerator mockCompletedAnalysis(String taskId) throws Exception {
+        SonarQubePointGenerator generator = Mockito.spy(new SonarQubePointGenerator(build, listener, measurementRenderer, currTime, StringUtils.EMPTY, StringUtils.EMPTY, new EnvVars()));
+        setField(generator, "projectKey", "shared-project");
+        setField(generator, "sonarBuildURL", sonarUrl);
+        setField(generator, "sonarBuildTaskId", taskId);
+        setField(generator, "sonarBuildTaskIdUrl", sonarUrl + "/api/ce/task?id=" + taskId);
+        Mockito.doReturn("{\"task\":{\"status\":\"SUCCESS\"}}")
+                .when(generator).getResult(Mockito.contains("/api/ce/task"));
+        Mockito.doReturn("{\"component\":{\"measures\":[{\"metric\":\"ncloc\",\"value\":\"42\"}]}}")
+                .when(generator).getResult(Mockito.contains("/api/measures/component"));
+        Mockito.doReturn("{\"total\":0,\"facets\":[{\"property\":\"severities\",\"values\":[]}]}")
+                .when(generator).getResult(Mockito.contains("/api/issues/search"));
+        return generator;
+    }
+
+    private static void setField(SonarQubePointGenerator generator, String name, String value) throws Exception {
+        Field field = SonarQubePointGenerator.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(generator, value);
+    }
+
     private Path invokeFindSingleReportPath(SonarQubePointGenerator generator, Path rootPath) throws Exception {
         Method method = SonarQubePointGenerator.class.getDeclaredMethod("findSingleReportPath", Path.class);
         method.setAccessible(true);
@@ -0,0 +1,117 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SonarQubeResponseCacheTest {
+
+    private static final SonarQubeResponseCache.Key KEY = SonarQubeResponseCache.Key.of("http://sonar/api/measures/component?component=a", "task-1", "token");
+
+    @Test
+    void reusesResponseForSameKey() throws IOException {
+        SonarQubeResponseCache cache = new SonarQubeResponseCache(60000, 10);
+        AtomicInteger requests = new AtomicInteger();
+
+        assertEquals("1", cache.get(KEY, () -> "" + requests.incrementAndGet()));
+        assertEquals("1", cache.get(KEY, () -> "" + requests.incrementAndGet()));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void separatesTasksAndTokens() throws IOException {
+        SonarQubeResponseCache cache = new SonarQubeResponseCache(60000, 10);
+        AtomicInteger requests = new AtomicInteger();
+        String url = KEY.url();
+
+        cache.get(KEY, () -> "" + requests.incrementAndGet());
+        cache.get(SonarQubeResponseCache.Key.of(url, "task-2", "token"), () -> "" + requests.incrementAndGet());
+        cache.get(SonarQubeResponseCache.Key.of(url, "task-1", "other"), () -> "" + requests.incrementAndGet());
+        cache.get(SonarQubeResponseCache.Key.of(url, "task-1", null), () -> "" + requests.incrementAndGet());
+
+        assertEquals(4, requests.get());
+        assertNotEquals("token", KEY.token());
+    }
+
+    @Test
+    void waitsForRequestInFlight() throws Exception {
+        SonarQubeResponseCache cache = new SonarQubeResponseCache(60000, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger requests = new AtomicInteger();
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.get(KEY, () -> {
+                    requests.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return "response";
+                });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        started.await(10, TimeUnit.SECONDS);
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.get(KEY, () -> "duplicate " + requests.incrementAndGet());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        release.countDown();
+
+        assertEquals("response", first.get(10, TimeUnit.SECONDS));
+        assertEquals("response", second.get(10, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void doesNotCacheFailures() throws IOException {
+        SonarQubeResponseCache cache = new SonarQubeResponseCache(60000, 10);
+
+        assertThrows(IOException.class, () -> cache.get(KEY, () -> {
+            throw new IOException("unavailable");
+        }));
+
+        assertEquals(0, cache.size());
+        assertEquals("response", cache.get(KEY, () -> "response"));
+    }
+
+    @Test
+    void expiresResponsesAfterTtl() throws IOException {
+        SonarQubeResponseCache cache = new SonarQubeResponseCache(0, 10);
+        AtomicInteger requests = new AtomicInteger();
+
+        cache.get(KEY, () -> "" + requests.incrementAndGet());
+
+        assertEquals("2", cache.get(KEY, () -> "" + requests.incrementAndGet()));
+    }
+
+    @Test
+    void evictsOldestResponsesBeyondMaximum() throws IOException {
+        SonarQubeResponseCache cache = new SonarQubeResponseCache(60000, 2);
+        AtomicInteger requests = new AtomicInteger();
+
+        for (String task : new String[]{"task-1", "task-2", "task-3"}) {
+            cache.get(SonarQubeResponseCache.Key.of(KEY.url(), task, "token"), () -> "" + requests.incrementAndGet());
+        }
+
+        assertEquals(2, cache.size());
+        assertEquals("4", cache.get(KEY, () -> "" + requests.incrementAndGet()));
+        assertEquals("3", cache.get(SonarQubeResponseCache.Key.of(KEY.url(), "task-3", "token"), () -> "" + requests.incrementAndGet()));
+    }
+}
@@ -7,8 +7,14 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.Run;
+import jenkinsci.plugins.influxdb.generators.ReportLocator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
 
 class SerenityJsonSummaryFileTest {
     @TempDir
@@ -24,6 +30,28 @@ class SerenityJsonSummaryFileTest {
         assertEquals("expected summary content", serenityJsonSummaryFile.getContents());
     }
 
+    @Test
+    void testLocatedSummary() throws Exception {
+        writeToTemporaryPath("module/build/serenity/serenity-summary.json", "located summary content");
+
+        SerenityJsonSummaryFile serenityJsonSummaryFile = new SerenityJsonSummaryFile(pathOfTemporaryFolder(),
+                ReportLocator.forBuild(Mockito.mock(Run.class), new EnvVars()));
+
+        assertTrue(serenityJsonSummaryFile.exists());
+        assertEquals("located summary content", serenityJsonSummaryFile.getContents());
+    }
+
+    @Test
+    void testSummaryInWorkspace() throws Exception {
+        writeToTemporaryPath("target/site/serenity/serenity-summary.json", "workspace summary content");
+
+        SerenityJsonSummaryFile serenityJsonSummaryFile = new SerenityJsonSummaryFile(new FilePath(temporaryFolder), null);
+
+        assertTrue(serenityJsonSummaryFile.exists());
+        assertEquals("workspace summary content", serenityJsonSummaryFile.getContents());
+        assertEquals(temporaryFolder.toPath().resolve("target/site/serenity/serenity-summary.json"), serenityJsonSummaryFile.getPath());
+    }
+
     @Test
     void testUnavailableSummary() {
         SerenityJsonSummaryFile serenityJsonSummaryFile = new SerenityJsonSummaryFile(pathOfTemporaryFolder());
@@ -0,0 +1,56 @@
+package jenkinsci.plugins.influxdb.generators.serenity;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SerenitySummaryTest {
+
+    @Test
+    void readsResultsAndTags() throws IOException {
+        try (InputStream in = ClassLoader.getSystemResourceAsStream("serenity/serenity-summary.json")) {
+            SerenitySummary summary = SerenitySummary.read(in);
+
+            assertEquals(99L, summary.getCount("total"));
+            assertEquals(92L, summary.getPercentage("success"));
+            assertEquals(199957L, summary.getDuration("maxTestDuration"));
+            assertEquals(14L, summary.getTags().get(":branding"));
+        }
+    }
+
+    @Test
+    void stopsOnceResultsAndTagsWereRead() throws IOException {
+        SerenitySummary summary = SerenitySummary.read(stream("{\"tags\":[{\"tagType\":\"feature\",\"tagResults\":"
+                + "[{\"tagName\":\"login\",\"count\":3}]}],\"results\":{\"counts\":{\"total\":4},"
+                + "\"percentages\":{\"success\":72.9},\"totalTestDuration\":120},\"resultsByFeature\":[not json"));
+
+        assertEquals(4L, summary.getCount("total"));
+        assertEquals(72L, summary.getPercentage("success"));
+        assertEquals(120L, summary.getDuration("totalTestDuration"));
+        assertNull(summary.getDuration("minTestDuration"));
+        assertEquals(3L, summary.getTags().get("feature:login"));
+    }
+
+    @Test
+    void rejectsSummaryWithoutResults() {
+        assertThrows(IOException.class, () -> SerenitySummary.read(stream("{\"report\":{\"title\":\"Serenity\"}}")));
+    }
+
+    @Test
+    void rejectsSummaryLargerThanMaximum() {
+        String json = "{\"resultsByFeature\":[\"" + "x".repeat(1000) + "\"],\"results\":{}}";
+
+        assertThrows(IOException.class, () -> SerenitySummary.read(stream(json), 100));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
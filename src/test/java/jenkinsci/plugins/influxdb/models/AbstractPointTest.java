@@ -0,0 +1,65 @@
+package jenkinsci.plugins.influxdb.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AbstractPointTest {
+
+    @Test
+    void convertsToSameLineProtocolForAllClients() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("string", "value");
+        fields.put("missing", null);
+        AbstractPoint point = new AbstractPoint("measurement")
+                .addTag("b_tag", "b")
+                .addTag("a_tag", "a")
+                .addField("long", 2L)
+                .addField("int", 1)
+                .addField("double", 1.5)
+                .addField("boolean", true)
+                .addFields(fields);
+
+        String expected = "measurement,a_tag=a,b_tag=b boolean=true,double=1.5,int=1i,long=2i,string=\"value\"";
+        assertEquals(expected, point.getV1v2Point().toLineProtocol());
+        assertEquals(expected, point.getV3Point().toLineProtocol());
+    }
+
+    @Test
+    void keepsTimestampPrecision() {
+        AbstractPoint point = new AbstractPoint("measurement")
+                .addField("value", 1)
+                .time(1000, com.influxdb.client.domain.WritePrecision.MS);
+
+        assertEquals("measurement value=1i 1000", point.getV1v2Point().toLineProtocol());
+        assertEquals(com.influxdb.client.domain.WritePrecision.MS, point.getV1v2Point().getPrecision());
+    }
+
+    @Test
+    void laterValuesReplaceEarlierOnes() {
+        AbstractPoint point = new AbstractPoint("measurement")
+                .addTag("tag", "first")
+                .addField("field", 1)
+                .addTag("tag", "second")
+                .addField("field", 2);
+
+        assertEquals("measurement,tag=second field=2i", point.getV1v2Point().toLineProtocol());
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        AbstractPoint point = new AbstractPoint("measurement");
+        for (int i = 19; i >= 0; i--) {
+            point.addTag(String.format("tag%02d", i), "value");
+            point.addField(String.format("field%02d", i), i);
+        }
+
+        String lineProtocol = point.getV1v2Point().toLineProtocol();
+        assertEquals("measurement", point.getName());
+        assertEquals(0, lineProtocol.indexOf("measurement,tag00=value,tag01=value"));
+        assertEquals(20, point.getV3Point().toLineProtocol().split(" ")[1].split(",").length);
+    }
+}
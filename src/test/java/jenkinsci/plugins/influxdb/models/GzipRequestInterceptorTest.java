@@ -0,0 +1,147 @@
+package jenkinsci.plugins.influxdb.models;
+
+import com.sun.net.httpserver.HttpServer;
+import hudson.util.Secret;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okio.Buffer;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GzipRequestInterceptorTest {
+
+    private final List<RecordedWrite> writes = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String url;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if ("gzip".equals(encoding)) {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    body = in.readAllBytes();
+                }
+            }
+            writes.add(new RecordedWrite(exchange.getRequestURI().getPath(), encoding, new String(body, StandardCharsets.UTF_8)));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void compressesDirectWritesAboveThreshold() {
+        LineProtocolWriter writer = createDirectWriter(100);
+        Buffer body = new Buffer();
+        LineProtocolEncoder.encode(createPoints(), body);
+        String expected = body.snapshot().utf8();
+
+        writer.write(body);
+
+        assertEquals(1, writes.size());
+        assertEquals("gzip", writes.get(0).encoding());
+        assertEquals(expected, writes.get(0).body());
+    }
+
+    @Test
+    void leavesSmallWritesUncompressed() {
+        LineProtocolWriter writer = createDirectWriter(1024 * 1024);
+
+        writer.write(new Buffer().writeUtf8("measurement value=1i\n"));
+
+        assertEquals(1, writes.size());
+        assertNull(writes.get(0).encoding());
+        assertEquals("measurement value=1i\n", writes.get(0).body());
+    }
+
+    @Test
+    void compressesV1ClientWrites() {
+        assertCompressedWrite(InfluxDBClientWrapper.API_V1, null, null);
+    }
+
+    @Test
+    void compressesV2ClientWrites() {
+        assertCompressedWrite(InfluxDBClientWrapper.API_V2, "my-org", createToken());
+    }
+
+    @Test
+    void compressesV3ClientWrites() {
+        assertCompressedWrite(InfluxDBClientWrapper.API_V3, null, createToken());
+    }
+
+    private void assertCompressedWrite(String apiVersion, String organization, StringCredentials token) {
+        List<AbstractPoint> points = createPoints();
+        InfluxDBClientWrapper client = new InfluxDBClientWrapper(url, organization, "my-db", null, null, token, false, apiVersion, 100);
+        try {
+            client.writePoints(points);
+        } finally {
+            client.close();
+        }
+
+        assertEquals(1, writes.size());
+        RecordedWrite write = writes.get(0);
+        assertTrue(write.path().endsWith("/write"), write.path());
+        assertEquals("gzip", write.encoding());
+        for (AbstractPoint point : points) {
+            assertTrue(write.body().contains(LineProtocolEncoder.toLineProtocol(point)), write.body());
+        }
+    }
+
+    private LineProtocolWriter createDirectWriter(long thresholdBytes) {
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(new GzipRequestInterceptor(thresholdBytes))
+                .build();
+        HttpUrl writeUrl = HttpUrl.get(url + "/api/v2/write?bucket=my-db&precision=ns");
+        return new LineProtocolWriter(httpClient, writeUrl, "Token my-token");
+    }
+
+    private static StringCredentials createToken() {
+        StringCredentials token = mock(StringCredentials.class);
+        when(token.getSecret()).thenReturn(Secret.fromString("my-token"));
+        return token;
+    }
+
+    private static List<AbstractPoint> createPoints() {
+        List<AbstractPoint> points = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            points.add(new AbstractPoint("junit_data")
+                    .addTag("suite_name", "my_suite")
+                    .addField("test_name", "test_" + i)
+                    .addField("test_status", "PASSED")
+                    .addField("test_duration", 0.25)
+                    .time(1_700_000_000_000_000_000L + i, com.influxdb.client.domain.WritePrecision.NS));
+        }
+        return points;
+    }
+
+    private record RecordedWrite(String path, String encoding, String body) {
+    }
+}
@@ -0,0 +1,208 @@
+package jenkinsci.plugins.influxdb.models;
+
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.InfluxDBClientFactory;
+import com.influxdb.client.InfluxDBClientOptions;
+import com.influxdb.exceptions.InfluxException;
+import hudson.util.Secret;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InfluxDBClientRegistryTest {
+
+    private final InfluxDBClientRegistry registry = new InfluxDBClientRegistry();
+    private MockedStatic<InfluxDBClientFactory> mockedFactory;
+    private InfluxDBClient mockClient;
+
+    @BeforeEach
+    void setUp() {
+        mockClient = mock(InfluxDBClient.class);
+        when(mockClient.ping()).thenReturn(true);
+        when(mockClient.version()).thenReturn("v2.7.1");
+        mockedFactory = Mockito.mockStatic(InfluxDBClientFactory.class);
+        mockedFactory.when(() -> InfluxDBClientFactory.create(any(InfluxDBClientOptions.class))).thenReturn(mockClient);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mockedFactory.close();
+    }
+
+    @Test
+    void reusesClientForSameTarget() {
+        Target target = createTarget();
+        StringCredentials token = createToken("token");
+
+        InfluxDBClientWrapper first;
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, token)) {
+            first = lease.getClient();
+        }
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(createTarget(), null, token)) {
+            assertSame(first, lease.getClient());
+        }
+
+        mockedFactory.verify(() -> InfluxDBClientFactory.create(any(InfluxDBClientOptions.class)), times(1));
+        verify(mockClient, never()).close();
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void keepsSeparateClientsForDifferentSecrets() {
+        Target target = createTarget();
+
+        InfluxDBClientWrapper first;
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, createToken("folder-a-token"))) {
+            first = lease.getClient();
+        }
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, createToken("folder-b-token"))) {
+            assertNotSame(first, lease.getClient());
+        }
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, createToken("folder-a-token"))) {
+            assertSame(first, lease.getClient());
+        }
+
+        verify(mockClient, never()).close();
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    void invalidatedClientIsClosedOnRelease() {
+        Target target = createTarget();
+        StringCredentials token = createToken("token");
+
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, token)) {
+            registry.invalidateAll();
+            verify(mockClient, never()).close();
+            assertEquals(0, registry.size());
+        }
+
+        verify(mockClient, times(1)).close();
+    }
+
+    @Test
+    void brokenClientIsReconnected() {
+        Target target = createTarget();
+        StringCredentials token = createToken("token");
+
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, token)) {
+            lease.invalidate();
+        }
+        try (InfluxDBClientRegistry.Lease ignored = registry.acquire(target, null, token)) {
+            mockedFactory.verify(() -> InfluxDBClientFactory.create(any(InfluxDBClientOptions.class)), times(2));
+        }
+    }
+
+    @Test
+    void detectedApiVersionSkipsProbing() {
+        Target target = createTarget();
+
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, createToken("old-token"))) {
+            assertEquals("v2", lease.getClient().getConnectedApiVersion());
+        }
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, createToken("new-token"))) {
+            assertEquals("v2", lease.getClient().getConnectedApiVersion());
+        }
+
+        verify(mockClient, times(1)).ping();
+        assertEquals("v2", registry.getDetectedApiVersion(target, null, createToken("token")));
+    }
+
+    @Test
+    void explicitApiVersionSkipsProbing() {
+        Target target = createTarget();
+        target.setApiVersion("v2");
+
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, createToken("token"))) {
+            assertEquals("v2", lease.getClient().getConnectedApiVersion());
+        }
+
+        verify(mockClient, never()).ping();
+        verify(mockClient, never()).version();
+        assertNull(registry.getDetectedApiVersion(target, null, createToken("token")));
+    }
+
+    @Test
+    void detectedApiVersionIsForgottenWhenClientBreaks() {
+        Target target = createTarget();
+
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, createToken("token"))) {
+            lease.invalidate();
+        }
+
+        assertNull(registry.getDetectedApiVersion(target, null, createToken("token")));
+    }
+
+    @Test
+    void detectedApiVersionIsKeptPerCredentialsKind() {
+        Target target = createTarget();
+
+        try (InfluxDBClientRegistry.Lease ignored = registry.acquire(target, null, createToken("token"))) {
+            verify(mockClient, times(1)).ping();
+        }
+        try (InfluxDBClientRegistry.Lease ignored = registry.acquire(target, createBasicAuth("user", "password"), null)) {
+            verify(mockClient, times(2)).ping();
+        }
+
+        assertEquals("v2", registry.getDetectedApiVersion(target, createBasicAuth("user", "password"), null));
+    }
+
+    @Test
+    void failedConnectWithDetectedApiVersionProbesAgain() {
+        Target target = createTarget();
+        mockedFactory.when(() -> InfluxDBClientFactory.create(any(InfluxDBClientOptions.class)))
+                .thenReturn(mockClient)
+                .thenThrow(new InfluxException(new IOException("connection refused")))
+                .thenReturn(mockClient);
+
+        try (InfluxDBClientRegistry.Lease ignored = registry.acquire(target, null, createToken("old-token"))) {
+            verify(mockClient, times(1)).ping();
+        }
+        try (InfluxDBClientRegistry.Lease lease = registry.acquire(target, null, createToken("new-token"))) {
+            assertEquals("v2", lease.getClient().getConnectedApiVersion());
+        }
+
+        mockedFactory.verify(() -> InfluxDBClientFactory.create(any(InfluxDBClientOptions.class)), times(3));
+        verify(mockClient, times(2)).ping();
+    }
+
+    private static Target createTarget() {
+        Target target = new Target();
+        target.setDescription("test");
+        target.setUrl("https://example.com:8086");
+        target.setOrganization("test-org");
+        target.setDatabase("test-db");
+        target.setCredentialsId("test-credentials");
+        return target;
+    }
+
+    private static StringCredentials createToken(String secret) {
+        StringCredentials token = mock(StringCredentials.class);
+        when(token.getSecret()).thenReturn(Secret.fromString(secret));
+        return token;
+    }
+
+    private static StandardUsernamePasswordCredentials createBasicAuth(String username, String password) {
+        StandardUsernamePasswordCredentials credentials = mock(StandardUsernamePasswordCredentials.class);
+        when(credentials.getUsername()).thenReturn(username);
+        when(credentials.getPassword()).thenReturn(Secret.fromString(password));
+        return credentials;
+    }
+}
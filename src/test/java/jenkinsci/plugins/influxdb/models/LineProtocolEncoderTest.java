@@ -0,0 +1,110 @@
+package jenkinsci.plugins.influxdb.models;
+
+import com.influxdb.client.domain.WritePrecision;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class LineProtocolEncoderTest {
+
+    private static final long TIMESTAMP_NANOS = 1_700_000_000_000_000_000L;
+
+    @Test
+    void matchesGoldenFile() throws Exception {
+        List<AbstractPoint> points = List.of(
+                jenkinsPoint(),
+                escapedPoint(),
+                new AbstractPoint("timed")
+                        .addField("value", 0.1)
+                        .addField("whole", 2.0)
+                        .addField("big", 1e20)
+                        .time(1_700_000_000_000L, WritePrecision.MS),
+                new AbstractPoint("empty").addTag("tag", "value"));
+
+        Buffer buffer = new Buffer();
+        int lines = LineProtocolEncoder.encode(points, buffer);
+
+        assertEquals(3, lines);
+        assertEquals(readGoldenFile(), buffer.readUtf8());
+    }
+
+    @Test
+    void matchesV1V2ClientOutput() {
+        for (AbstractPoint point : samplePoints()) {
+            assertEquals(point.getV1v2Point().toLineProtocol(), LineProtocolEncoder.toLineProtocol(point));
+        }
+    }
+
+    @Test
+    void matchesV3ClientOutput() {
+        for (AbstractPoint point : samplePoints()) {
+            assertEquals(point.getV3Point().toLineProtocol(), LineProtocolEncoder.toLineProtocol(point));
+        }
+    }
+
+    @Test
+    void pointWithoutFieldsIsNotWritten() {
+        Buffer buffer = new Buffer();
+
+        assertFalse(LineProtocolEncoder.encode(new AbstractPoint("empty").addField("nan", Double.NaN), buffer));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void encodesRecordsAsLines() {
+        Buffer buffer = new Buffer();
+        int lines = LineProtocolEncoder.encodeRecords(List.of("first value=1i", "", "second value=2i"), buffer);
+
+        assertEquals(2, lines);
+        assertEquals("first value=1i\nsecond value=2i\n", buffer.readUtf8());
+    }
+
+    private static List<AbstractPoint> samplePoints() {
+        return List.of(
+                jenkinsPoint(),
+                escapedPoint(),
+                new AbstractPoint("numbers")
+                        .addTag("tag", "value")
+                        .addField("int", 1)
+                        .addField("long", Long.MIN_VALUE)
+                        .addField("double", 1.0)
+                        .addField("fraction", -0.25)
+                        .addField("tiny", 1e-7)
+                        .time(TIMESTAMP_NANOS, WritePrecision.NS),
+                new AbstractPoint("unicode")
+                        .addTag("tag", "wert \u00e4\u00f6\u00fc")
+                        .addField("text", "\ud83d\ude00 line\nbreak"));
+    }
+
+    private static AbstractPoint jenkinsPoint() {
+        return new AbstractPoint("jenkins_data")
+                .addTag("project_name", "my job")
+                .addTag("instance", "http://localhost:8080/")
+                .addField("build_number", 42)
+                .addField("build_result", "SUCCESS")
+                .addField("build_time", 1234.5)
+                .addField("build_successful", true)
+                .time(TIMESTAMP_NANOS, WritePrecision.NS);
+    }
+
+    private static AbstractPoint escapedPoint() {
+        return new AbstractPoint("my measurement,x=1")
+                .addTag("tag key", "a=b,c")
+                .addTag("empty", "")
+                .addField("field=key", "say \"hi\" \\o/")
+                .addField("nan", Double.NaN);
+    }
+
+    private String readGoldenFile() throws Exception {
+        try (InputStream in = Objects.requireNonNull(getClass().getResourceAsStream(getClass().getSimpleName() + "/golden.lp"))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
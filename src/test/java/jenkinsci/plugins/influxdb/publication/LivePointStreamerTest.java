@@ -0,0 +1,125 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import hudson.model.Run;
+import jenkinsci.plugins.influxdb.models.AbstractPoint;
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LivePointStreamerTest {
+
+    private final List<String> writes = new ArrayList<>();
+
+    @Test
+    void mergesPointsPerBuildAndTarget() {
+        LivePointStreamer streamer = new RecordingStreamer(100);
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Run<?, ?> other = Mockito.mock(Run.class);
+        Target target = createTarget("target");
+        Target second = createTarget("second");
+
+        streamer.offer(build, List.of(target, second), createPoint(1));
+        streamer.offer(other, List.of(target), createPoint(2));
+        streamer.offer(build, List.of(target), createPoint(3));
+        streamer.flush();
+
+        assertEquals(List.of("target:2", "second:1", "target:1"), writes);
+    }
+
+    @Test
+    void writesAtMostMaxPointsPerFlush() {
+        LivePointStreamer streamer = new RecordingStreamer(2);
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Target target = createTarget("target");
+
+        for (int i = 0; i < 5; i++) {
+            streamer.offer(build, List.of(target), createPoint(i));
+        }
+        streamer.flush();
+        streamer.flush();
+        streamer.flush();
+        streamer.flush();
+
+        assertEquals(List.of("target:2", "target:2", "target:1"), writes);
+    }
+
+    @Test
+    void dropsPointsWhenBufferIsFull() {
+        LivePointStreamer streamer = new RecordingStreamer(1);
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Target target = createTarget("target");
+
+        for (int i = 0; i < LivePointStreamer.BUFFERED_SECONDS; i++) {
+            assertTrue(streamer.offer(build, List.of(target), createPoint(i)));
+        }
+        assertFalse(streamer.offer(build, List.of(target), createPoint(0)));
+        assertEquals(1, streamer.getDroppedCount());
+
+        streamer.flush();
+        assertTrue(streamer.offer(build, List.of(target), createPoint(0)));
+    }
+
+    @Test
+    void dropsPointsWhileTargetHasTooManyWritesInFlight() {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        LivePointStreamer streamer = new RecordingStreamer(1) {
+            @Override
+            protected CompletableFuture<?> write(PublicationTask task) {
+                super.write(task);
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                pending.add(future);
+                return future;
+            }
+        };
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Target target = createTarget("target");
+
+        for (int i = 0; i <= LivePointStreamer.MAX_IN_FLIGHT_PER_TARGET; i++) {
+            streamer.offer(build, List.of(target), createPoint(i));
+            streamer.flush();
+        }
+        assertEquals(LivePointStreamer.MAX_IN_FLIGHT_PER_TARGET, writes.size());
+        assertEquals(1, streamer.getDroppedCount());
+
+        pending.get(0).complete(null);
+        streamer.offer(build, List.of(target), createPoint(0));
+        streamer.flush();
+        assertEquals(LivePointStreamer.MAX_IN_FLIGHT_PER_TARGET + 1, writes.size());
+    }
+
+    private static Target createTarget(String description) {
+        Target target = new Target();
+        target.setDescription(description);
+        return target;
+    }
+
+    private static AbstractPoint createPoint(int value) {
+        return new AbstractPoint("measurement").addField("value", value);
+    }
+
+    private class RecordingStreamer extends LivePointStreamer {
+
+        RecordingStreamer(int maxPointsPerSecond) {
+            super(maxPointsPerSecond);
+        }
+
+        @Override
+        protected PublicationTask createTask(Target target, Run<?, ?> build, List<AbstractPoint> points) {
+            return new PublicationTask(target, null, null, null, points, null);
+        }
+
+        @Override
+        protected CompletableFuture<?> write(PublicationTask task) {
+            writes.add(task.getTarget().getDescription() + ":" + task.size());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
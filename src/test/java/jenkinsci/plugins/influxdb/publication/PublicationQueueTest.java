@@ -0,0 +1,110 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublicationQueueTest {
+
+    @TempDir
+    private File spillDirectory;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PublicationQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (queue != null) {
+            queue.stop(1000);
+        }
+    }
+
+    @Test
+    void writesQueuedTasksInBackground() throws Exception {
+        queue = new PublicationQueue(new WriteAheadSpool(spillDirectory, Long.MAX_VALUE), 10, 1, OverflowPolicy.BLOCK, Long.MAX_VALUE);
+        CountDownLatch written = new CountDownLatch(2);
+
+        CompletableFuture<Void> first = queue.submit(new CountingTask(written));
+        CompletableFuture<Void> second = queue.submit(new CountingTask(written));
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void dropOldestDiscardsQueuedTask() throws Exception {
+        queue = new PublicationQueue(new WriteAheadSpool(spillDirectory, Long.MAX_VALUE), 1, 1, OverflowPolicy.DROP_OLDEST, Long.MAX_VALUE);
+        occupyWorker();
+
+        CompletableFuture<Void> dropped = queue.submit(new CountingTask(new CountDownLatch(1)));
+        queue.submit(new CountingTask(new CountDownLatch(1)));
+
+        assertEquals(1, queue.getDepth());
+        assertEquals(1, queue.getDroppedCount());
+        assertTrue(dropped.isCompletedExceptionally());
+    }
+
+    @Test
+    void spillToDiskStoresOverflowingTask() throws Exception {
+        queue = new PublicationQueue(new WriteAheadSpool(spillDirectory, Long.MAX_VALUE), 1, 1, OverflowPolicy.SPILL_TO_DISK, Long.MAX_VALUE);
+        occupyWorker();
+
+        queue.submit(new CountingTask(new CountDownLatch(1)));
+        CompletableFuture<Void> spilled = queue.submit(new CountingTask(new CountDownLatch(1)));
+
+        assertTrue(spilled.isCompletedExceptionally());
+        assertEquals(1, queue.getDepth());
+        assertEquals(1, queue.getSpilledCount());
+        assertEquals(1, queue.getSpilledDepth());
+        assertEquals(1, spillDirectory.listFiles().length);
+    }
+
+    private void occupyWorker() throws Exception {
+        queue.submit(new CountingTask(new CountDownLatch(1)) {
+            @Override
+            public void write() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private static class CountingTask extends PublicationTask {
+
+        private final CountDownLatch written;
+
+        CountingTask(CountDownLatch written) {
+            super(createTarget(), null, null, null, null, Collections.singletonList("measurement value=1i"));
+            this.written = written;
+        }
+
+        @Override
+        public void write() {
+            written.countDown();
+        }
+
+        private static Target createTarget() {
+            Target target = new Target();
+            target.setDescription("test");
+            return target;
+        }
+    }
+}
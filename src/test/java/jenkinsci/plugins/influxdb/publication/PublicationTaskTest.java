@@ -0,0 +1,36 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import com.influxdb.exceptions.InfluxException;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublicationTaskTest {
+
+    @Test
+    void clientErrorsAreNotRetryable() {
+        assertFalse(PublicationTask.isRetryable(influxException(400)));
+        assertFalse(PublicationTask.isRetryable(influxException(404)));
+        assertFalse(PublicationTask.isRetryable(new CompletionException(influxException(422))));
+    }
+
+    @Test
+    void serverAndConnectionErrorsAreRetryable() {
+        assertTrue(PublicationTask.isRetryable(influxException(408)));
+        assertTrue(PublicationTask.isRetryable(influxException(429)));
+        assertTrue(PublicationTask.isRetryable(influxException(503)));
+        assertTrue(PublicationTask.isRetryable(new InfluxException(new IOException("connection refused"))));
+        assertTrue(PublicationTask.isRetryable(new IllegalStateException("unavailable")));
+    }
+
+    private static InfluxException influxException(int status) {
+        InfluxException exception = Mockito.mock(InfluxException.class);
+        Mockito.when(exception.status()).thenReturn(status);
+        return exception;
+    }
+}
@@ -0,0 +1,121 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadSpoolTest {
+
+    @TempDir
+    private File directory;
+
+    @Test
+    void appendsToSegmentUntilItIsFull() throws Exception {
+        WriteAheadSpool spool = new WriteAheadSpool(directory, 40);
+        Target target = createTarget("test");
+
+        spool.append(target, null, List.of("measurement value=1i 1"), Long.MAX_VALUE);
+        spool.append(target, null, List.of("measurement value=2i 2"), Long.MAX_VALUE);
+        spool.append(target, null, List.of("measurement value=3i 3"), Long.MAX_VALUE);
+
+        File[] segments = spool.spoolFor("test", null).listSegments();
+        assertEquals(2, segments.length);
+        assertEquals(List.of("measurement value=1i 1", "measurement value=2i 2"), WriteAheadSpool.readSegment(segments[0]));
+        assertEquals(List.of("measurement value=3i 3"), WriteAheadSpool.readSegment(segments[1]));
+    }
+
+    @Test
+    void sealedSegmentIsNotAppendedTo() throws Exception {
+        WriteAheadSpool spool = new WriteAheadSpool(directory, Long.MAX_VALUE);
+        Target target = createTarget("test");
+
+        spool.append(target, null, List.of("measurement value=1i 1"), Long.MAX_VALUE);
+        File sealed = spool.spoolFor("test", null).sealOldest(Long.MAX_VALUE);
+        spool.append(target, null, List.of("measurement value=2i 2"), Long.MAX_VALUE);
+
+        assertEquals(List.of("measurement value=1i 1"), WriteAheadSpool.readSegment(sealed));
+        assertEquals(2, spool.spoolFor("test", null).listSegments().length);
+    }
+
+    @Test
+    void expiredSegmentsAreDiscarded() throws Exception {
+        WriteAheadSpool spool = new WriteAheadSpool(directory, Long.MAX_VALUE);
+        spool.append(createTarget("test"), null, List.of("measurement value=1i 1"), Long.MAX_VALUE);
+        File segment = spool.spoolFor("test", null).listSegments()[0];
+        assertTrue(segment.setLastModified(System.currentTimeMillis() - 60_000));
+
+        assertNull(spool.spoolFor("test", null).sealOldest(1000));
+        assertEquals(0, spool.spoolFor("test", null).listSegments().length);
+    }
+
+    @Test
+    void oldestSegmentsAreDiscardedAboveSizeCap() throws Exception {
+        WriteAheadSpool spool = new WriteAheadSpool(directory, 1);
+        Target first = createTarget("first");
+        Target second = createTarget("second");
+
+        spool.append(first, null, List.of("measurement value=1i 1"), Long.MAX_VALUE);
+        File oldest = spool.spoolFor("first", null).listSegments()[0];
+        assertTrue(oldest.setLastModified(System.currentTimeMillis() - 60_000));
+        spool.append(second, null, List.of("measurement value=2i 2"), 30);
+
+        assertEquals(0, spool.spoolFor("first", null).listSegments().length);
+        assertEquals(1, spool.spoolFor("second", null).listSegments().length);
+        assertEquals(23, spool.getSizeBytes());
+    }
+
+    @Test
+    void truncatedRecordIsSkipped() throws Exception {
+        File segment = new File(directory, "segment.lp");
+        Files.writeString(segment.toPath(), "measurement value=1i 1\nmeasurement val", StandardCharsets.UTF_8);
+
+        assertEquals(List.of("measurement value=1i 1"), WriteAheadSpool.readSegment(segment));
+    }
+
+    @Test
+    void restartedSpoolDoesNotAppendToTruncatedSegment() throws Exception {
+        Target target = createTarget("test");
+        new WriteAheadSpool(directory, Long.MAX_VALUE).append(target, null, List.of("measurement value=1i 1"), Long.MAX_VALUE);
+        WriteAheadSpool restarted = new WriteAheadSpool(directory, Long.MAX_VALUE);
+        File truncated = restarted.spoolFor("test", null).listSegments()[0];
+        Files.writeString(truncated.toPath(), "measurement val", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        restarted.append(target, null, List.of("measurement value=2i 2"), Long.MAX_VALUE);
+
+        File[] segments = restarted.spoolFor("test", null).listSegments();
+        assertEquals(2, segments.length);
+        assertEquals(List.of("measurement value=1i 1"), WriteAheadSpool.readSegment(segments[0]));
+        assertEquals(List.of("measurement value=2i 2"), WriteAheadSpool.readSegment(segments[1]));
+    }
+
+    @Test
+    void segmentsAreKeptApartPerJob() throws Exception {
+        WriteAheadSpool spool = new WriteAheadSpool(directory, Long.MAX_VALUE);
+        Target target = createTarget("test");
+
+        spool.append(target, "folder-a/job", List.of("measurement value=1i 1"), Long.MAX_VALUE);
+        spool.append(target, "folder-b/job", List.of("measurement value=2i 2"), Long.MAX_VALUE);
+
+        File[] segments = spool.spoolFor("test", "folder-a/job").listSegments();
+        assertEquals(1, segments.length);
+        assertEquals(List.of("measurement value=1i 1"), WriteAheadSpool.readSegment(segments[0]));
+        assertEquals("folder-b/job", Files.readString(spool.spoolFor("test", "folder-b/job").listSegments()[0]
+                .getParentFile().toPath().resolve("job"), StandardCharsets.UTF_8));
+    }
+
+    private static Target createTarget(String description) {
+        Target target = new Target();
+        target.setDescription(description);
+        return target;
+    }
+}
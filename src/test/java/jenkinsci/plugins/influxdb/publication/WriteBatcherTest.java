@@ -0,0 +1,80 @@
+package jenkinsci.plugins.influxdb.publication;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBatcherTest {
+
+    private final List<List<String>> writes = new CopyOnWriteArrayList<>();
+
+    @Test
+    void mergesConcurrentPublicationsToSameTarget() throws Exception {
+        WriteBatcher batcher = new RecordingBatcher(100, Long.MAX_VALUE, 200, 1000);
+
+        CompletableFuture<Void> first = batcher.submit(createTask("target", "measurement value=1i 1"));
+        CompletableFuture<Void> second = batcher.submit(createTask("target", "measurement value=2i 2"));
+        CompletableFuture<Void> other = batcher.submit(createTask("other", "measurement value=3i 3"));
+        CompletableFuture.allOf(first, second, other).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, writes.size());
+        assertTrue(writes.contains(List.of("measurement value=1i 1", "measurement value=2i 2")));
+        assertTrue(writes.contains(List.of("measurement value=3i 3")));
+        assertEquals(0, batcher.getBufferedPoints());
+    }
+
+    @Test
+    void fullBatchIsWrittenWithoutLinger() throws Exception {
+        WriteBatcher batcher = new RecordingBatcher(2, Long.MAX_VALUE, TimeUnit.HOURS.toMillis(1), 1000);
+
+        CompletableFuture<Void> first = batcher.submit(createTask("target", "measurement value=1i 1"));
+        assertFalse(first.isDone());
+        CompletableFuture<Void> second = batcher.submit(createTask("target", "measurement value=2i 2"));
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(List.of("measurement value=1i 1", "measurement value=2i 2")), writes);
+    }
+
+    @Test
+    void failureIsReportedToAllMergedPublications() throws Exception {
+        WriteBatcher batcher = new WriteBatcher(2, Long.MAX_VALUE, TimeUnit.HOURS.toMillis(1), 1000) {
+            @Override
+            protected void write(PublicationTask batch) {
+                throw new IllegalStateException("unavailable");
+            }
+        };
+
+        CompletableFuture<Void> first = batcher.submit(createTask("target", "measurement value=1i 1"));
+        CompletableFuture<Void> second = batcher.submit(createTask("target", "measurement value=2i 2"));
+
+        assertThrows(IllegalStateException.class, () -> WriteBatcher.await(first));
+        assertThrows(IllegalStateException.class, () -> WriteBatcher.await(second));
+    }
+
+    private static PublicationTask createTask(String targetDescription, String record) {
+        Target target = new Target();
+        target.setDescription(targetDescription);
+        return new PublicationTask(target, null, null, null, null, List.of(record));
+    }
+
+    private class RecordingBatcher extends WriteBatcher {
+
+        RecordingBatcher(int maxPoints, long maxBytes, long lingerMillis, int maxBufferedPoints) {
+            super(maxPoints, maxBytes, lingerMillis, maxBufferedPoints);
+        }
+
+        @Override
+        protected void write(PublicationTask batch) {
+            writes.add(batch.toLineProtocol());
+        }
+    }
+}